@@ -0,0 +1,68 @@
+import benchmarks.AccountOps;
+
+import java.time.LocalDateTime;
+
+/**
+ * An account with one entered value per day and many single-instance transactions, for BudgetAccountBenchmark.
+ */
+public class AccountFixture implements AccountOps {
+    private static final LocalDateTime START = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final int PROBES = 1024;
+    private static final int MAX_TRANSACTIONS = 1000000; // each transaction costs a few hundred bytes of heap
+
+    private IBudgetAccount account;
+    private final LocalDateTime[] dates = new LocalDateTime[PROBES]; // entered dates spread over the account
+    private final int[] indices = new int[PROBES];
+    private final String[] names = new String[PROBES];
+    private int probe;
+
+    @Override
+    public void setUp(int size) {
+        this.account = new BudgetAccount("Benchmark", "Daily values", 0.05f);
+        for (int i = 0; i < size; i++) {
+            this.account.enterValue(START.plusDays(i), i);
+        }
+        int transactions = Math.min(size, MAX_TRANSACTIONS);
+        for (int i = 0; i < transactions; i++) {
+            this.account.addTransaction(new Transaction("Transaction " + i, "Benchmark", 1f, START.plusDays(i)));
+        }
+        for (int i = 0; i < PROBES; i++) {
+            this.indices[i] = (int) ((long) i * size / PROBES);
+            this.dates[i] = START.plusDays(this.indices[i]);
+            this.names[i] = "Transaction " + (long) i * transactions / PROBES;
+        }
+    }
+
+    @Override
+    public void enterValue() {
+        next();
+        this.account.enterValue(this.dates[this.probe], this.probe);
+    }
+
+    @Override
+    public float getValueByIndex() {
+        next();
+        return this.account.getValue(this.indices[this.probe]);
+    }
+
+    @Override
+    public float getActualValues() {
+        next();
+        LocalDateTime from = this.dates[this.probe];
+        float sum = 0;
+        for (float value : this.account.getActualValues(from, from.plusDays(30)).values()) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Override
+    public boolean hasTransaction() {
+        next();
+        return this.account.hasTransaction(this.names[this.probe]);
+    }
+
+    private void next() {
+        this.probe = (this.probe + 1) & (PROBES - 1);
+    }
+}
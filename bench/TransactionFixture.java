@@ -0,0 +1,55 @@
+import benchmarks.TransactionOps;
+
+import java.time.LocalDateTime;
+
+/**
+ * A transaction with one instance per day, for TransactionBenchmark.
+ */
+public class TransactionFixture implements TransactionOps {
+    private static final LocalDateTime START = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final int PROBES = 1024;
+
+    private ITransaction transaction;
+    private LocalDateTime middle; // a date between two instances
+    private final LocalDateTime[] probes = new LocalDateTime[PROBES]; // instance dates spread over the transaction
+    private int probe;
+
+    @Override
+    public void setUp(int size) {
+        this.transaction = new Transaction("Benchmark", "Daily instances", 1f, START);
+        for (int i = 1; i < size; i++) {
+            this.transaction.addInstance(START.plusDays(i));
+        }
+        this.middle = START.plusDays(size / 2).plusHours(12);
+        for (int i = 0; i < PROBES; i++) {
+            this.probes[i] = START.plusDays((long) i * size / PROBES);
+        }
+    }
+
+    @Override
+    public int addInstance() {
+        this.transaction.addInstance(this.middle);
+        this.transaction.removeInstance(this.middle);
+        return this.transaction.numInstances();
+    }
+
+    @Override
+    public boolean hasInstance() {
+        return this.transaction.hasInstance(nextProbe());
+    }
+
+    @Override
+    public int getTransactionsRange() {
+        LocalDateTime from = nextProbe();
+        int count = 0;
+        for (LocalDateTime ignored : this.transaction.getTransactions(from, from.plusDays(30))) {
+            count++;
+        }
+        return count;
+    }
+
+    private LocalDateTime nextProbe() {
+        this.probe = (this.probe + 1) & (PROBES - 1);
+        return this.probes[this.probe];
+    }
+}
@@ -0,0 +1,39 @@
+import benchmarks.UtilsOps;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list of consecutive integers, for UtilsBenchmark.
+ */
+public class UtilsFixture implements UtilsOps {
+    private List<Integer> list;
+
+    @Override
+    public void setUp(int size) {
+        this.list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            this.list.add(i);
+        }
+    }
+
+    @Override
+    public boolean orMap() {
+        return Utils.orMap(this.list, (i) -> i < 0);
+    }
+
+    @Override
+    public boolean andMap() {
+        return Utils.andMap(this.list, (i) -> i >= 0);
+    }
+
+    @Override
+    public int filter() {
+        return Utils.filter(this.list, (i) -> (i & 1) == 0).size();
+    }
+
+    @Override
+    public int map() {
+        return Utils.map(this.list, (i) -> i + 1).size();
+    }
+}
@@ -0,0 +1,37 @@
+package benchmarks;
+
+/**
+ * Operations on a BudgetAccount measured by BudgetAccountBenchmark, implemented by AccountFixture.
+ * @see TransactionOps for why the model is driven through an interface.
+ */
+public interface AccountOps {
+
+    /**
+     * Build an account with the given number of entered values and transactions.
+     * @param size the number of values.
+     */
+    void setUp(int size);
+
+    /**
+     * Replace one of the entered values.
+     */
+    void enterValue();
+
+    /**
+     * Read an entered value by index.
+     * @return the value.
+     */
+    float getValueByIndex();
+
+    /**
+     * Walk the entered values within a 30 day range.
+     * @return the sum of the values walked.
+     */
+    float getActualValues();
+
+    /**
+     * Look up one of the account's transactions by name.
+     * @return whether the transaction was found.
+     */
+    boolean hasTransaction();
+}
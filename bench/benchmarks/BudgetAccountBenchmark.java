@@ -0,0 +1,54 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class BudgetAccountBenchmark {
+    @Param({"100", "1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    AccountOps ops;
+
+    @Setup
+    public void setUp() {
+        this.ops = Fixtures.load("AccountFixture", AccountOps.class);
+        this.ops.setUp(this.size);
+    }
+
+    @Benchmark
+    public void enterValue() {
+        this.ops.enterValue();
+    }
+
+    @Benchmark
+    public float getValueByIndex() {
+        return this.ops.getValueByIndex();
+    }
+
+    @Benchmark
+    public float getActualValues() {
+        return this.ops.getActualValues();
+    }
+
+    @Benchmark
+    public boolean hasTransaction() {
+        return this.ops.hasTransaction();
+    }
+}
@@ -0,0 +1,17 @@
+package benchmarks;
+
+/**
+ * Loads the default-package fixture implementing a set of benchmark operations.
+ */
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    static <T> T load(String className, Class<T> type) {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not load benchmark fixture " + className, e);
+        }
+    }
+}
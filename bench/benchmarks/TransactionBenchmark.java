@@ -0,0 +1,49 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class TransactionBenchmark {
+    @Param({"100", "1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    TransactionOps ops;
+
+    @Setup
+    public void setUp() {
+        this.ops = Fixtures.load("TransactionFixture", TransactionOps.class);
+        this.ops.setUp(this.size);
+    }
+
+    @Benchmark
+    public int addInstance() {
+        return this.ops.addInstance();
+    }
+
+    @Benchmark
+    public boolean hasInstance() {
+        return this.ops.hasInstance();
+    }
+
+    @Benchmark
+    public int getTransactionsRange() {
+        return this.ops.getTransactionsRange();
+    }
+}
@@ -0,0 +1,33 @@
+package benchmarks;
+
+/**
+ * Operations on a Transaction measured by TransactionBenchmark.
+ * JMH cannot generate benchmarks for classes in the default package, and packaged classes cannot refer to the
+ * default package, so the model is driven through this interface by TransactionFixture.
+ */
+public interface TransactionOps {
+
+    /**
+     * Build a transaction with the given number of instances.
+     * @param size the number of instances.
+     */
+    void setUp(int size);
+
+    /**
+     * Insert an instance in the middle of the transaction, then remove it again.
+     * @return the number of instances afterwards.
+     */
+    int addInstance();
+
+    /**
+     * Check for an instance on one of the transaction's dates.
+     * @return whether the instance was found.
+     */
+    boolean hasInstance();
+
+    /**
+     * Walk the instances within a 30 day range.
+     * @return the number of instances walked.
+     */
+    int getTransactionsRange();
+}
@@ -0,0 +1,54 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class UtilsBenchmark {
+    @Param({"100", "1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    UtilsOps ops;
+
+    @Setup
+    public void setUp() {
+        this.ops = Fixtures.load("UtilsFixture", UtilsOps.class);
+        this.ops.setUp(this.size);
+    }
+
+    @Benchmark
+    public boolean orMap() {
+        return this.ops.orMap();
+    }
+
+    @Benchmark
+    public boolean andMap() {
+        return this.ops.andMap();
+    }
+
+    @Benchmark
+    public int filter() {
+        return this.ops.filter();
+    }
+
+    @Benchmark
+    public int map() {
+        return this.ops.map();
+    }
+}
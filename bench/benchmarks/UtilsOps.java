@@ -0,0 +1,38 @@
+package benchmarks;
+
+/**
+ * The Utils list combinators measured by UtilsBenchmark, implemented by UtilsFixture.
+ * @see TransactionOps for why the model is driven through an interface.
+ */
+public interface UtilsOps {
+
+    /**
+     * Build a list of the given size.
+     * @param size the number of elements.
+     */
+    void setUp(int size);
+
+    /**
+     * Run orMap with a predicate that no element satisfies.
+     * @return the result.
+     */
+    boolean orMap();
+
+    /**
+     * Run andMap with a predicate that every element satisfies.
+     * @return the result.
+     */
+    boolean andMap();
+
+    /**
+     * Filter out half of the elements.
+     * @return the number of elements kept.
+     */
+    int filter();
+
+    /**
+     * Map every element to a new value.
+     * @return the number of elements mapped.
+     */
+    int map();
+}
@@ -0,0 +1,248 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable storage for a BudgetAccount in a directory of snapshots and journals.
+ * Snapshot n holds the state of the account when journal n was started, and journal n the changes made since, so the
+ * account is rebuilt by reading the newest snapshot and replaying only the journals from it on. A checkpoint captures
+ * a new snapshot and starts a new journal on the calling thread, then writes the snapshot and deletes the files it
+ * replaces on a background thread, so callers only wait for the account's arrays to be copied.
+ * Checkpoints are taken automatically once the current journal grows past a threshold.
+ */
+public class AccountStore implements IBudgetAccountListener, Closeable {
+    private static final String SNAPSHOT = "snapshot-";
+    private static final String JOURNAL = "journal-";
+    private static final long DEFAULT_THRESHOLD = 16 << 20;
+
+    private final Path directory;
+    private final BudgetAccount account;
+    private final ExecutorService writer; // writes snapshots and deletes replaced files, one at a time
+    private Journal journal; // the journal recording the account's changes
+    private long sequence; // the number of the current journal
+    private long threshold = DEFAULT_THRESHOLD; // the journal size that triggers a checkpoint, 0 to never trigger
+
+    private AccountStore(Path directory, BudgetAccount account, Journal journal, long sequence) {
+        this.directory = directory;
+        this.account = account;
+        this.journal = journal;
+        this.sequence = sequence;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "snapshot-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        journal.attach(account);
+        account.addListener(this);
+    }
+
+    /**
+     * Start storing an account in a new directory.
+     * @param directory the directory to store the account in, created if it does not exist.
+     * @param account the account to store.
+     * @return the store, recording every change made to the account from now on.
+     * @throws IOException if the directory already holds an account or cannot be written.
+     */
+    public static AccountStore create(Path directory, BudgetAccount account) throws IOException {
+        Utils.checkNull(directory, "Directory");
+        Utils.checkNull(account, "Account");
+        Files.createDirectories(directory);
+        if (!sequences(directory, SNAPSHOT).isEmpty()) {
+            throw new FileAlreadyExistsException(directory.toString(), null, "Directory already holds an account.");
+        }
+        Snapshot.capture(account).write(file(directory, SNAPSHOT, 0));
+        return new AccountStore(directory, account, Journal.open(file(directory, JOURNAL, 0)), 0);
+    }
+
+    /**
+     * Rebuild the account stored in a directory, from its newest snapshot and the journals that follow it.
+     * @param directory the directory the account is stored in.
+     * @return the store, recording every change made to the restored account from now on.
+     * @throws IOException if the directory holds no account or cannot be read.
+     */
+    public static AccountStore open(Path directory) throws IOException {
+        Utils.checkNull(directory, "Directory");
+        List<Long> snapshots = sequences(directory, SNAPSHOT);
+        if (snapshots.isEmpty()) {
+            throw new NoSuchFileException(directory.toString(), null, "Directory holds no account.");
+        }
+        long first = snapshots.get(snapshots.size() - 1);
+        BudgetAccount account = Snapshot.read(file(directory, SNAPSHOT, first)).restore();
+        Journal journal = null;
+        long sequence = first;
+        for (long n : sequences(directory, JOURNAL)) {
+            if (n < first) {
+                continue;
+            }
+            if (journal != null) {
+                journal.close();
+            }
+            journal = Journal.open(file(directory, JOURNAL, n));
+            journal.replay(account);
+            sequence = n;
+        }
+        if (journal == null) {
+            journal = Journal.open(file(directory, JOURNAL, first));
+        }
+        return new AccountStore(directory, account, journal, sequence);
+    }
+
+    /**
+     * Return the stored account.
+     * @return the account, whose changes are recorded by the store.
+     */
+    public BudgetAccount getAccount() {
+        return this.account;
+    }
+
+    /**
+     * Set the journal size that triggers a checkpoint. The size is checked after each change to the account itself.
+     * @param bytes the size in bytes, or 0 to only take checkpoints when asked.
+     * @throws IllegalArgumentException if bytes is negative.
+     */
+    public void setCheckpointThreshold(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative. Given threshold is " + bytes);
+        }
+        this.threshold = bytes;
+    }
+
+    /**
+     * Capture the account as a new snapshot and start a new journal. The snapshot is written in the background.
+     * @return a future completing once the snapshot is written and the files it replaces are deleted.
+     * @throws IOException if the new journal cannot be created.
+     */
+    public Future<?> checkpoint() throws IOException {
+        Snapshot snapshot = Snapshot.capture(this.account);
+        long next = this.sequence + 1;
+        Journal started = Journal.open(file(this.directory, JOURNAL, next));
+        // keep this store notified after the journal, so a checkpoint it triggers follows the change being recorded
+        this.account.removeListener(this);
+        this.journal.close();
+        started.attach(this.account);
+        this.account.addListener(this);
+        this.journal = started;
+        this.sequence = next;
+        return this.writer.submit(() -> {
+            snapshot.write(file(this.directory, SNAPSHOT, next));
+            deleteBefore(next);
+            return null;
+        });
+    }
+
+    /**
+     * Wait for any snapshot being written, then stop recording and close the current journal.
+     * @throws IOException if the journal cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.account.removeListener(this);
+        this.writer.shutdown();
+        try {
+            this.writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.journal.close();
+    }
+
+    @Override
+    public void nameChanged(IBudgetAccount account, String oldName, String newName) {
+        checkThreshold();
+    }
+
+    @Override
+    public void descriptionChanged(IBudgetAccount account, String description) {
+        checkThreshold();
+    }
+
+    @Override
+    public void interestChanged(IBudgetAccount account, float oldInterest, float newInterest) {
+        checkThreshold();
+    }
+
+    @Override
+    public void valueEntered(IBudgetAccount account, LocalDateTime date, long cents) {
+        checkThreshold();
+    }
+
+    @Override
+    public void valuesEntered(IBudgetAccount account, long[] times, long[] cents, int length) {
+        checkThreshold();
+    }
+
+    @Override
+    public void valueRemoved(IBudgetAccount account, LocalDateTime date) {
+        checkThreshold();
+    }
+
+    @Override
+    public void transactionAdded(IBudgetAccount account, ITransaction transaction) {
+        checkThreshold();
+    }
+
+    @Override
+    public void transactionRemoved(IBudgetAccount account, ITransaction transaction) {
+        checkThreshold();
+    }
+
+    private void checkThreshold() {
+        if (this.threshold > 0 && this.journal.size() >= this.threshold) {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // delete the snapshots and journals numbered before n, leaving any that cannot be deleted for next time
+    private void deleteBefore(long n) throws IOException {
+        for (String prefix : new String[] {SNAPSHOT, JOURNAL}) {
+            for (long old : sequences(this.directory, prefix)) {
+                if (old < n) {
+                    try {
+                        Files.deleteIfExists(file(this.directory, prefix, old));
+                    } catch (IOException e) {
+                        // still mapped or in use, retried after the next checkpoint
+                    }
+                }
+            }
+        }
+    }
+
+    private static Path file(Path directory, String prefix, long n) {
+        return directory.resolve(prefix + String.format("%010d", n));
+    }
+
+    // the numbers of the files with the given prefix, in ascending order
+    private static List<Long> sequences(Path directory, String prefix) throws IOException {
+        List<Long> output = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return output;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path f : files) {
+                String digits = f.getFileName().toString().substring(prefix.length());
+                if (!digits.isEmpty() && digits.chars().allMatch(Character::isDigit)) {
+                    output.add(Long.parseLong(digits));
+                }
+            }
+        }
+        Collections.sort(output);
+        return output;
+    }
+}
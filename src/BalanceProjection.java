@@ -0,0 +1,157 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ConcurrentModificationException;
+
+/**
+ * A streaming projection of an account balance. Starting from a known balance, it folds in the account's daily cash
+ * flows and compounds interest daily, producing one (epoch day, balance) pair at the start of each unit.
+ * Flows are read in order from the account's CashFlowIndex, so memory stays constant however far the projection runs,
+ * the cost is linear in the points and flow days covered, and a consumer can stop at any point.
+ * The balance is held in long cents. Interest accrued since the last flow or point is credited, rounded to the
+ * nearest cent, whenever a flow is folded in or a point is produced, so the result never depends on float rounding.
+ * Points are stepped with CalendarBuckets arithmetic on epoch days, so advancing allocates nothing.
+ * Call next() to advance to each point, then read it with epochDay(), balance() and net(). Like the JDK's iterators,
+ * the projection fails fast if a cash flow changes while it is being read, rather than mixing old and new flows.
+ */
+public class BalanceProjection {
+    private final ChronoUnit unit;
+    private final long endDay; // the last day a point can fall on
+    private final double dailyGrowth; // the balance multiplier for one day of interest
+    private final CashFlowIndex flows; // the cash flows to fold in
+    private final int flowCount; // the number of days in flows
+    private final long expectedVersion; // the version of flows when the projection was created
+    private int flow; // the position of the next flow day to fold in
+
+    private long balance; // the balance at the end of day, in cents
+    private long day; // the last day folded into balance
+    private long previous; // the balance at the previous point, in cents
+    private long nextDay; // the day of the next point to produce, after endDay once the projection is exhausted
+    private long pointDay;
+    private long pointBalance;
+    private long pointNet;
+
+    /**
+     * Create a projection.
+     * @param balance the known balance at the end of the starting day, in cents.
+     * @param startDay the epoch day the balance is known on. Flows after this day are folded in.
+     * @param interest the annual interest rate. 1 = 100%.
+     * @param flows the cash flows to fold in.
+     * @param start the date of the first point is the start of the first unit not before start.
+     * @param end the last date a point can fall on, inclusive, or null to project without end.
+     * @param unit the unit between points, from days to millennia. Weeks start on Sunday.
+     * @throws IllegalArgumentException if the unit is shorter than a day or not a calendar unit.
+     */
+    public BalanceProjection(long balance, long startDay, float interest, CashFlowIndex flows,
+                             LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        Utils.checkNull(start, "Start Date");
+        Utils.checkNull(flows, "Cash flows");
+        Utils.checkNull(unit, "Unit");
+        this.unit = unit;
+        this.endDay = (end == null ? LocalDate.MAX : end.toLocalDate()).toEpochDay();
+        this.dailyGrowth = Math.pow(1 + interest, 1.0 / 365);
+        this.balance = balance;
+        this.day = startDay;
+        this.flows = flows;
+        this.flowCount = flows.compact();
+        this.expectedVersion = flows.version();
+        this.flow = flows.lowerBound(startDay + 1);
+
+        long rangeDay = start.toLocalDate().toEpochDay();
+        long firstDay = start.toLocalTime().equals(LocalTime.MIDNIGHT) ? rangeDay : rangeDay + 1;
+        long first = CalendarBuckets.startOf(firstDay, unit);
+        this.nextDay = first < firstDay ? CalendarBuckets.next(first, unit) : first;
+        advanceTo(rangeDay - 1);
+        this.previous = this.balance;
+    }
+
+    /**
+     * Advance to the next point of the projection.
+     * @return true if there is another point, false if the end of the projection was reached.
+     * @throws ConcurrentModificationException if a cash flow changed since the projection was created.
+     */
+    public boolean next() {
+        if (this.flows.version() != this.expectedVersion) {
+            throw new ConcurrentModificationException("Cash flows were modified during the projection.");
+        }
+        if (this.nextDay > this.endDay) {
+            return false;
+        }
+        this.pointDay = this.nextDay;
+        advanceTo(this.pointDay);
+        this.pointBalance = this.balance;
+        this.pointNet = this.balance - this.previous;
+        this.previous = this.balance;
+        this.nextDay = this.pointDay < this.endDay ? CalendarBuckets.next(this.pointDay, this.unit) : Long.MAX_VALUE;
+        return true;
+    }
+
+    /**
+     * Return the day of the current point.
+     * @return the epoch day of the point.
+     */
+    public long epochDay() {
+        return this.pointDay;
+    }
+
+    /**
+     * Return the date of the current point.
+     * @return the start of the day of the point.
+     */
+    public LocalDateTime date() {
+        return LocalDate.ofEpochDay(this.pointDay).atStartOfDay();
+    }
+
+    /**
+     * Return the projected balance at the end of the current point's day.
+     * @return the projected balance.
+     */
+    public float balance() {
+        return Money.toFloat(this.pointBalance);
+    }
+
+    /**
+     * Return the projected balance at the end of the current point's day, exactly.
+     * @return the projected balance in cents.
+     */
+    public long balanceCents() {
+        return this.pointBalance;
+    }
+
+    /**
+     * Return the projected gain or loss since the previous point, or since the start of the range for the first.
+     * @return the projected net change.
+     */
+    public float net() {
+        return Money.toFloat(this.pointNet);
+    }
+
+    /**
+     * Return the projected gain or loss since the previous point, exactly.
+     * @return the projected net change in cents.
+     */
+    public long netCents() {
+        return this.pointNet;
+    }
+
+    // fold every flow up to and including the given day, then compound interest to the end of it
+    private void advanceTo(long target) {
+        if (target <= this.day) {
+            return;
+        }
+        while (this.flow < this.flowCount && this.flows.dayAt(this.flow) <= target) {
+            grow(this.flows.dayAt(this.flow));
+            this.balance += this.flows.netAt(this.flow);
+            this.flow++;
+        }
+        grow(target);
+    }
+
+    private void grow(long toDay) {
+        if (toDay > this.day) {
+            this.balance = Money.scale(this.balance, Math.pow(this.dailyGrowth, toDay - this.day));
+            this.day = toDay;
+        }
+    }
+}
@@ -1,22 +1,65 @@
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import 
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class BudgetAccount implements IBudgetAccount{
     String name;
     String description;
     float estInterest = 0;
-    SortedMap<LocalDateTime, Float> actualValues;
-    ArrayList<ITransaction> transactions;
-    PolynomialSplineFunction
+    TimeSeries actualValues;
+    TransactionRegistry transactions;
+    Interpolator interpolator;
+    CashFlowIndex cashFlows;
+    RateOfReturn returns; // the account's rates of return, cached by range
+    ProjectionCache projections; // the account's recent interpolations and projections, cached by range
+    InflationIndex inflation; // the price index for real rates of return, null if there is none
+    private long version; // incremented whenever a value or the interest rate changes
+    final List<IBudgetAccountListener> listeners = new CopyOnWriteArrayList<>(); // observers, may change while notified
 
     public BudgetAccount(String name, String description, float interest) {
         this.name = name;
         this.description = description;
         this.estInterest = interest;
-        this.actualValues = new TreeMap<>();
-        this.transactions = new ArrayList<>();
+        this.actualValues = new TimeSeries();
+        this.interpolator = new Interpolator(this.actualValues);
+        this.cashFlows = new CashFlowIndex();
+        this.transactions = new TransactionRegistry();
+        this.returns = new RateOfReturn(this);
+        this.projections = new ProjectionCache(this);
+    }
+
+    /**
+     * Create an independent copy of the account, with copies of its values and transactions and no listeners.
+     * @return the copy.
+     */
+    public BudgetAccount copy() {
+        BudgetAccount account = new BudgetAccount(this.name, this.description, this.estInterest);
+        account.restoreValues(this.actualValues.copy());
+        account.inflation = this.inflation;
+        for (ITransaction t : this.transactions) {
+            account.addTransaction(Transaction.copyOf(t));
+        }
+        return account;
+    }
+
+    /**
+     * Create a scenario fork of the account: an independent account with the same values and transactions and no
+     * listeners. The fork shares its values, fitted curve, cash flow tree and transaction dates with this account, and
+     * each account copies only what it changes, so forking costs O(1) in the length of the account's history and an
+     * edit to a cash flow copies O(log n) nodes.
+     * @return the fork.
+     */
+    public BudgetAccount fork() {
+        BudgetAccount account = new BudgetAccount(this.name, this.description, this.estInterest);
+        account.actualValues = this.actualValues.fork();
+        account.interpolator = this.interpolator.fork(account.actualValues);
+        account.inflation = this.inflation;
+        for (ITransaction t : this.transactions) {
+            account.transactions.add(t instanceof Transaction ? ((Transaction) t).fork() : Transaction.copyOf(t));
+        }
+        account.cashFlows = this.cashFlows.fork(account.transactions);
+        return account;
     }
 
     @Override
@@ -28,7 +71,14 @@ public class BudgetAccount implements IBudgetAccount{
     @Override
     public void setName(String name) {
         Utils.checkNull(name, "Provided name");
+        for (IBudgetAccountListener l : this.listeners) {
+            l.checkName(this, name);
+        }
+        String old = this.name;
         this.name = name;
+        for (IBudgetAccountListener l : this.listeners) {
+            l.nameChanged(this, old, name);
+        }
     }
 
     @Override
@@ -41,48 +91,62 @@ public class BudgetAccount implements IBudgetAccount{
     public void setDescription(String description) {
         Utils.checkNull(description, "Provided Description");
         this.description = description;
+        for (IBudgetAccountListener l : this.listeners) {
+            l.descriptionChanged(this, description);
+        }
     }
 
     @Override
     public void addTransaction(ITransaction transaction) {
-        Utils.checkNull(transaction, "Provided ITransaction");
-        if (hasTransaction(transaction.getName())){
-            throw new IllegalArgumentException("Transaction of name: " + transaction.getName() + "already in model.");
-        }
         this.transactions.add(transaction);
+        this.cashFlows.addTransaction(transaction);
+        for (IBudgetAccountListener l : this.listeners) {
+            l.transactionAdded(this, transaction);
+        }
     }
 
     @Override
     public void removeTransaction(ITransaction transaction) {
-        Utils.checkNull(transaction, "Provided ITransaction");
-        if (!hasTransaction(transaction.getName())){
-            throw new IllegalArgumentException("Transaction of name: " + transaction.getName() + "not in model.");
-        }
         this.transactions.remove(transaction);
+        this.cashFlows.removeTransaction(transaction);
+        for (IBudgetAccountListener l : this.listeners) {
+            l.transactionRemoved(this, transaction);
+        }
     }
 
     @Override
     public ITransaction getTransaction(String name) {
-        List<ITransaction> l = Utils.filter(this.transactions, (p) -> Objects.equals(p.getName(), name));
-        if (l.isEmpty()){
+        long started = Metrics.ENABLED ? System.nanoTime() : 0;
+        ITransaction t = this.transactions.get(name);
+        if (t == null) {
             throw new IllegalArgumentException("No Transaction of name: " + name);
         }
-        return l.get(0);
+        if (Metrics.ENABLED) {
+            Metrics.record(this.name, Metrics.Operation.GET_TRANSACTION, started);
+            Metrics.recordSize(this.name, Metrics.Size.INSTANCES, t.numInstances());
+        }
+        return t;
     }
 
     @Override
     public boolean hasTransaction(String name) {
-        return Utils.andMap(transactions, (p) -> Objects.equals(p.getName(), name));
+        return this.transactions.contains(name);
     }
 
     @Override
     public List<String> getTransactions() {
-        return Utils.map(this.transactions, ITransaction::getName);
+        return this.transactions.names();
     }
 
     @Override
     public void setInterestRate(float interest) {
+        float old = this.estInterest;
         this.estInterest = interest;
+        this.version++;
+        this.projections.clear();
+        for (IBudgetAccountListener l : this.listeners) {
+            l.interestChanged(this, old, interest);
+        }
     }
 
     @Override
@@ -92,86 +156,284 @@ public class BudgetAccount implements IBudgetAccount{
 
     @Override
     public void enterValue(LocalDateTime date, float value) {
+        enterValueCents(date, Money.of(value));
+    }
+
+    @Override
+    public void enterValueCents(LocalDateTime date, long cents) {
         Utils.checkNull(date, "Entered Date");
-        if (hasValue(date)) {
-            this.actualValues.replace(date, value);
+        long started = Metrics.ENABLED ? System.nanoTime() : 0;
+        enterValue(Utils.toEpochSecond(date), cents);
+        for (IBudgetAccountListener l : this.listeners) {
+            l.valueEntered(this, date, cents);
         }
-        else {
-            this.actualValues.put(date, value);
+        if (Metrics.ENABLED) {
+            Metrics.record(this.name, Metrics.Operation.ENTER_VALUE, started);
+            Metrics.recordSize(this.name, Metrics.Size.HISTORY, this.actualValues.size());
         }
     }
 
+    @Override
+    public void enterValues(long[] times, long[] cents, int length) {
+        this.actualValues.putAll(times, cents, length);
+        if (length > 0) {
+            this.interpolator.reset();
+            this.version++;
+            this.projections.clear();
+        }
+        for (IBudgetAccountListener l : this.listeners) {
+            l.valuesEntered(this, times, cents, length);
+        }
+    }
+
+    /**
+     * Enter a value at an epoch second without notifying listeners, as when restoring saved state.
+     * @param time the epoch second of the value.
+     * @param cents the value to store, in cents.
+     */
+    void enterValue(long time, long cents) {
+        int size = this.actualValues.size();
+        int i = this.actualValues.put(time, cents);
+        this.interpolator.entered(i, this.actualValues.size() != size);
+        this.version++;
+        this.projections.valueChanged(time, i);
+    }
+
+    /**
+     * Replace every value of the account without notifying listeners, as when restoring saved state.
+     * @param values the values to use from now on.
+     */
+    void restoreValues(TimeSeries values) {
+        this.actualValues = values;
+        this.interpolator = new Interpolator(values);
+        this.version++;
+        this.projections.clear();
+    }
+
+    /**
+     * Remove the value at an epoch second without notifying listeners, as when restoring saved state.
+     * @param time the epoch second of the value.
+     * @return true if there was a value to remove, false otherwise.
+     */
+    boolean removeValue(long time) {
+        int i = this.actualValues.remove(time);
+        if (i >= 0) {
+            this.interpolator.removed(i);
+            this.version++;
+            this.projections.valueChanged(time, i);
+        }
+        return i >= 0;
+    }
+
     @Override
     public boolean hasValue(LocalDateTime date) {
-        return this.actualValues.containsKey(date);
+        Utils.checkNull(date, "Entered Date");
+        return this.actualValues.contains(Utils.toEpochSecond(date));
     }
 
     @Override
     public void removeValue(LocalDateTime date) {
         Utils.checkNull(date, "Entered Date");
-        if (hasValue(date)) {
-            this.actualValues.remove(date);
-        }
-        else {
+        if (!removeValue(Utils.toEpochSecond(date))) {
             throw new IllegalArgumentException("Model does not have a value on the given date: " + date);
         }
+        for (IBudgetAccountListener l : this.listeners) {
+            l.valueRemoved(this, date);
+        }
     }
 
     @Override
     public float getValue(int index) {
-        if (index < 0 || index >= this.actualValues.size()) {
-            throw new IllegalArgumentException("Index out of bounds. Requested index " + index +
-                    " of size " + this.actualValues.size());
-        }
-        int i = 0;
-        for ( Float f : this.actualValues.values()) {
-            i++;
-            if (i == index) {
-                return f;
-            }
-        }
-        throw new IllegalStateException("Could not find value at index: " + index);
+        return Money.toFloat(this.actualValues.valueAt(index));
     }
 
     @Override
     public float getValue(LocalDateTime date, boolean interpolate) {
-        return 0;
+        Utils.checkNull(date, "Date");
+        long time = Utils.toEpochSecond(date);
+        if (interpolate) {
+            return Money.toFloat(this.interpolator.valueAt(time, this.estInterest));
+        }
+        int i = this.actualValues.indexOf(time);
+        if (i < 0) {
+            throw new IllegalArgumentException("Model does not have a value on the given date: " + date);
+        }
+        return Money.toFloat(this.actualValues.valueAt(i));
     }
 
     @Override
     public float getNet(LocalDateTime date) {
-        return 0;
+        Utils.checkNull(date, "Date");
+        return Money.toFloat(this.cashFlows.net(date.toLocalDate().toEpochDay()));
+    }
+
+    @Override
+    public float getNet(LocalDateTime start, LocalDateTime end) {
+        return Money.toFloat(getNetCents(start, end));
+    }
+
+    @Override
+    public long getNetCents(LocalDateTime start, LocalDateTime end) {
+        checkRange(start, end);
+        return this.cashFlows.net(start.toLocalDate().toEpochDay(), end.toLocalDate().toEpochDay());
     }
 
     @Override
-    public Map<LocalDateTime, Float> getActualValues(LocalDateTime start, LocalDateTime end) {
-        Map<LocalDateTime, Float> m = new HashMap<>(this.actualValues);
-        m.keySet().removeIf(s -> Utils.dateWithinRange(s, start, end));
+    public SortedMap<LocalDateTime, Float> getActualValues(LocalDateTime start, LocalDateTime end) {
+        checkRange(start, end);
+        long started = Metrics.ENABLED ? System.nanoTime() : 0;
+        SortedMap<LocalDateTime, Float> m = this.actualValues.view(Utils.toEpochSecond(start),
+                Utils.toEpochSecond(end));
+        if (Metrics.ENABLED) {
+            Metrics.record(this.name, Metrics.Operation.GET_ACTUAL_VALUES, started);
+            Metrics.recordSize(this.name, Metrics.Size.HISTORY, this.actualValues.size());
+        }
         return m;
     }
 
     @Override
-    public Map<LocalDateTime, Float> interpolate(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
-        //construct an ordered list of actualized dates within the range (pad one additional value on each side)
+    public TimeSeries.Cursor getActualValueCursor(LocalDateTime start, LocalDateTime end) {
+        checkRange(start, end);
+        return this.actualValues.cursor(Utils.toEpochSecond(start), Utils.toEpochSecond(end));
+    }
 
-        //construct a list of values (nulls included) of non-interpolated actualized values.
+    @Override
+    public TimeSeries interpolateSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        checkRange(start, end);
+        Utils.checkNull(unit, "Unit");
+        long started = Metrics.ENABLED ? System.nanoTime() : 0;
+        ProjectionEvent event = new ProjectionEvent();
+        event.begin();
+        TimeSeries s = this.projections.interpolate(start, end, unit);
+        finish(Metrics.Operation.INTERPOLATE, started, event, unit, s.size());
+        return s;
+    }
 
-        //for each null in the list, see if it has enough values on each side to interpolate, or extrapolate
+    @Override
+    public TimeSeries extrapolateBalanceSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        checkRange(start, end);
+        Utils.checkNull(unit, "Unit");
+        long started = Metrics.ENABLED ? System.nanoTime() : 0;
+        ProjectionEvent event = new ProjectionEvent();
+        event.begin();
+        TimeSeries s = this.projections.project(start, end, unit, false);
+        finish(Metrics.Operation.EXTRAPOLATE_BALANCE, started, event, unit, s.size());
+        return s;
     }
 
     @Override
-    public Map<LocalDateTime, Float> extrapolateBalance(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
-        return null;
+    public TimeSeries extrapolateNetSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        checkRange(start, end);
+        Utils.checkNull(unit, "Unit");
+        long started = Metrics.ENABLED ? System.nanoTime() : 0;
+        ProjectionEvent event = new ProjectionEvent();
+        event.begin();
+        TimeSeries s = this.projections.project(start, end, unit, true);
+        finish(Metrics.Operation.EXTRAPOLATE_NET, started, event, unit, s.size());
+        return s;
     }
 
     @Override
-    public Map<LocalDateTime, Float> extrapolateNet(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
-        return null;
+    public BalanceProjection projectBalance(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        Utils.checkNull(start, "Start Date");
+        Utils.checkNull(unit, "Unit");
+        if (end != null && start.isAfter(end)) {
+            throw new IllegalArgumentException("Start date " + start + " is after end date " + end);
+        }
+        // start from the last value entered on or before the start, otherwise from the curve at the start
+        long startDay = start.toLocalDate().toEpochDay() - 1;
+        long balance = 0;
+        int i = this.actualValues.upperBound(Utils.toEpochSecond(start)) - 1;
+        if (i >= 0) {
+            startDay = Math.floorDiv(this.actualValues.timeAt(i), 86400L);
+            balance = this.actualValues.valueAt(i);
+        }
+        else if (!this.actualValues.isEmpty()) {
+            balance = this.interpolator.valueAt(Utils.toEpochSecond(start), this.estInterest);
+        }
+        return new BalanceProjection(balance, startDay, this.estInterest, this.cashFlows, start, end, unit);
     }
 
+    /**
+     * Calculate the money-weighted (XIRR) annual rate of return, from the account's value at the start of the range,
+     * its transactions within it and its value at the end of it. The real rate removes the annual rate of inflation
+     * over the same days.
+     */
     @Override
     public float rateOfReturn(LocalDateTime start, LocalDateTime end, boolean includeInflation) {
-        return 0;
+        if (includeInflation && this.inflation == null) {
+            throw new IllegalStateException("Account has no inflation index.");
+        }
+        long started = Metrics.ENABLED ? System.nanoTime() : 0;
+        double rate = this.returns.moneyWeighted(start, end);
+        if (includeInflation) {
+            double inflation = this.inflation.annualRate(start.toLocalDate().toEpochDay() - 1,
+                    end.toLocalDate().toEpochDay());
+            rate = (1 + rate) / (1 + inflation) - 1;
+        }
+        if (Metrics.ENABLED) {
+            Metrics.record(this.name, Metrics.Operation.RATE_OF_RETURN, started);
+        }
+        return (float) rate;
     }
 
+    @Override
+    public void setInflationIndex(InflationIndex index) {
+        this.inflation = index;
+    }
+
+    @Override
+    public InflationIndex getInflationIndex() {
+        return this.inflation;
+    }
+
+    @Override
+    public RateOfReturn returns() {
+        return this.returns;
+    }
+
+    /**
+     * Return a number that increases whenever a change to the account could change its values, flows or projections.
+     * @return the version of the account.
+     */
+    long version() {
+        return this.version + this.cashFlows.version();
+    }
+
+    @Override
+    public void addListener(IBudgetAccountListener listener) {
+        Utils.checkNull(listener, "Provided listener");
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(IBudgetAccountListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    // record a finished projection in the metrics and, if it was slow enough for a running recording, in JFR
+    private void finish(Metrics.Operation operation, long started, ProjectionEvent event, ChronoUnit unit,
+                        int points) {
+        if (Metrics.ENABLED) {
+            Metrics.record(this.name, operation, started);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.account = this.name;
+            event.operation = operation.name();
+            event.unit = unit.name();
+            event.points = points;
+            event.historySize = this.actualValues.size();
+            event.transactions = this.transactions.size();
+            event.commit();
+        }
+    }
+
+    private static void checkRange(LocalDateTime start, LocalDateTime end) {
+        Utils.checkNull(start, "Start Date");
+        Utils.checkNull(end, "End Date");
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start date " + start + " is after end date " + end);
+        }
+    }
 }
@@ -0,0 +1,142 @@
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A budget model holding many accounts, indexed by name. The model listens to each account it holds, so the index
+ * follows IBudgetAccount.setName, and renaming an account to the name of another is rejected.
+ * The model may be read from many threads while accounts are added, removed and renamed: lookups read a concurrent map
+ * and the order of the accounts is a copy-on-write list, so readers take no lock, and changes are made one at a time.
+ * Aggregate series are computed by projecting every account in parallel into a primitive array per account and
+ * summing the arrays, so a rollup takes about as long as its slowest account. The arrays hold long cents, so the totals
+ * are exact and identical whatever order the parallel sums complete in.
+ */
+public class BudgetModel implements IBudgetModel {
+    private final Map<String, Entry> accounts = new ConcurrentHashMap<>(); // accounts keyed by current name
+    private final List<Entry> ordered = new CopyOnWriteArrayList<>(); // accounts in the order they were added
+
+    @Override
+    public void addAccount(IBudgetAccount account) {
+        Utils.checkNull(account, "Provided IBudgetAccount");
+        Entry entry = new Entry(account);
+        // listen first, outside the model's lock, so a rename while the account is added is not missed
+        account.addListener(entry);
+        String name;
+        boolean added;
+        synchronized (this.accounts) {
+            name = account.getName();
+            added = this.accounts.putIfAbsent(name, entry) == null;
+            if (added) {
+                this.ordered.add(entry);
+            }
+        }
+        if (!added) {
+            account.removeListener(entry);
+            throw new IllegalArgumentException("Account of name: " + name + " already in model.");
+        }
+    }
+
+    @Override
+    public void removeAccount(String name) {
+        Entry entry;
+        synchronized (this.accounts) {
+            entry = name == null ? null : this.accounts.remove(name);
+            if (entry != null) {
+                this.ordered.remove(entry);
+            }
+        }
+        if (entry == null) {
+            throw new IllegalArgumentException("No Account of name: " + name);
+        }
+        entry.account.removeListener(entry);
+    }
+
+    @Override
+    public IBudgetAccount getAccount(String name) {
+        Entry entry = name == null ? null : this.accounts.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("No Account of name: " + name);
+        }
+        return entry.account;
+    }
+
+    @Override
+    public boolean hasAccount(String name) {
+        return name != null && this.accounts.containsKey(name);
+    }
+
+    @Override
+    public List<String> getAccounts() {
+        List<String> names = new ArrayList<>(this.ordered.size());
+        for (Entry e : this.ordered) {
+            names.add(e.account.getName());
+        }
+        return names;
+    }
+
+    @Override
+    public TimeSeries aggregateBalanceSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        return aggregate(start, end, unit, false);
+    }
+
+    @Override
+    public TimeSeries aggregateNetSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        return aggregate(start, end, unit, true);
+    }
+
+    private TimeSeries aggregate(LocalDateTime start, LocalDateTime end, ChronoUnit unit, boolean net) {
+        Utils.checkNull(start, "Start Date");
+        Utils.checkNull(end, "End Date");
+        Utils.checkNull(unit, "Unit");
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start date " + start + " is after end date " + end);
+        }
+        long[] grid = Utils.grid(start, end, unit);
+        int n = grid.length;
+        long[] totals = new ArrayList<>(this.ordered).parallelStream()
+                .map(e -> series(e.account, start, end, unit, n, net))
+                .collect(() -> new long[n], Money::addInto, Money::addInto);
+        return new TimeSeries(grid, totals, n);
+    }
+
+    // project one account onto the grid, in cents
+    private static long[] series(IBudgetAccount account, LocalDateTime start, LocalDateTime end, ChronoUnit unit,
+                                 int n, boolean net) {
+        long[] output = new long[n];
+        BalanceProjection p = account.projectBalance(start, end, unit);
+        for (int i = 0; i < n && p.next(); i++) {
+            output[i] = net ? p.netCents() : p.balanceCents();
+        }
+        return output;
+    }
+
+    // an account of the model, listening to it to keep the name index in step with its name
+    private final class Entry implements IBudgetAccountListener {
+        private final IBudgetAccount account; // the account as added, which may wrap the one that notifies
+
+        Entry(IBudgetAccount account) {
+            this.account = account;
+        }
+
+        @Override
+        public void checkName(IBudgetAccount changing, String newName) {
+            Entry holder = BudgetModel.this.accounts.get(newName);
+            if (holder != null && holder != this) {
+                throw new IllegalArgumentException("Account of name: " + newName + " already in model.");
+            }
+        }
+
+        @Override
+        public void nameChanged(IBudgetAccount changed, String oldName, String newName) {
+            synchronized (BudgetModel.this.accounts) {
+                if (BudgetModel.this.accounts.remove(oldName, this)) {
+                    BudgetModel.this.accounts.put(newName, this);
+                }
+            }
+        }
+    }
+}
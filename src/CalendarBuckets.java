@@ -0,0 +1,256 @@
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The calendar units (days, weeks, months, quarters, years and longer) starting within a range of days, as epoch days.
+ * Each bucket runs from its start day up to the start of the next. Weeks start on Sunday; months and longer units
+ * start on the first day of the unit.
+ * Bucket starts are found with integer arithmetic on epoch days, converting to and from the civil calendar without
+ * creating date objects, and the starts of a range are computed once and shared by every caller asking for the same
+ * range. Finding the bucket of a day is a binary search over the starts.
+ */
+public final class CalendarBuckets {
+    private static final int CACHE_SIZE = 1024;
+    private static final int QUARTER = -3; // the step of quarters, which have no ChronoUnit
+    private static final long DAYS_PER_400_YEARS = 146097;
+    private static final long EPOCH_SHIFT = 719468; // the days from 0000-03-01 to 1970-01-01
+    private static final Map<Key, CalendarBuckets> CACHE = new ConcurrentHashMap<>();
+
+    private final long[] starts; // the epoch day each bucket starts on, in ascending order
+
+    private CalendarBuckets(long[] starts) {
+        this.starts = starts;
+    }
+
+    /**
+     * Return the buckets of a unit that start within a range of days.
+     * @param firstDay the first epoch day of the range, inclusive.
+     * @param lastDay the last epoch day of the range, inclusive.
+     * @param unit the unit of the buckets, from days to millennia.
+     * @return the buckets, shared with other callers asking for the same range.
+     * @throws IllegalArgumentException if the unit is shorter than a day or not a calendar unit.
+     */
+    public static CalendarBuckets of(long firstDay, long lastDay, ChronoUnit unit) {
+        return cached(firstDay, lastDay, step(unit));
+    }
+
+    /**
+     * Return the buckets of a unit that start within a range of dates. A bucket starting on the first day is only
+     * included if the range starts at midnight.
+     * @param start the first date of the range, inclusive.
+     * @param end the last date of the range, inclusive.
+     * @param unit the unit of the buckets, from days to millennia.
+     * @return the buckets, shared with other callers asking for the same range.
+     * @throws IllegalArgumentException if the unit is shorter than a day or not a calendar unit.
+     */
+    public static CalendarBuckets of(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        Utils.checkNull(start, "Start Date");
+        Utils.checkNull(end, "End Date");
+        long firstDay = start.toLocalDate().toEpochDay();
+        if (!start.toLocalTime().equals(LocalTime.MIDNIGHT)) {
+            firstDay++;
+        }
+        return of(firstDay, end.toLocalDate().toEpochDay(), unit);
+    }
+
+    /**
+     * Return the calendar quarters, starting in January, April, July and October, that start within a range of days.
+     * @param firstDay the first epoch day of the range, inclusive.
+     * @param lastDay the last epoch day of the range, inclusive.
+     * @return the buckets, shared with other callers asking for the same range.
+     */
+    public static CalendarBuckets quarters(long firstDay, long lastDay) {
+        return cached(firstDay, lastDay, QUARTER);
+    }
+
+    /**
+     * Find the first day of the unit containing a day.
+     * @param day the epoch day.
+     * @param unit the unit, from days to millennia.
+     * @return the epoch day the unit containing day starts on.
+     * @throws IllegalArgumentException if the unit is shorter than a day or not a calendar unit.
+     */
+    public static long startOf(long day, ChronoUnit unit) {
+        return startOf(day, step(unit));
+    }
+
+    /**
+     * Find the first day of the unit after the one starting on a day.
+     * @param startDay the epoch day a unit starts on.
+     * @param unit the unit, from days to millennia.
+     * @return the epoch day the following unit starts on.
+     * @throws IllegalArgumentException if the unit is shorter than a day or not a calendar unit.
+     */
+    public static long next(long startDay, ChronoUnit unit) {
+        return next(startDay, step(unit));
+    }
+
+    /**
+     * Return the number of buckets.
+     * @return the number of buckets starting within the range.
+     */
+    public int size() {
+        return this.starts.length;
+    }
+
+    /**
+     * Return the first day of the nth bucket.
+     * @param index the index of the bucket.
+     * @return the epoch day the bucket starts on.
+     */
+    public long startDay(int index) {
+        return this.starts[index];
+    }
+
+    /**
+     * Find the bucket containing a day.
+     * @param day the epoch day.
+     * @return the index of the last bucket starting on or before day, or -1 if day is before the first bucket.
+     */
+    public int bucketOf(long day) {
+        int i = Arrays.binarySearch(this.starts, day);
+        return i >= 0 ? i : -(i + 1) - 1;
+    }
+
+    /**
+     * Return the start of every bucket as epoch seconds, at midnight UTC.
+     * @return a new array of the epoch second each bucket starts at.
+     */
+    public long[] startSeconds() {
+        long[] output = new long[this.starts.length];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = this.starts[i] * 86400L;
+        }
+        return output;
+    }
+
+    private static CalendarBuckets cached(long firstDay, long lastDay, int step) {
+        Key key = new Key(firstDay, lastDay, step);
+        CalendarBuckets buckets = CACHE.get(key);
+        if (buckets == null) {
+            buckets = new CalendarBuckets(starts(firstDay, lastDay, step));
+            if (CACHE.size() >= CACHE_SIZE) {
+                CACHE.clear();
+            }
+            CACHE.put(key, buckets);
+        }
+        return buckets;
+    }
+
+    private static long[] starts(long firstDay, long lastDay, int step) {
+        if (lastDay < firstDay) {
+            return new long[0];
+        }
+        long day = startOf(firstDay, step);
+        if (day < firstDay) {
+            day = next(day, step);
+        }
+        long[] output = new long[16];
+        int n = 0;
+        for (; day <= lastDay; day = next(day, step)) {
+            if (n == output.length) {
+                output = Arrays.copyOf(output, n * 2);
+            }
+            output[n++] = day;
+        }
+        return Arrays.copyOf(output, n);
+    }
+
+    // the length of a unit: positive in days, negative in months
+    private static int step(ChronoUnit unit) {
+        Utils.checkNull(unit, "Unit");
+        switch (unit) {
+            case DAYS:
+                return 1;
+            case WEEKS:
+                return 7;
+            case MONTHS:
+                return -1;
+            case YEARS:
+                return -12;
+            case DECADES:
+                return -120;
+            case CENTURIES:
+                return -1200;
+            case MILLENNIA:
+                return -12000;
+            default:
+                throw new IllegalArgumentException("Unsupported unit: " + unit);
+        }
+    }
+
+    private static long startOf(long day, int step) {
+        if (step == 1) {
+            return day;
+        }
+        if (step == 7) {
+            return day - Math.floorMod(day + 4, 7); // 1970-01-01 was a Thursday
+        }
+        return dayOfMonth(Math.floorDiv(monthOf(day), -step) * -step);
+    }
+
+    private static long next(long startDay, int step) {
+        if (step > 0) {
+            return startDay + step;
+        }
+        return dayOfMonth(monthOf(startDay) - step);
+    }
+
+    // the months since year 0 of the month containing an epoch day
+    private static long monthOf(long day) {
+        long z = day + EPOCH_SHIFT;
+        long era = Math.floorDiv(z, DAYS_PER_400_YEARS);
+        long dayOfEra = z - era * DAYS_PER_400_YEARS;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shifted = (5 * dayOfYear + 2) / 153; // months since March
+        long month = shifted < 10 ? shifted + 2 : shifted - 10; // 0 = January
+        long year = yearOfEra + era * 400 + (month <= 1 ? 1 : 0);
+        return year * 12 + month;
+    }
+
+    // the epoch day of the first day of a month counted since year 0
+    private static long dayOfMonth(long months) {
+        long year = Math.floorDiv(months, 12);
+        long month = Math.floorMod(months, 12); // 0 = January
+        if (month <= 1) {
+            year--;
+        }
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month <= 1 ? month + 10 : month - 2) + 2) / 5;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_400_YEARS + dayOfEra - EPOCH_SHIFT;
+    }
+
+    // a cached range of buckets
+    private static final class Key {
+        private final long firstDay;
+        private final long lastDay;
+        private final int step;
+
+        Key(long firstDay, long lastDay, int step) {
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+            this.step = step;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return this.firstDay == k.firstDay && this.lastDay == k.lastDay && this.step == k.step;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.firstDay * 31 + this.lastDay) * 31 + this.step;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A cumulative index of the cash flowing through an account, built from every occurrence of its transactions.
+ * Days that have a cash flow are kept in a FlowTree, a persistent B+tree holding the total of each subtree, so the
+ * net flow on a day, over a range of days, or up to a day is found in O(log n), and so is changing the flow on a day.
+ * fork() shares the tree with the fork in O(1); each index then copies only the nodes its own edits touch.
+ * To walk the days in order, compact() flattens the tree into sorted arrays, kept until a flow changes on a new day.
+ * Flows are held as long cents, so totals are exact and do not depend on the order flows were added in.
+ * The index listens to the transactions it was built from and follows their instances and amounts.
+ */
+public class CashFlowIndex implements ITransactionListener {
+    private FlowTree tree = new FlowTree(); // the net flow of every day with a cash flow
+    private long[] days = new long[0]; // the days of tree in ascending order, when compacted
+    private long[] daily = new long[0]; // the net flow on each day of days
+    private boolean compacted = true; // whether days and daily hold every day of tree
+    private long version; // incremented whenever a flow changes
+    private long earliestChange = Long.MAX_VALUE; // the earliest day changed since takeEarliestChange was called
+
+    /**
+     * Create an index with the same flows, sharing its tree with this one in O(1), that follows the given
+     * transactions. The transactions must have the same instances and amounts as the ones this index follows.
+     * @param transactions the transactions the fork follows from now on.
+     * @return the fork.
+     */
+    public CashFlowIndex fork(Iterable<? extends ITransaction> transactions) {
+        Utils.checkNull(transactions, "Transactions");
+        CashFlowIndex index = new CashFlowIndex();
+        index.tree = this.tree.fork();
+        index.compacted = index.tree.size() == 0;
+        index.version = this.version;
+        for (ITransaction t : transactions) {
+            t.addListener(index);
+        }
+        return index;
+    }
+
+    /**
+     * Add every occurrence of a transaction to the index, and follow its changes from now on.
+     * @param transaction the transaction to add.
+     */
+    public void addTransaction(ITransaction transaction) {
+        Utils.checkNull(transaction, "Provided ITransaction");
+        addAll(transaction, transaction.getAmountCents());
+        transaction.addListener(this);
+    }
+
+    /**
+     * Remove every occurrence of a transaction from the index, and stop following its changes.
+     * @param transaction the transaction to remove.
+     */
+    public void removeTransaction(ITransaction transaction) {
+        Utils.checkNull(transaction, "Provided ITransaction");
+        transaction.removeListener(this);
+        addAll(transaction, -transaction.getAmountCents());
+    }
+
+    /**
+     * Add a cash flow on a day.
+     * @param day the epoch day of the flow.
+     * @param amount the amount of the flow in cents, negative for an outflow.
+     */
+    public void add(long day, long amount) {
+        this.version++;
+        this.earliestChange = Math.min(this.earliestChange, day);
+        this.tree.add(day, amount);
+        if (this.compacted) {
+            int i = Arrays.binarySearch(this.days, day);
+            if (i >= 0) {
+                this.daily[i] += amount;
+            }
+            else {
+                this.compacted = false;
+            }
+        }
+    }
+
+    /**
+     * Add the same cash flow on each of a sorted run of days, in O(length log n).
+     * @param days the epoch days of the flows, in ascending order. A day may repeat.
+     * @param length the number of days to take from the start of the array.
+     * @param amount the amount of each flow in cents, negative for an outflow.
+     */
+    public void add(long[] days, int length, long amount) {
+        for (int k = 0; k < length; k++) {
+            add(days[k], amount);
+        }
+    }
+
+    /**
+     * Return a number that increases whenever a flow in the index changes, so results derived from it can be reused
+     * until it changes.
+     * @return the version of the index.
+     */
+    public long version() {
+        return this.version;
+    }
+
+    /**
+     * Return the earliest day whose flow changed since the last call, and start tracking changes afresh, so results
+     * derived from the index can keep what comes before it. Meant for the single owner of the index.
+     * @return the earliest changed epoch day, or Long.MAX_VALUE if no flow changed.
+     */
+    long takeEarliestChange() {
+        long day = this.earliestChange;
+        this.earliestChange = Long.MAX_VALUE;
+        return day;
+    }
+
+    /**
+     * Get the net cash flow on a day.
+     * @param day the epoch day.
+     * @return the net flow on the day, in cents.
+     */
+    public long net(long day) {
+        return this.tree.get(day);
+    }
+
+    /**
+     * Get the net cash flow over a range of days.
+     * @param from the first epoch day, inclusive.
+     * @param to the last epoch day, inclusive.
+     * @return the net flow within the range, in cents.
+     */
+    public long net(long from, long to) {
+        if (to < from) {
+            return 0;
+        }
+        return total(to) - (from == Long.MIN_VALUE ? 0 : total(from - 1));
+    }
+
+    /**
+     * Get the running total of cash flows up to a day.
+     * @param day the last epoch day, inclusive.
+     * @return the net flow of every day up to and including day, in cents.
+     */
+    public long total(long day) {
+        return this.tree.total(day);
+    }
+
+    /**
+     * Flatten the index into sorted arrays if a day was added since the last call, so that days can be walked with
+     * dayAt and netAt.
+     * @return the number of days in the index.
+     */
+    public int compact() {
+        if (!this.compacted) {
+            long[] days = new long[this.tree.size()];
+            long[] daily = new long[days.length];
+            this.tree.copyTo(days, daily);
+            this.days = days;
+            this.daily = daily;
+            this.compacted = true;
+        }
+        return this.days.length;
+    }
+
+    /**
+     * Return the index of the first day not before the given day. Only meaningful after compact().
+     * @param day the epoch day to search from.
+     * @return the position of the first day not before day, or the number of days if there is none.
+     */
+    public int lowerBound(long day) {
+        int i = Arrays.binarySearch(this.days, day);
+        return i >= 0 ? i : -(i + 1);
+    }
+
+    /**
+     * Return the nth day of the index. Only meaningful after compact().
+     * @param index the position of the day.
+     * @return the epoch day.
+     */
+    public long dayAt(int index) {
+        return this.days[index];
+    }
+
+    /**
+     * Return the net flow on the nth day of the index. Only meaningful after compact().
+     * @param index the position of the day.
+     * @return the net flow on the day, in cents.
+     */
+    public long netAt(int index) {
+        return this.daily[index];
+    }
+
+    @Override
+    public void instanceAdded(ITransaction transaction, LocalDateTime date) {
+        add(date.toLocalDate().toEpochDay(), transaction.getAmountCents());
+    }
+
+    @Override
+    public void instancesAdded(ITransaction transaction, List<LocalDateTime> dates) {
+        add(epochDays(dates), transaction.getAmountCents());
+    }
+
+    @Override
+    public void instanceRemoved(ITransaction transaction, LocalDateTime date) {
+        add(date.toLocalDate().toEpochDay(), -transaction.getAmountCents());
+    }
+
+    @Override
+    public void amountChanged(ITransaction transaction, long oldAmount, long newAmount) {
+        addAll(transaction, newAmount - oldAmount);
+    }
+
+    private void addAll(ITransaction transaction, long amount) {
+        add(epochDays(transaction.getTransactions()), amount);
+    }
+
+    private void add(long[] days, long amount) {
+        add(days, days.length, amount);
+    }
+
+    private static long[] epochDays(List<LocalDateTime> dates) {
+        long[] days = new long[dates.size()];
+        for (int k = 0; k < days.length; k++) {
+            days[k] = dates.get(k).toLocalDate().toEpochDay();
+        }
+        return days;
+    }
+}
@@ -0,0 +1,279 @@
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A BudgetAccount that can be read and written from many threads at once.
+ * Writers change a private working account one at a time under a lock. Readers never take the lock: they read a
+ * published fork of the account that is never changed once published, so every read, including a whole projection,
+ * sees one consistent version, and reads scale with the number of threads.
+ * A write only marks the published fork as stale. The next reader to find it stale and the lock free publishes a
+ * fresh fork, so a burst of writes costs a single fork, which shares its structure with the working account rather
+ * than copying it. While a write is in progress, readers keep using the last published version rather than waiting
+ * for it, except that a thread always sees its own writes: a thread whose last write is not yet published waits for
+ * the lock and publishes it.
+ * Transactions returned by getTransaction belong to a published version and must not be changed; change the account's
+ * transactions with updateTransaction instead. Listeners are notified on the writing thread, with the lock held.
+ */
+public class ConcurrentBudgetAccount implements IBudgetAccount {
+    private final BudgetAccount working; // the account writers change, guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile BudgetAccount published; // the latest read-only fork of working
+    private volatile boolean stale; // whether working has changed since published was copied
+    private long writes; // the number of writes made to working, guarded by lock
+    private volatile long publishedWrites; // the number of writes included in published
+    // the number of writes made as of each thread's last write, so a thread can tell whether it is published
+    private final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[1]);
+
+    public ConcurrentBudgetAccount(String name, String description, float interest) {
+        this(new BudgetAccount(name, description, interest));
+    }
+
+    /**
+     * Share an existing account between threads. The account must not be used directly from now on.
+     * @param account the account to share.
+     */
+    public ConcurrentBudgetAccount(BudgetAccount account) {
+        Utils.checkNull(account, "Account");
+        this.working = account;
+        this.published = freeze(account.fork());
+    }
+
+    /**
+     * Change a transaction of the account under the write lock.
+     * @param name the name of the transaction.
+     * @param change the change to make to the transaction.
+     * @throws IllegalArgumentException if there is no transaction of the given name.
+     */
+    public void updateTransaction(String name, Consumer<ITransaction> change) {
+        Utils.checkNull(change, "Change");
+        write(a -> change.accept(a.getTransaction(name)));
+    }
+
+    @Override
+    public String getName() {
+        return current().getName();
+    }
+
+    @Override
+    public void setName(String name) {
+        write(a -> a.setName(name));
+    }
+
+    @Override
+    public String getDescription() {
+        return current().getDescription();
+    }
+
+    @Override
+    public void setDescription(String description) {
+        write(a -> a.setDescription(description));
+    }
+
+    /**
+     * Add a copy of a transaction to the account, so that later changes to the given transaction have no effect.
+     * @param transaction the transaction to add.
+     */
+    @Override
+    public void addTransaction(ITransaction transaction) {
+        Transaction copy = Transaction.copyOf(transaction);
+        write(a -> a.addTransaction(copy));
+    }
+
+    /**
+     * Remove the transaction of the same name as the one given, which may come from a published version.
+     * @param transaction the transaction to remove.
+     * @throws IllegalArgumentException if the transaction does not exist in the model.
+     */
+    @Override
+    public void removeTransaction(ITransaction transaction) {
+        Utils.checkNull(transaction, "Provided ITransaction");
+        write(a -> a.removeTransaction(a.getTransaction(transaction.getName())));
+    }
+
+    @Override
+    public ITransaction getTransaction(String name) {
+        return current().getTransaction(name);
+    }
+
+    @Override
+    public boolean hasTransaction(String name) {
+        return current().hasTransaction(name);
+    }
+
+    @Override
+    public List<String> getTransactions() {
+        return current().getTransactions();
+    }
+
+    @Override
+    public void setInterestRate(float interest) {
+        write(a -> a.setInterestRate(interest));
+    }
+
+    @Override
+    public float getInterestRate() {
+        return current().getInterestRate();
+    }
+
+    @Override
+    public void enterValue(LocalDateTime date, float value) {
+        write(a -> a.enterValue(date, value));
+    }
+
+    @Override
+    public void enterValueCents(LocalDateTime date, long cents) {
+        write(a -> a.enterValueCents(date, cents));
+    }
+
+    @Override
+    public void enterValues(long[] times, long[] cents, int length) {
+        write(a -> a.enterValues(times, cents, length));
+    }
+
+    @Override
+    public boolean hasValue(LocalDateTime date) {
+        return current().hasValue(date);
+    }
+
+    @Override
+    public void removeValue(LocalDateTime date) {
+        write(a -> a.removeValue(date));
+    }
+
+    @Override
+    public float getValue(int index) {
+        return current().getValue(index);
+    }
+
+    @Override
+    public float getValue(LocalDateTime date, boolean interpolate) {
+        return current().getValue(date, interpolate);
+    }
+
+    @Override
+    public float getNet(LocalDateTime date) {
+        return current().getNet(date);
+    }
+
+    @Override
+    public float getNet(LocalDateTime start, LocalDateTime end) {
+        return current().getNet(start, end);
+    }
+
+    @Override
+    public long getNetCents(LocalDateTime start, LocalDateTime end) {
+        return current().getNetCents(start, end);
+    }
+
+    @Override
+    public SortedMap<LocalDateTime, Float> getActualValues(LocalDateTime start, LocalDateTime end) {
+        return current().getActualValues(start, end);
+    }
+
+    @Override
+    public TimeSeries.Cursor getActualValueCursor(LocalDateTime start, LocalDateTime end) {
+        return current().getActualValueCursor(start, end);
+    }
+
+    @Override
+    public TimeSeries interpolateSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        return current().interpolateSeries(start, end, unit);
+    }
+
+    @Override
+    public TimeSeries extrapolateBalanceSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        return current().extrapolateBalanceSeries(start, end, unit);
+    }
+
+    @Override
+    public TimeSeries extrapolateNetSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        return current().extrapolateNetSeries(start, end, unit);
+    }
+
+    @Override
+    public BalanceProjection projectBalance(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        return current().projectBalance(start, end, unit);
+    }
+
+    @Override
+    public float rateOfReturn(LocalDateTime start, LocalDateTime end, boolean includeInflation) {
+        return current().rateOfReturn(start, end, includeInflation);
+    }
+
+    /**
+     * Return the rates of return of the latest published version, which never changes.
+     */
+    @Override
+    public RateOfReturn returns() {
+        return current().returns();
+    }
+
+    @Override
+    public void setInflationIndex(InflationIndex index) {
+        write(a -> a.setInflationIndex(index));
+    }
+
+    @Override
+    public InflationIndex getInflationIndex() {
+        return current().getInflationIndex();
+    }
+
+    @Override
+    public void addListener(IBudgetAccountListener listener) {
+        write(a -> a.addListener(listener));
+    }
+
+    @Override
+    public void removeListener(IBudgetAccountListener listener) {
+        write(a -> a.removeListener(listener));
+    }
+
+    private void write(Consumer<BudgetAccount> change) {
+        this.lock.lock();
+        try {
+            this.stale = true;
+            change.accept(this.working);
+        } finally {
+            this.lastWrite.get()[0] = ++this.writes;
+            this.lock.unlock();
+        }
+    }
+
+    // the latest published version, publishing a new one first if it is stale and no write is in progress, or if it
+    // is missing this thread's last write
+    private BudgetAccount current() {
+        if (this.stale) {
+            if (this.lastWrite.get()[0] > this.publishedWrites) {
+                this.lock.lock();
+            }
+            else if (!this.lock.tryLock()) {
+                return this.published;
+            }
+            try {
+                if (this.stale) {
+                    this.stale = false;
+                    long included = this.writes;
+                    this.published = freeze(this.working.fork());
+                    this.publishedWrites = included;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+        return this.published;
+    }
+
+    // complete the lazy work of a fork, so that reading it from many threads changes nothing
+    private static BudgetAccount freeze(BudgetAccount account) {
+        if (!account.actualValues.isEmpty()) {
+            account.interpolator.fit();
+        }
+        account.cashFlows.compact();
+        return account;
+    }
+}
@@ -0,0 +1,227 @@
+import java.util.Arrays;
+
+/**
+ * A persistent B+tree of net cash flows by epoch day, with the count and total of the flows below each node, so the
+ * flow on a day and the running total up to a day are found in O(log n).
+ * Trees share structure: fork() returns a new tree sharing every node with this one in O(1). Each tree then copies a
+ * node the first time it changes it, so an edit copies only the O(log n) nodes on the path to its day and every other
+ * node stays shared by all the forks. Nodes created by a tree since its last fork belong to it and are changed in
+ * place, so a tree that is never forked behaves like an ordinary mutable B+tree.
+ * Days are never removed: a day whose flows cancel out keeps a flow of 0.
+ */
+public class FlowTree {
+    private static final int MAX = 32; // the most days in a leaf or children in an inner node
+
+    private Node root;
+    private Object owner = new Object(); // marks the nodes this tree may change in place
+
+    public FlowTree() {
+        this.root = new Node(this.owner, true);
+    }
+
+    private FlowTree(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Create a tree with the same flows, sharing every node with this one. Later changes to either tree are not
+     * visible in the other.
+     * @return the new tree.
+     */
+    public FlowTree fork() {
+        this.owner = new Object();
+        return new FlowTree(this.root);
+    }
+
+    /**
+     * Return the number of days with a flow.
+     * @return the number of days.
+     */
+    public int size() {
+        return this.root.count;
+    }
+
+    /**
+     * Add a cash flow on a day.
+     * @param day the epoch day of the flow.
+     * @param amount the amount of the flow in cents, negative for an outflow.
+     */
+    public void add(long day, long amount) {
+        this.root = writable(this.root);
+        add(this.root, day, amount);
+        if (this.root.size > MAX) {
+            Node top = new Node(this.owner, false);
+            top.children[0] = this.root;
+            top.keys[0] = this.root.keys[0];
+            top.size = 1;
+            top.count = this.root.count;
+            top.sum = this.root.sum;
+            split(top, 0);
+            this.root = top;
+        }
+    }
+
+    /**
+     * Get the net cash flow on a day.
+     * @param day the epoch day.
+     * @return the net flow on the day, in cents.
+     */
+    public long get(long day) {
+        Node node = this.root;
+        while (!node.leaf) {
+            node = node.children[child(node, day)];
+        }
+        int i = Arrays.binarySearch(node.keys, 0, node.size, day);
+        return i >= 0 ? node.values[i] : 0;
+    }
+
+    /**
+     * Get the running total of cash flows up to a day.
+     * @param day the last epoch day, inclusive.
+     * @return the net flow of every day up to and including day, in cents.
+     */
+    public long total(long day) {
+        long sum = 0;
+        Node node = this.root;
+        while (!node.leaf) {
+            int c = child(node, day);
+            for (int i = 0; i < c; i++) {
+                sum += node.children[i].sum;
+            }
+            node = node.children[c];
+        }
+        for (int i = 0; i < node.size && node.keys[i] <= day; i++) {
+            sum += node.values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Copy every day and its flow, in ascending order of day, into arrays at least size() long.
+     * @param days the array to write the epoch days to.
+     * @param flows the array to write the net flows to, in cents.
+     */
+    public void copyTo(long[] days, long[] flows) {
+        copyTo(this.root, days, flows, 0);
+    }
+
+    // the node itself if this tree owns it, otherwise a copy this tree owns
+    private Node writable(Node node) {
+        return node.owner == this.owner ? node : node.copy(this.owner);
+    }
+
+    // add a flow below a node this tree owns, leaving it overfull if a day was inserted into a full leaf
+    private void add(Node node, long day, long amount) {
+        node.sum += amount;
+        if (node.leaf) {
+            int i = Arrays.binarySearch(node.keys, 0, node.size, day);
+            if (i >= 0) {
+                node.values[i] += amount;
+                return;
+            }
+            i = -(i + 1);
+            System.arraycopy(node.keys, i, node.keys, i + 1, node.size - i);
+            System.arraycopy(node.values, i, node.values, i + 1, node.size - i);
+            node.keys[i] = day;
+            node.values[i] = amount;
+            node.size++;
+            node.count++;
+            return;
+        }
+        int c = child(node, day);
+        Node child = writable(node.children[c]);
+        node.children[c] = child;
+        int before = child.count;
+        add(child, day, amount);
+        node.count += child.count - before;
+        node.keys[c] = child.keys[0];
+        if (child.size > MAX) {
+            split(node, c);
+        }
+    }
+
+    // move the upper half of an overfull child into a new node following it
+    private void split(Node parent, int c) {
+        Node left = parent.children[c];
+        Node right = new Node(this.owner, left.leaf);
+        int half = left.size / 2;
+        right.size = left.size - half;
+        System.arraycopy(left.keys, half, right.keys, 0, right.size);
+        if (left.leaf) {
+            System.arraycopy(left.values, half, right.values, 0, right.size);
+            right.count = right.size;
+            for (int i = 0; i < right.size; i++) {
+                right.sum += right.values[i];
+            }
+        }
+        else {
+            System.arraycopy(left.children, half, right.children, 0, right.size);
+            Arrays.fill(left.children, half, left.size, null);
+            for (int i = 0; i < right.size; i++) {
+                right.count += right.children[i].count;
+                right.sum += right.children[i].sum;
+            }
+        }
+        left.size = half;
+        left.count -= right.count;
+        left.sum -= right.sum;
+        System.arraycopy(parent.keys, c + 1, parent.keys, c + 2, parent.size - c - 1);
+        System.arraycopy(parent.children, c + 1, parent.children, c + 2, parent.size - c - 1);
+        parent.keys[c + 1] = right.keys[0];
+        parent.children[c + 1] = right;
+        parent.size++;
+    }
+
+    private static int copyTo(Node node, long[] days, long[] flows, int at) {
+        if (node.leaf) {
+            System.arraycopy(node.keys, 0, days, at, node.size);
+            System.arraycopy(node.values, 0, flows, at, node.size);
+            return at + node.size;
+        }
+        for (int i = 0; i < node.size; i++) {
+            at = copyTo(node.children[i], days, flows, at);
+        }
+        return at;
+    }
+
+    // the index of the child of an inner node whose days would include the given day
+    private static int child(Node node, long day) {
+        int i = Arrays.binarySearch(node.keys, 0, node.size, day);
+        return i >= 0 ? i : Math.max(0, -(i + 1) - 1);
+    }
+
+    // a leaf of days and flows, or an inner node of children keyed by their first day
+    private static final class Node {
+        private final Object owner; // the tree that may change the node in place
+        private final boolean leaf;
+        private final long[] keys; // the days of a leaf, or the first day of each child
+        private final long[] values; // the flow on each day of a leaf, null for an inner node
+        private final Node[] children; // the children of an inner node, null for a leaf
+        private int size; // the number of days or children
+        private int count; // the number of days below the node
+        private long sum; // the total flow below the node, in cents
+
+        Node(Object owner, boolean leaf) {
+            this.owner = owner;
+            this.leaf = leaf;
+            this.keys = new long[MAX + 1];
+            this.values = leaf ? new long[MAX + 1] : null;
+            this.children = leaf ? null : new Node[MAX + 1];
+        }
+
+        Node copy(Object owner) {
+            Node node = new Node(owner, this.leaf);
+            System.arraycopy(this.keys, 0, node.keys, 0, this.size);
+            if (this.leaf) {
+                System.arraycopy(this.values, 0, node.values, 0, this.size);
+            }
+            else {
+                System.arraycopy(this.children, 0, node.children, 0, this.size);
+            }
+            node.size = this.size;
+            node.count = this.count;
+            node.sum = this.sum;
+            return node;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.time.temporal.TemporalUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
 /**
  * Stores historical data and expected transactions for a single bank account.
@@ -16,6 +17,7 @@ public interface IBudgetAccount {
     /**
      *
      * @param name
+     * @throws IllegalArgumentException if a listener rejects the name, such as a model holding another account of it.
      */
     void setName(String name);
 
@@ -78,12 +80,29 @@ public interface IBudgetAccount {
     float getInterestRate();
 
     /**
-     * enters in an actual value the account
+     * enters in an actual value the account, rounded to the nearest cent
      * @param date the date of the value.
      * @param value the value of the category.
      */
     void enterValue(LocalDateTime date, float value);
 
+    /**
+     * Enter an exact actual value into the account.
+     * @param date the date of the value.
+     * @param cents the value of the account, in cents.
+     */
+    void enterValueCents(LocalDateTime date, long cents);
+
+    /**
+     * Enter a chronologically sorted run of values in one pass, replacing any values already on the same dates.
+     * Where the run repeats a date, its last value is kept.
+     * @param times the dates of the values as epoch seconds (UTC), in ascending order.
+     * @param cents the values of the account, in cents.
+     * @param length the number of values to take from the start of the arrays.
+     * @throws IllegalArgumentException if the dates are not in ascending order.
+     */
+    void enterValues(long[] times, long[] cents, int length);
+
     /**
      * Checks if there budget account has a value already entered on the given date.
      * @param date The date to check
@@ -115,20 +134,50 @@ public interface IBudgetAccount {
     float getValue(LocalDateTime date, boolean interpolate);
 
     /**
-     * Get the estimated net growth/loss on the given day for the budgetaccount
+     * Get the estimated net growth/loss on the given day for the budgetaccount, from the transactions taking place on it.
      * @param date the day to look on.
      * @return the amount the account will increase or decrease by on the given day.
      */
     float getNet(LocalDateTime date);
 
     /**
-     * Create a map of all actualized entered values organized by date, within the provided range.
+     * Get the estimated net growth/loss over a range of days, from the transactions taking place within it.
+     * @param start the first day of the range, inclusive.
+     * @param end the last day of the range, inclusive.
+     * @return the amount the account will increase or decrease by over the range.
+     * @throws IllegalArgumentException if the starting value is after the ending date.
+     */
+    float getNet(LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Get the exact net growth/loss over a range of days, from the transactions taking place within it.
+     * @param start the first day of the range, inclusive.
+     * @param end the last day of the range, inclusive.
+     * @return the amount in cents the account will increase or decrease by over the range.
+     * @throws IllegalArgumentException if the starting value is after the ending date.
+     */
+    long getNetCents(LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Get a read-only view of all actualized entered values organized by date, within the provided range.
+     * The view is ordered chronologically and reads from the account lazily, so it costs nothing proportional to the
+     * full history. Entering or removing values on new dates invalidates the view.
      * @param start the starting date to filter with, inclusive.
      * @param end the ending date to filter with, inclusive.
-     * @return a map of date/values for a category.
+     * @return a sorted map of date/values for a category.
      * @throws IllegalArgumentException if the starting value is after the ending date.
      */
-    Map<LocalDateTime, Float> getActualValues(LocalDateTime start, LocalDateTime end);
+    SortedMap<LocalDateTime, Float> getActualValues(LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Stream the actualized entered values within the provided range, in chronological order,
+     * without allocating an object per value.
+     * @param start the starting date to filter with, inclusive.
+     * @param end the ending date to filter with, inclusive.
+     * @return a cursor positioned before the first value in the range.
+     * @throws IllegalArgumentException if the starting value is after the ending date.
+     */
+    TimeSeries.Cursor getActualValueCursor(LocalDateTime start, LocalDateTime end);
 
     /**
      * Create an approximation of actualized values in a given time frame and level of detail.
@@ -137,35 +186,92 @@ public interface IBudgetAccount {
      * @param end the ending date to filter with, inclusive.
      * @param unit the level of detail of the values.
      *            For values other than daily, provides values for the first day of the unit (week starting on Sunday)
+     * @return a new series of the exact estimated values in cents, keyed by the epoch second of each date.
+     * @throws IllegalArgumentException if the starting value is after the ending date.
+     * @throws IllegalStateException if the model does not have enough values to interpolate (if it needs to)
+     */
+    TimeSeries interpolateSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit);
+
+    /**
+     * Create an approximation of actualized values in a given time frame and level of detail.
+     * @param start the starting date to filter with, inclusive.
+     * @param end the ending date to filter with, inclusive.
+     * @param unit the level of detail of the values.
      * @return a map of date/values for a category.
      * @throws IllegalArgumentException if the starting value is after the ending date.
      * @throws IllegalStateException if the model does not have enough values to interpolate (if it needs to)
+     * @deprecated rounds each value to a float and boxes it; use interpolateSeries for the exact cents.
      */
-    Map<LocalDateTime, Float> interpolate(LocalDateTime start, LocalDateTime end, ChronoUnit unit);
+    @Deprecated
+    default Map<LocalDateTime, Float> interpolate(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        return interpolateSeries(start, end, unit).toMap();
+    }
 
     /**
-     * Construct a map of estimated account balances in a given time frame and level of detail.
+     * Estimate account balances in a given time frame and level of detail.
      * Uses the account's interest rate to estimate growth/loss
      * @param start the starting date to filter with, inclusive.
      * @param end the ending date to filter with, inclusive.
      * @param unit the level of detail of the values.
      *             For values other than daily, provides values for the first day of the unit (week starting on Sunday)
+     * @return a new series of the exact estimated balances in cents, keyed by the epoch second of each date.
+     * @throws IllegalArgumentException if the starting value is after the ending date.
+     */
+    TimeSeries extrapolateBalanceSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit);
+
+    /**
+     * Construct a map of estimated account balances in a given time frame and level of detail.
+     * @param start the starting date to filter with, inclusive.
+     * @param end the ending date to filter with, inclusive.
+     * @param unit the level of detail of the values.
      * @return a map of date/values for the account, representing estimated values.
      * @throws IllegalArgumentException if the starting value is after the ending date.
+     * @deprecated rounds each balance to a float and boxes it; use extrapolateBalanceSeries for the exact cents.
      */
-    Map<LocalDateTime, Float> extrapolateBalance(LocalDateTime start, LocalDateTime end, ChronoUnit unit);
+    @Deprecated
+    default Map<LocalDateTime, Float> extrapolateBalance(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        return extrapolateBalanceSeries(start, end, unit).toMap();
+    }
 
     /**
-     * Construct a map of estimated net gains/losses for the account in a given time frame and level of detail.
+     * Estimate net gains/losses for the account in a given time frame and level of detail.
      * uses the account's interest rate to estimate growth/loss
      * @param start the starting date to filter with, inclusive.
      * @param end the ending date to filter with, inclusive.
      * @param unit the level of detail of the values.
      *             For values other than daily, provides values for the first day of the unit (week starting on Sunday)
+     * @return a new series of the exact net gain or loss in cents since the previous date, keyed by epoch second.
+     * @throws IllegalArgumentException if the starting value is after the ending date.
+     */
+    TimeSeries extrapolateNetSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit);
+
+    /**
+     * Construct a map of estimated net gains/losses for the account in a given time frame and level of detail.
+     * @param start the starting date to filter with, inclusive.
+     * @param end the ending date to filter with, inclusive.
+     * @param unit the level of detail of the values.
      * @return a map of date/values for the account, representing the net gain or loss since the last element.
      * @throws IllegalArgumentException if the starting value is after the ending date.
+     * @deprecated rounds each amount to a float and boxes it; use extrapolateNetSeries for the exact cents.
      */
-    Map<LocalDateTime, Float> extrapolateNet(LocalDateTime start, LocalDateTime end, ChronoUnit unit);
+    @Deprecated
+    default Map<LocalDateTime, Float> extrapolateNet(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        return extrapolateNetSeries(start, end, unit).toMap();
+    }
+
+    /**
+     * Stream estimated account balances in a given time frame and level of detail, one point at a time.
+     * Balances are computed incrementally by folding in each transaction occurrence and compounding the account's
+     * interest rate daily, so memory stays constant regardless of the horizon and the caller may stop early.
+     * The projection starts from the last value entered on or before the start date.
+     * @param start the starting date to project from, inclusive.
+     * @param end the ending date to project to, inclusive, or null for no end.
+     * @param unit the level of detail of the values.
+     *             For values other than daily, provides values for the first day of the unit (week starting on Sunday)
+     * @return a projection positioned before its first point.
+     * @throws IllegalArgumentException if the starting value is after the ending date.
+     */
+    BalanceProjection projectBalance(LocalDateTime start, LocalDateTime end, ChronoUnit unit);
 
     /**
      * Calculate the Rate of Return of the account in a given time frame.
@@ -175,6 +281,38 @@ public interface IBudgetAccount {
      *                         If true, provides real rate of return.
      * @return the Nominal or Real rate of return for the account in the given time period.
      * @throws IllegalArgumentException if the starting value is after the ending date.
+     * @throws IllegalStateException if includeInflation is true and the account has no inflation index.
      */
     float rateOfReturn(LocalDateTime start, LocalDateTime end, boolean includeInflation);
+
+    /**
+     * Return the money-weighted and time-weighted rates of return of the account, over single ranges or rolling
+     * windows. Results are cached by range until the account changes.
+     * @return the rates of return of the account.
+     */
+    RateOfReturn returns();
+
+    /**
+     * Set the price index used to calculate real rates of return. The index is not stored with the account.
+     * @param index the inflation index, or null to remove it.
+     */
+    void setInflationIndex(InflationIndex index);
+
+    /**
+     * Get the price index used to calculate real rates of return.
+     * @return the inflation index, or null if there is none.
+     */
+    InflationIndex getInflationIndex();
+
+    /**
+     * Register a listener to be notified of changes to the account.
+     * @param listener the listener to add.
+     */
+    void addListener(IBudgetAccountListener listener);
+
+    /**
+     * Stop notifying a listener of changes to the account.
+     * @param listener the listener to remove.
+     */
+    void removeListener(IBudgetAccountListener listener);
 }
@@ -0,0 +1,92 @@
+import java.time.LocalDateTime;
+
+/**
+ * Receives notifications of changes made to an IBudgetAccount.
+ * All methods do nothing by default, so listeners only need to override the changes they care about.
+ * Changes to the transactions of an account are reported through ITransactionListener instead.
+ */
+public interface IBudgetAccountListener {
+
+    /**
+     * Called before the name of an account changes, before any listener is told of the change, so that a listener
+     * indexing accounts by name can reject a name that is taken.
+     * @param account the account that is changing.
+     * @param newName the name the account is changing to.
+     * @throws IllegalArgumentException to reject the new name, in which case the name is left unchanged.
+     */
+    default void checkName(IBudgetAccount account, String newName) {
+    }
+
+    /**
+     * Called after the name of an account changes.
+     * @param account the account that changed.
+     * @param oldName the previous name.
+     * @param newName the new name.
+     */
+    default void nameChanged(IBudgetAccount account, String oldName, String newName) {
+    }
+
+    /**
+     * Called after the description of an account changes.
+     * @param account the account that changed.
+     * @param description the new description.
+     */
+    default void descriptionChanged(IBudgetAccount account, String description) {
+    }
+
+    /**
+     * Called after the interest rate of an account changes.
+     * @param account the account that changed.
+     * @param oldInterest the previous interest rate.
+     * @param newInterest the new interest rate.
+     */
+    default void interestChanged(IBudgetAccount account, float oldInterest, float newInterest) {
+    }
+
+    /**
+     * Called after a value is entered into an account, whether or not it replaced an existing value.
+     * @param account the account the value was entered into.
+     * @param date the date of the value.
+     * @param cents the value entered, in cents.
+     */
+    default void valueEntered(IBudgetAccount account, LocalDateTime date, long cents) {
+    }
+
+    /**
+     * Called after a sorted run of values is entered into an account at once.
+     * By default, reports each value to valueEntered.
+     * @param account the account the values were entered into.
+     * @param times the epoch seconds of the values, in ascending order.
+     * @param cents the values entered, in cents.
+     * @param length the number of values entered, from the start of the arrays.
+     */
+    default void valuesEntered(IBudgetAccount account, long[] times, long[] cents, int length) {
+        for (int i = 0; i < length; i++) {
+            valueEntered(account, Utils.fromEpochSecond(times[i]), cents[i]);
+        }
+    }
+
+    /**
+     * Called after a value is removed from an account.
+     * @param account the account the value was removed from.
+     * @param date the date of the removed value.
+     */
+    default void valueRemoved(IBudgetAccount account, LocalDateTime date) {
+    }
+
+    /**
+     * Called after a transaction is added to an account.
+     * @param account the account the transaction was added to.
+     * @param transaction the transaction added.
+     */
+    default void transactionAdded(IBudgetAccount account, ITransaction transaction) {
+    }
+
+    /**
+     * Called after a transaction is removed from an account.
+     * @param account the account the transaction was removed from.
+     * @param transaction the transaction removed.
+     */
+    default void transactionRemoved(IBudgetAccount account, ITransaction transaction) {
+    }
+}
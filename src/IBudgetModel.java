@@ -1,7 +1,97 @@
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Model in a Model-View-Controller design pattern for a budgeting tool.
  * The model contains multiple accounts, each capable of inputting estimated past and future transactions,
  * actualized values, interpolate, and extrapolate.
  */
 public interface IBudgetModel {
+
+    /**
+     * Add an account to the model.
+     * @param account the account to add.
+     * @throws IllegalArgumentException if the model already has an account of the same name.
+     */
+    void addAccount(IBudgetAccount account);
+
+    /**
+     * Remove an account from the model.
+     * @param name the name of the account.
+     * @throws IllegalArgumentException if the model has no account of the given name.
+     */
+    void removeAccount(String name);
+
+    /**
+     * Get the account of a particular name.
+     * @param name the name of the account.
+     * @return the account.
+     * @throws IllegalArgumentException if the model has no account of the given name.
+     */
+    IBudgetAccount getAccount(String name);
+
+    /**
+     * See if the model has an account of a given name.
+     * @param name the name of the account.
+     * @return true if the model has an account of the given name, false otherwise.
+     */
+    boolean hasAccount(String name);
+
+    /**
+     * Generate a list of the names of all accounts in the model, in the order they were added.
+     * @return a list of account names.
+     */
+    List<String> getAccounts();
+
+    /**
+     * Estimate the total balance of every account in a given time frame and level of detail.
+     * @param start the starting date to filter with, inclusive.
+     * @param end the ending date to filter with, inclusive.
+     * @param unit the level of detail of the values.
+     *             For values other than daily, provides values for the first day of the unit (week starting on Sunday)
+     * @return a new series of the exact estimated net worth in cents, keyed by the epoch second of each date.
+     * @throws IllegalArgumentException if the starting value is after the ending date.
+     */
+    TimeSeries aggregateBalanceSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit);
+
+    /**
+     * Construct a map of the estimated total balance of every account in a given time frame and level of detail.
+     * @param start the starting date to filter with, inclusive.
+     * @param end the ending date to filter with, inclusive.
+     * @param unit the level of detail of the values.
+     * @return a map of date/values representing the estimated net worth.
+     * @throws IllegalArgumentException if the starting value is after the ending date.
+     * @deprecated rounds each total to a float and boxes it; use aggregateBalanceSeries for the exact cents.
+     */
+    @Deprecated
+    default Map<LocalDateTime, Float> aggregateBalance(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        return aggregateBalanceSeries(start, end, unit).toMap();
+    }
+
+    /**
+     * Estimate the total net gains/losses of every account in a given time frame and level of detail.
+     * @param start the starting date to filter with, inclusive.
+     * @param end the ending date to filter with, inclusive.
+     * @param unit the level of detail of the values.
+     *             For values other than daily, provides values for the first day of the unit (week starting on Sunday)
+     * @return a new series of the exact total gain or loss in cents since the previous date, keyed by epoch second.
+     * @throws IllegalArgumentException if the starting value is after the ending date.
+     */
+    TimeSeries aggregateNetSeries(LocalDateTime start, LocalDateTime end, ChronoUnit unit);
+
+    /**
+     * Construct a map of the estimated total net gains/losses of every account in a given time frame and level of detail.
+     * @param start the starting date to filter with, inclusive.
+     * @param end the ending date to filter with, inclusive.
+     * @param unit the level of detail of the values.
+     * @return a map of date/values representing the total gain or loss since the last element.
+     * @throws IllegalArgumentException if the starting value is after the ending date.
+     * @deprecated rounds each total to a float and boxes it; use aggregateNetSeries for the exact cents.
+     */
+    @Deprecated
+    default Map<LocalDateTime, Float> aggregateNet(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        return aggregateNetSeries(start, end, unit).toMap();
+    }
 }
@@ -1,5 +1,5 @@
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * A representation of a transaction within a budget model. It can either be positive (income) or negative (expense).
@@ -31,18 +31,18 @@ public interface ITransaction {
     float getAnnualValue(float interest);
 
     /**
-     * Create a list of all dates that the transaction takes place between two dates
-     * @param start the starting date
-     * @param end the endign date
+     * Get a read-only view of all dates that the transaction takes place between two dates, in chronological order.
+     * @param start the starting date, inclusive.
+     * @param end the ending date, inclusive.
      * @return the list of dates that the transaction falls between. Returns an empty list if there are none.
      */
-    ArrayList<LocalDateTime> getTransactions(LocalDateTime start, LocalDateTime end);
+    List<LocalDateTime> getTransactions(LocalDateTime start, LocalDateTime end);
 
     /**
-     * Create a list of all dates that the transaction is active for
+     * Get a read-only view of all dates that the transaction is active for, in chronological order.
      * @return the list of dates that the transaction falls upon. Returns an empty list if there are none.
      */
-    ArrayList<LocalDateTime> getTransactions();
+    List<LocalDateTime> getTransactions();
 
     /**
      * Remove an instance of an expense.
@@ -65,10 +65,20 @@ public interface ITransaction {
      */
     public void addInstance(LocalDateTime date);
 
+    /**
+     * Add a chronologically sorted run of instances in one pass, merging it with the existing dates.
+     * Dates the transaction already has, and repeats within the run, are skipped rather than rejected.
+     * @param dates the dates of the new instances, in ascending order.
+     * @return the number of instances added.
+     * @throws IllegalArgumentException if the dates are not in ascending order or one is null.
+     */
+    public int addInstances(List<LocalDateTime> dates);
+
     /**
      * Check if the transaction has an instnace on the given date.
      * @param date the date to check.
      * @return True if there is an instance of the transaction on the given date, false otherwise.
+     * @throws IllegalArgumentException if the date is null.
      */
     public boolean hasInstance(LocalDateTime date);
 
@@ -121,10 +131,52 @@ public interface ITransaction {
     /**
      * Change the name of the transaction.
      * @param name the new name of the transaction.
+     * @throws IllegalArgumentException if the name is already taken in an account holding the transaction.
      */
     public void setName(String name);
 
-    float getAmount();
+    /**
+     * Return the amount of the transaction.
+     * @return the amount, rounded to a float.
+     * @deprecated a float cannot hold every amount exactly; use getAmountCents.
+     */
+    @Deprecated
+    default float getAmount() {
+        return Money.toFloat(getAmountCents());
+    }
+
+    /**
+     * Change the amount of the transaction, rounding it to the nearest cent.
+     * @param amount the new amount.
+     * @throws IllegalArgumentException if the amount is not finite.
+     * @deprecated a float cannot hold every amount exactly; use setAmountCents.
+     */
+    @Deprecated
+    default void setAmount(float amount) {
+        setAmountCents(Money.of(amount));
+    }
 
-    void setAmount(float amount);
+    /**
+     * Return the exact amount of the transaction.
+     * @return the amount in cents.
+     */
+    long getAmountCents();
+
+    /**
+     * Change the amount of the transaction to an exact number of cents.
+     * @param amount the new amount in cents.
+     */
+    void setAmountCents(long amount);
+
+    /**
+     * Register a listener to be notified of changes to the transaction.
+     * @param listener the listener to add.
+     */
+    void addListener(ITransactionListener listener);
+
+    /**
+     * Stop notifying a listener of changes to the transaction.
+     * @param listener the listener to remove.
+     */
+    void removeListener(ITransactionListener listener);
 }
@@ -0,0 +1,74 @@
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Receives notifications of changes made to an ITransaction.
+ * All methods do nothing by default, so listeners only need to override the changes they care about.
+ */
+public interface ITransactionListener {
+
+    /**
+     * Called before the name of a transaction changes, before any listener is told of the change, so that a listener
+     * indexing transactions by name can reject a name that is taken.
+     * @param transaction the transaction being renamed.
+     * @param newName the name the transaction is changing to.
+     * @throws IllegalArgumentException to reject the new name, in which case the name is left unchanged.
+     */
+    default void checkName(ITransaction transaction, String newName) {
+    }
+
+    /**
+     * Called when a transaction is about to change its name, once every listener has accepted the new name,
+     * before the new name takes effect.
+     * @param transaction the transaction being renamed.
+     * @param oldName the current name of the transaction.
+     * @param newName the name the transaction is changing to.
+     */
+    default void nameChanged(ITransaction transaction, String oldName, String newName) {
+    }
+
+    /**
+     * Called after the description of a transaction changes.
+     * @param transaction the transaction that changed.
+     * @param description the new description.
+     */
+    default void descriptionChanged(ITransaction transaction, String description) {
+    }
+
+    /**
+     * Called after an instance is added to a transaction.
+     * @param transaction the transaction the instance was added to.
+     * @param date the date of the new instance.
+     */
+    default void instanceAdded(ITransaction transaction, LocalDateTime date) {
+    }
+
+    /**
+     * Called after a run of instances is added to a transaction at once.
+     * By default, reports each instance to instanceAdded.
+     * @param transaction the transaction the instances were added to.
+     * @param dates the dates of the new instances, in chronological order.
+     */
+    default void instancesAdded(ITransaction transaction, List<LocalDateTime> dates) {
+        for (LocalDateTime d : dates) {
+            instanceAdded(transaction, d);
+        }
+    }
+
+    /**
+     * Called after an instance is removed from a transaction.
+     * @param transaction the transaction the instance was removed from.
+     * @param date the date of the removed instance.
+     */
+    default void instanceRemoved(ITransaction transaction, LocalDateTime date) {
+    }
+
+    /**
+     * Called after the amount of a transaction changes.
+     * @param transaction the transaction that changed.
+     * @param oldAmount the previous amount, in cents.
+     * @param newAmount the new amount, in cents.
+     */
+    default void amountChanged(ITransaction transaction, long oldAmount, long newAmount) {
+    }
+}
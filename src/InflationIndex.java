@@ -0,0 +1,181 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A price index, such as the CPI, used to turn nominal amounts into real ones.
+ * The published points are expanded once into a dense array holding the level of every day between the first and the
+ * last point, interpolated geometrically in between, so looking up the level or a deflator for any day is a single
+ * array read. Days before the first point or after the last take the level of the nearest point.
+ * The index never changes once created, so it can be shared between accounts and threads.
+ */
+public class InflationIndex {
+    private static final double DAYS_PER_YEAR = 365;
+
+    private final long firstDay; // the epoch day of levels[0]
+    private final double[] levels; // the level of each day from firstDay to the last published day
+
+    /**
+     * Create an index from its published points.
+     * @param days the epoch day of each point, in ascending order.
+     * @param levels the level of the index at each point, all positive.
+     * @param length the number of points to take from the start of the arrays.
+     * @throws IllegalArgumentException if there are no points, the days are not ascending or a level is not positive.
+     */
+    public InflationIndex(long[] days, double[] levels, int length) {
+        Utils.checkNull(days, "Days");
+        Utils.checkNull(levels, "Levels");
+        if (length <= 0) {
+            throw new IllegalArgumentException("An inflation index needs at least one point.");
+        }
+        for (int k = 0; k < length; k++) {
+            if (!(levels[k] > 0) || Double.isInfinite(levels[k])) {
+                throw new IllegalArgumentException("Index level must be positive. Given level is " + levels[k]);
+            }
+            if (k > 0 && days[k] <= days[k - 1]) {
+                throw new IllegalArgumentException("Days are not in ascending order at index " + k);
+            }
+        }
+        this.firstDay = days[0];
+        this.levels = new double[Math.toIntExact(days[length - 1] - days[0] + 1)];
+        this.levels[0] = levels[0];
+        for (int k = 1; k < length; k++) {
+            int from = (int) (days[k - 1] - this.firstDay);
+            int to = (int) (days[k] - this.firstDay);
+            double growth = Math.pow(levels[k] / levels[k - 1], 1.0 / (to - from));
+            for (int i = from + 1; i < to; i++) {
+                this.levels[i] = this.levels[i - 1] * growth;
+            }
+            this.levels[to] = levels[k];
+        }
+    }
+
+    /**
+     * Load an index from a text file of published points, one per line, such as "2022-01-01,281.148".
+     * Each line holds a date in any form the StatementImporter reads, then a comma and the level. Lines that do not
+     * start with a digit, such as a header, are skipped.
+     * @param file the path of the file.
+     * @return the index.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if a line cannot be read or the points are not in ascending order.
+     */
+    public static InflationIndex load(Path file) throws IOException {
+        Utils.checkNull(file, "File");
+        long[] days = new long[256];
+        double[] levels = new double[256];
+        int size = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || !Character.isDigit(line.charAt(0))) {
+                    continue;
+                }
+                int comma = line.indexOf(',');
+                try {
+                    if (comma < 0) {
+                        throw new IllegalArgumentException("Missing comma.");
+                    }
+                    if (size == days.length) {
+                        days = Arrays.copyOf(days, size * 2);
+                        levels = Arrays.copyOf(levels, size * 2);
+                    }
+                    days[size] = StatementImporter.parseDay(line, 0, comma);
+                    levels[size++] = Double.parseDouble(line.substring(comma + 1).trim());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Cannot read line " + number + ": " + line, e);
+                }
+            }
+        }
+        return new InflationIndex(days, levels, size);
+    }
+
+    /**
+     * Return the level of the index on a day.
+     * @param day the epoch day.
+     * @return the published or interpolated level.
+     */
+    public double level(long day) {
+        long i = day - this.firstDay;
+        if (i <= 0) {
+            return this.levels[0];
+        }
+        return this.levels[(int) Math.min(i, this.levels.length - 1)];
+    }
+
+    /**
+     * Return the factor that turns an amount on a day into the money of a base day.
+     * @param day the epoch day of the amount.
+     * @param baseDay the epoch day whose money the amount is expressed in.
+     * @return the deflator, below 1 when prices rose from the base day to the day.
+     */
+    public double deflator(long day, long baseDay) {
+        return level(baseDay) / level(day);
+    }
+
+    /**
+     * Return the annual rate of inflation between two days.
+     * @param fromDay the first epoch day.
+     * @param toDay the last epoch day, after fromDay.
+     * @return the annual rate. 1 = 100%.
+     * @throws IllegalArgumentException if toDay is not after fromDay.
+     */
+    public double annualRate(long fromDay, long toDay) {
+        if (toDay <= fromDay) {
+            throw new IllegalArgumentException("End day " + toDay + " is not after start day " + fromDay);
+        }
+        return Math.expm1(Math.log(level(toDay) / level(fromDay)) * DAYS_PER_YEAR / (toDay - fromDay));
+    }
+
+    /**
+     * Convert a run of nominal amounts into the money of a base day, in place, in one pass.
+     * @param days the epoch day of each amount.
+     * @param amounts the amounts to convert.
+     * @param length the number of amounts to take from the start of the arrays.
+     * @param baseDay the epoch day whose money the amounts are expressed in.
+     */
+    public void deflate(long[] days, double[] amounts, int length, long baseDay) {
+        double base = level(baseDay);
+        int last = this.levels.length - 1;
+        for (int k = 0; k < length; k++) {
+            long i = Math.max(0, Math.min(days[k] - this.firstDay, last));
+            amounts[k] *= base / this.levels[(int) i];
+        }
+    }
+
+    /**
+     * Convert a series of nominal amounts, such as one produced by extrapolateBalance or interpolate, into the money
+     * of a base day.
+     * @param series the nominal amounts by date.
+     * @param base the date whose money the amounts are expressed in.
+     * @return the real amounts by date, in the order of the series.
+     */
+    public Map<LocalDateTime, Float> deflate(Map<LocalDateTime, Float> series, LocalDateTime base) {
+        Utils.checkNull(series, "Series");
+        Utils.checkNull(base, "Base Date");
+        int n = series.size();
+        LocalDateTime[] dates = new LocalDateTime[n];
+        long[] days = new long[n];
+        double[] amounts = new double[n];
+        int k = 0;
+        for (Map.Entry<LocalDateTime, Float> e : series.entrySet()) {
+            dates[k] = e.getKey();
+            days[k] = e.getKey().toLocalDate().toEpochDay();
+            amounts[k++] = e.getValue();
+        }
+        deflate(days, amounts, n, base.toLocalDate().toEpochDay());
+        Map<LocalDateTime, Float> output = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            output.put(dates[i], (float) amounts[i]);
+        }
+        return output;
+    }
+}
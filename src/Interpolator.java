@@ -0,0 +1,210 @@
+import java.util.Arrays;
+
+/**
+ * Piecewise cubic Hermite interpolation over the values of a TimeSeries.
+ * The slope at each entry is fitted once (Fritsch-Carlson, so the curve never overshoots between two entries) and
+ * cached alongside the series. Each slope only depends on an entry's immediate neighbours, so entering or removing a
+ * single value refits the few slopes around it rather than the whole curve.
+ * Before the first entry and after the last one, values are extrapolated by compounding an annual interest rate.
+ * The curve is evaluated in double precision and each estimate is rounded to the nearest cent.
+ */
+public class Interpolator {
+    private static final double SECONDS_PER_DAY = 86400;
+    private static final double DAYS_PER_YEAR = 365;
+
+    private final TimeSeries series;
+    private double[] slopes = new double[0]; // change in cents per day at each entry of the series
+    private boolean fitted; // whether slopes matches the series, false until the first query
+    private boolean shared; // whether slopes is shared with a fork, so it must be copied before a change
+
+    public Interpolator(TimeSeries series) {
+        Utils.checkNull(series, "Series");
+        this.series = series;
+    }
+
+    /**
+     * Create an interpolator over a fork of this one's series that shares this one's fit, in O(1). Whichever
+     * interpolator changes its fit first copies the slopes.
+     * @param fork the series returned by fork() on this interpolator's series, not yet changed.
+     * @return the interpolator of the fork.
+     */
+    public Interpolator fork(TimeSeries fork) {
+        Interpolator interpolator = new Interpolator(fork);
+        interpolator.slopes = this.slopes;
+        interpolator.fitted = this.fitted;
+        interpolator.shared = true;
+        this.shared = true;
+        return interpolator;
+    }
+
+    /**
+     * Update the fit after a value was entered into the series.
+     * @param index the index the value was stored at.
+     * @param inserted true if the value was added on a new date, false if it replaced an existing value.
+     */
+    public void entered(int index, boolean inserted) {
+        if (!this.fitted) {
+            return;
+        }
+        own();
+        if (inserted) {
+            int n = this.series.size();
+            if (this.slopes.length < n) {
+                this.slopes = Arrays.copyOf(this.slopes, Math.max(n, this.slopes.length + (this.slopes.length >> 1)));
+            }
+            System.arraycopy(this.slopes, index, this.slopes, index + 1, n - index - 1);
+        }
+        refit(index - 1, index + 1);
+    }
+
+    /**
+     * Update the fit after a value was removed from the series.
+     * @param index the index the value was removed from.
+     */
+    public void removed(int index) {
+        if (!this.fitted) {
+            return;
+        }
+        own();
+        System.arraycopy(this.slopes, index + 1, this.slopes, index, this.series.size() - index);
+        refit(index - 1, index);
+    }
+
+    /**
+     * Discard the fit after many values changed at once. It is refitted in full on the next query.
+     */
+    public void reset() {
+        this.fitted = false;
+    }
+
+    /**
+     * Estimate the value of the series at a point in time.
+     * @param time the epoch second to evaluate.
+     * @param interest the annual interest rate used outside the entered values. 1 = 100%.
+     * @return the interpolated or extrapolated value, in cents.
+     * @throws IllegalStateException if the series is empty.
+     */
+    public long valueAt(long time, float interest) {
+        fit();
+        int n = this.series.size();
+        int i = this.series.upperBound(time) - 1;
+        if (i < 0) {
+            return compound(0, time, interest);
+        }
+        if (i >= n - 1) {
+            return compound(n - 1, time, interest);
+        }
+        return hermite(i, time);
+    }
+
+    /**
+     * Estimate the value of the series at each of a chronologically ordered set of times.
+     * The segment containing each time is found by walking forward from the previous one,
+     * so evaluating a grid costs time proportional to its length plus the entries it spans.
+     * @param times the epoch seconds to evaluate, in ascending order.
+     * @param out the array to write the values to in cents, at least as long as times.
+     * @param interest the annual interest rate used outside the entered values. 1 = 100%.
+     * @throws IllegalStateException if the series is empty.
+     */
+    public void evaluate(long[] times, long[] out, float interest) {
+        fit();
+        int n = this.series.size();
+        int i = times.length == 0 ? 0 : this.series.upperBound(times[0]) - 1;
+        for (int k = 0; k < times.length; k++) {
+            long t = times[k];
+            while (i + 1 < n && this.series.timeAt(i + 1) <= t) {
+                i++;
+            }
+            if (i < 0) {
+                out[k] = compound(0, t, interest);
+            }
+            else if (i >= n - 1) {
+                out[k] = compound(n - 1, t, interest);
+            }
+            else {
+                out[k] = hermite(i, t);
+            }
+        }
+    }
+
+    /**
+     * Fit the curve now rather than on the first query, so that queries no longer modify the interpolator.
+     * @throws IllegalStateException if the series is empty.
+     */
+    public void fit() {
+        if (this.series.isEmpty()) {
+            throw new IllegalStateException("Not enough values entered to interpolate.");
+        }
+        if (!this.fitted) {
+            this.slopes = new double[this.series.size()];
+            this.fitted = true;
+            this.shared = false;
+            refit(0, this.series.size() - 1);
+        }
+    }
+
+    // copy the slopes if they are shared with a fork, before changing them
+    private void own() {
+        if (this.shared) {
+            this.slopes = Arrays.copyOf(this.slopes, this.slopes.length);
+            this.shared = false;
+        }
+    }
+
+    // recompute the slopes of entries from..to, clamped to the series
+    private void refit(int from, int to) {
+        int n = this.series.size();
+        for (int i = Math.max(0, from); i <= Math.min(n - 1, to); i++) {
+            this.slopes[i] = slope(i);
+        }
+    }
+
+    private double slope(int i) {
+        int n = this.series.size();
+        if (n < 2) {
+            return 0;
+        }
+        if (i == 0) {
+            return secant(0);
+        }
+        if (i == n - 1) {
+            return secant(n - 2);
+        }
+        double before = secant(i - 1);
+        double after = secant(i);
+        if (before * after <= 0) {
+            return 0;
+        }
+        double h0 = days(i - 1);
+        double h1 = days(i);
+        double w0 = 2 * h1 + h0;
+        double w1 = h1 + 2 * h0;
+        return (w0 + w1) / (w0 / before + w1 / after);
+    }
+
+    // the change in value per day between entry i and entry i + 1
+    private double secant(int i) {
+        return (double) (this.series.valueAt(i + 1) - this.series.valueAt(i)) / days(i);
+    }
+
+    // the number of days between entry i and entry i + 1
+    private double days(int i) {
+        return (this.series.timeAt(i + 1) - this.series.timeAt(i)) / SECONDS_PER_DAY;
+    }
+
+    private long hermite(int i, long time) {
+        double h = days(i);
+        double s = (time - this.series.timeAt(i)) / SECONDS_PER_DAY / h;
+        double s2 = s * s;
+        double s3 = s2 * s;
+        return Math.round((2 * s3 - 3 * s2 + 1) * this.series.valueAt(i)
+                + (s3 - 2 * s2 + s) * h * this.slopes[i]
+                + (-2 * s3 + 3 * s2) * this.series.valueAt(i + 1)
+                + (s3 - s2) * h * this.slopes[i + 1]);
+    }
+
+    private long compound(int i, long time, float interest) {
+        double years = (time - this.series.timeAt(i)) / SECONDS_PER_DAY / DAYS_PER_YEAR;
+        return Money.scale(this.series.valueAt(i), Math.pow(1 + interest, years));
+    }
+}
@@ -0,0 +1,411 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only journal of the changes made to a BudgetAccount, kept in a memory-mapped file.
+ * Every change is appended as one record: a fixed 32 byte header holding the change, followed by the UTF-8 text of any
+ * name or description it sets. Appending copies the record into the mapping, so it costs O(1) and no system call; the
+ * operating system writes it out even if the process dies, and sync() forces it to the disk.
+ * The type of a record is written after the rest of it, so a record torn by a crash reads as the end of the journal.
+ * Replaying reads records in place and enters values straight into the account's series, allocating nothing per value.
+ * Transactions are referred to by their position in the account when the journal started, then in order of addition.
+ * Dates are stored as epoch seconds, so any fraction of a second is dropped, and amounts as exact long cents.
+ * A journal holds at most 2GB of records.
+ */
+public class Journal implements IBudgetAccountListener, ITransactionListener, Closeable {
+    private static final int HEADER = 32; // type, length, transaction, aux (ints), then a and b (longs)
+    private static final int INITIAL_CAPACITY = 1 << 20;
+
+    // record types, 0 marks the end of the journal
+    private static final int ENTER_VALUE = 1; // a = time, b = value in cents
+    private static final int REMOVE_VALUE = 2; // a = time
+    private static final int SET_INTEREST = 3; // b = interest
+    private static final int SET_ACCOUNT_NAME = 4; // payload = name
+    private static final int SET_ACCOUNT_DESCRIPTION = 5; // payload = description
+    private static final int ADD_TRANSACTION = 6; // aux = interval or 0, a = rule start, b = rule end,
+                                                  // payload = unit, amount, name, description
+    private static final int REMOVE_TRANSACTION = 7;
+    private static final int ADD_INSTANCE = 8; // a = time
+    private static final int REMOVE_INSTANCE = 9; // a = time
+    private static final int SET_AMOUNT = 10; // b = amount in cents
+    private static final int SET_NAME = 11; // payload = name
+    private static final int SET_DESCRIPTION = 12; // payload = description
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer; // the mapping of the whole file
+    private int position; // the offset the next record is written at
+    private final Map<ITransaction, Integer> ids = new IdentityHashMap<>(); // the journal id of each transaction
+    private final List<ITransaction> transactions = new ArrayList<>(); // transactions by journal id
+    private IBudgetAccount account; // the account being recorded, null until attached
+
+    private Journal(FileChannel channel) throws IOException {
+        this.channel = channel;
+        map((int) Math.min(Math.max(channel.size(), INITIAL_CAPACITY), Integer.MAX_VALUE));
+        while (readable(this.position)) {
+            this.position += this.buffer.getInt(this.position + 4);
+        }
+    }
+
+    /**
+     * Open a journal file, creating it if it does not exist.
+     * @param file the path of the journal.
+     * @return the journal, positioned after its last complete record.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public static Journal open(Path file) throws IOException {
+        Utils.checkNull(file, "File");
+        return new Journal(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Apply every record of the journal to an account, restoring the state it recorded.
+     * The account must already be in the state the journal started from: new, or restored from a Snapshot.
+     * Must be called before the journal is attached.
+     * @param account the account to restore.
+     * @throws IllegalStateException if the journal is already attached to an account.
+     */
+    public void replay(BudgetAccount account) {
+        Utils.checkNull(account, "Account");
+        if (this.account != null) {
+            throw new IllegalStateException("Journal is already recording an account.");
+        }
+        identify(account);
+        for (int p = 0; p < this.position; p += this.buffer.getInt(p + 4)) {
+            apply(account, p);
+        }
+    }
+
+    /**
+     * Start recording every change made to an account and its transactions.
+     * Only changes are recorded: the state the account is in when a new journal is attached must be saved separately,
+     * for example as a Snapshot, and restored before the journal is replayed.
+     * @param account the account to record.
+     * @throws IllegalStateException if the journal is already attached to an account.
+     */
+    public void attach(IBudgetAccount account) {
+        Utils.checkNull(account, "Account");
+        if (this.account != null) {
+            throw new IllegalStateException("Journal is already recording an account.");
+        }
+        this.account = account;
+        identify(account);
+        for (ITransaction t : this.ids.keySet()) {
+            t.addListener(this);
+        }
+        account.addListener(this);
+    }
+
+    /**
+     * Return the size of the recorded changes.
+     * @return the number of bytes of records in the journal.
+     */
+    public long size() {
+        return this.position;
+    }
+
+    /**
+     * Force every record appended so far to the disk.
+     */
+    public void sync() {
+        this.buffer.force();
+    }
+
+    /**
+     * Stop recording, force the journal to the disk and close the file.
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.account != null) {
+            this.account.removeListener(this);
+            for (ITransaction t : this.ids.keySet()) {
+                t.removeListener(this);
+            }
+            this.account = null;
+        }
+        sync();
+        this.channel.close();
+    }
+
+    @Override
+    public void nameChanged(IBudgetAccount account, String oldName, String newName) {
+        appendText(SET_ACCOUNT_NAME, 0, newName);
+    }
+
+    @Override
+    public void descriptionChanged(IBudgetAccount account, String description) {
+        appendText(SET_ACCOUNT_DESCRIPTION, 0, description);
+    }
+
+    @Override
+    public void interestChanged(IBudgetAccount account, float oldInterest, float newInterest) {
+        append(SET_INTEREST, 0, 0, 0, Float.floatToRawIntBits(newInterest), HEADER);
+    }
+
+    @Override
+    public void valueEntered(IBudgetAccount account, LocalDateTime date, long cents) {
+        append(ENTER_VALUE, 0, 0, Utils.toEpochSecond(date), cents, HEADER);
+    }
+
+    @Override
+    public void valuesEntered(IBudgetAccount account, long[] times, long[] cents, int length) {
+        for (int i = 0; i < length; i++) {
+            append(ENTER_VALUE, 0, 0, times[i], cents[i], HEADER);
+        }
+    }
+
+    @Override
+    public void valueRemoved(IBudgetAccount account, LocalDateTime date) {
+        append(REMOVE_VALUE, 0, 0, Utils.toEpochSecond(date), 0, HEADER);
+    }
+
+    @Override
+    public void transactionAdded(IBudgetAccount account, ITransaction transaction) {
+        int id = this.transactions.size();
+        this.transactions.add(transaction);
+        this.ids.put(transaction, id);
+
+        Recurrence rule = transaction instanceof Transaction ? ((Transaction) transaction).getRecurrence() : null;
+        byte[] name = encode(transaction.getName());
+        byte[] description = encode(transaction.getDescription());
+        int p = reserve(HEADER + 12 + text(name) + text(description));
+        int q = p + HEADER;
+        this.buffer.putInt(q, rule == null ? 0 : rule.getUnit().ordinal());
+        this.buffer.putLong(q + 4, transaction.getAmountCents());
+        q = putText(putText(q + 12, name), description);
+        if (rule == null) {
+            commit(p, ADD_TRANSACTION, id, 0, 0, 0, q - p);
+        }
+        else {
+            commit(p, ADD_TRANSACTION, id, rule.getInterval(), Utils.toEpochSecond(rule.getStart()),
+                    Utils.toEpochSecond(rule.getEnd()), q - p);
+        }
+        List<LocalDateTime> dates = rule == null ? transaction.getTransactions()
+                : ((Transaction) transaction).oneOffDates();
+        for (LocalDateTime d : dates) {
+            append(ADD_INSTANCE, id, 0, Utils.toEpochSecond(d), 0, HEADER);
+        }
+        if (rule != null) {
+            for (LocalDateTime d : rule.exclusions()) {
+                append(REMOVE_INSTANCE, id, 0, Utils.toEpochSecond(d), 0, HEADER);
+            }
+        }
+        transaction.addListener(this);
+    }
+
+    @Override
+    public void transactionRemoved(IBudgetAccount account, ITransaction transaction) {
+        Integer id = this.ids.remove(transaction);
+        if (id != null) {
+            transaction.removeListener(this);
+            this.transactions.set(id, null);
+            append(REMOVE_TRANSACTION, id, 0, 0, 0, HEADER);
+        }
+    }
+
+    @Override
+    public void nameChanged(ITransaction transaction, String oldName, String newName) {
+        appendText(SET_NAME, this.ids.get(transaction), newName);
+    }
+
+    @Override
+    public void descriptionChanged(ITransaction transaction, String description) {
+        appendText(SET_DESCRIPTION, this.ids.get(transaction), description);
+    }
+
+    @Override
+    public void instanceAdded(ITransaction transaction, LocalDateTime date) {
+        append(ADD_INSTANCE, this.ids.get(transaction), 0, Utils.toEpochSecond(date), 0, HEADER);
+    }
+
+    @Override
+    public void instanceRemoved(ITransaction transaction, LocalDateTime date) {
+        append(REMOVE_INSTANCE, this.ids.get(transaction), 0, Utils.toEpochSecond(date), 0, HEADER);
+    }
+
+    @Override
+    public void amountChanged(ITransaction transaction, long oldAmount, long newAmount) {
+        append(SET_AMOUNT, this.ids.get(transaction), 0, 0, newAmount, HEADER);
+    }
+
+    // give an id to each transaction of the account the journal has not seen, in the account's order
+    private void identify(IBudgetAccount account) {
+        for (String name : account.getTransactions()) {
+            ITransaction t = account.getTransaction(name);
+            if (!this.ids.containsKey(t)) {
+                this.ids.put(t, this.transactions.size());
+                this.transactions.add(t);
+            }
+        }
+    }
+
+    // apply the record at offset p to the account
+    private void apply(BudgetAccount account, int p) {
+        int type = this.buffer.getInt(p);
+        int id = this.buffer.getInt(p + 8);
+        long a = this.buffer.getLong(p + 16);
+        long b = this.buffer.getLong(p + 24);
+        switch (type) {
+            case ENTER_VALUE:
+                account.enterValue(a, b);
+                break;
+            case REMOVE_VALUE:
+                account.removeValue(a);
+                break;
+            case SET_INTEREST:
+                account.setInterestRate(Float.intBitsToFloat((int) b));
+                break;
+            case SET_ACCOUNT_NAME:
+                account.setName(getText(p + HEADER));
+                break;
+            case SET_ACCOUNT_DESCRIPTION:
+                account.setDescription(getText(p + HEADER));
+                break;
+            case ADD_TRANSACTION:
+                int interval = this.buffer.getInt(p + 12);
+                ChronoUnit unit = ChronoUnit.values()[this.buffer.getInt(p + HEADER)];
+                long amount = this.buffer.getLong(p + HEADER + 4);
+                int q = p + HEADER + 12;
+                String name = getText(q);
+                String description = getText(q + text(this.buffer.getInt(q)));
+                Transaction t = interval == 0
+                        ? new Transaction(name, description, 0f)
+                        : new Transaction(name, description, 0f, Utils.fromEpochSecond(a), interval, unit,
+                                Utils.fromEpochSecond(b));
+                t.setAmountCents(amount);
+                while (this.transactions.size() <= id) {
+                    this.transactions.add(null);
+                }
+                this.transactions.set(id, t);
+                this.ids.put(t, id);
+                account.addTransaction(t);
+                break;
+            case REMOVE_TRANSACTION:
+                account.removeTransaction(this.transactions.get(id));
+                this.ids.remove(this.transactions.set(id, null));
+                break;
+            case ADD_INSTANCE:
+                this.transactions.get(id).addInstance(Utils.fromEpochSecond(a));
+                break;
+            case REMOVE_INSTANCE:
+                this.transactions.get(id).removeInstance(Utils.fromEpochSecond(a));
+                break;
+            case SET_AMOUNT:
+                this.transactions.get(id).setAmountCents(b);
+                break;
+            case SET_NAME:
+                this.transactions.get(id).setName(getText(p + HEADER));
+                break;
+            case SET_DESCRIPTION:
+                this.transactions.get(id).changeDescription(getText(p + HEADER));
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record of type " + type + " at offset " + p);
+        }
+    }
+
+    // whether a complete record starts at offset p
+    private boolean readable(int p) {
+        if (p > this.buffer.capacity() - HEADER || this.buffer.getInt(p) == 0) {
+            return false;
+        }
+        int length = this.buffer.getInt(p + 4);
+        return length >= HEADER && length <= this.buffer.capacity() - p;
+    }
+
+    private void append(int type, int id, int aux, long a, long b, int length) {
+        commit(reserve(length), type, id, aux, a, b, length);
+    }
+
+    private void appendText(int type, int id, String text) {
+        byte[] bytes = encode(text);
+        int p = reserve(HEADER + text(bytes));
+        int end = putText(p + HEADER, bytes);
+        commit(p, type, id, 0, 0, 0, end - p);
+    }
+
+    // make room for a record of up to the given length, returning the offset to write it at
+    private int reserve(int length) {
+        if (this.account == null) {
+            throw new IllegalStateException("Journal is not recording an account.");
+        }
+        int needed = this.position + length + 4; // the type of the following record must stay readable as 0
+        if (needed > this.buffer.capacity() - HEADER) {
+            long grown = Math.max((long) this.buffer.capacity() * 2, needed + HEADER);
+            if (grown > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Journal is full.");
+            }
+            try {
+                map((int) grown);
+            } catch (IOException e) {
+                throw new IllegalStateException("Journal could not be extended.", e);
+            }
+        }
+        return this.position;
+    }
+
+    // write the header of the record at offset p, its type last, and move past it
+    private void commit(int p, int type, int id, int aux, long a, long b, int length) {
+        int aligned = (length + 7) & ~7;
+        this.buffer.putInt(p + 4, aligned);
+        this.buffer.putInt(p + 8, id);
+        this.buffer.putInt(p + 12, aux);
+        this.buffer.putLong(p + 16, a);
+        this.buffer.putLong(p + 24, b);
+        this.buffer.putInt(p + aligned, 0); // clear anything left past the end by a torn record
+        this.buffer.putInt(p, type);
+        this.position = p + aligned;
+    }
+
+    private void map(int capacity) throws IOException {
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // write a length-prefixed string at offset q, returning the offset after it
+    private int putText(int q, byte[] bytes) {
+        if (bytes == null) {
+            this.buffer.putInt(q, -1);
+            return q + 4;
+        }
+        this.buffer.putInt(q, bytes.length);
+        this.buffer.put(q + 4, bytes);
+        return q + text(bytes);
+    }
+
+    private String getText(int q) {
+        int length = this.buffer.getInt(q);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        this.buffer.get(q + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // the bytes taken by a length-prefixed string
+    private static int text(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static int text(int length) {
+        return 4 + Math.max(length, 0);
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of the operations of each account, by account name.
+ * Recording is off unless the JVM is started with -Dantibudget.metrics=true. ENABLED is a constant, so callers guard
+ * every measurement with it and the JIT compiler removes the guarded code entirely when recording is off.
+ * When on, each operation costs two reads of the clock and a few uncontended LongAdder increments: latencies and sizes
+ * go into histograms of power-of-two buckets, so recording never allocates or locks once an account has been seen.
+ * Long-running projections are also reported to Java Flight Recorder as ProjectionEvent, whether or not recording is on.
+ */
+public final class Metrics {
+    /**
+     * Whether operations are recorded, read once from the antibudget.metrics system property.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("antibudget.metrics");
+
+    private static final int BUCKETS = 64; // bucket b counts values below 2^b and not below 2^(b-1)
+    private static final Map<String, AccountMetrics> ACCOUNTS = new ConcurrentHashMap<>();
+
+    /**
+     * The operations that are timed.
+     */
+    public enum Operation {
+        ENTER_VALUE, GET_ACTUAL_VALUES, INTERPOLATE, EXTRAPOLATE_BALANCE, EXTRAPOLATE_NET, RATE_OF_RETURN,
+        GET_TRANSACTION
+    }
+
+    /**
+     * The sizes that are sampled.
+     */
+    public enum Size {
+        HISTORY, // the number of values entered into an account, sampled when values are entered or read
+        INSTANCES // the number of instances of a transaction, sampled when it is looked up
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Record one run of an operation. Callers should only call this when ENABLED is true.
+     * @param account the name of the account.
+     * @param operation the operation.
+     * @param startNanos the value of System.nanoTime() when the operation started.
+     */
+    public static void record(String account, Operation operation, long startNanos) {
+        of(account).latencies.get(operation).add(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Record a size. Callers should only call this when ENABLED is true.
+     * @param account the name of the account.
+     * @param size what was measured.
+     * @param value the size.
+     */
+    public static void recordSize(String account, Size size, long value) {
+        of(account).sizes.get(size).add(value);
+    }
+
+    /**
+     * Return the names of the accounts with recorded metrics.
+     * @return the account names, in no particular order.
+     */
+    public static List<String> accounts() {
+        return new ArrayList<>(ACCOUNTS.keySet());
+    }
+
+    /**
+     * Return the number of recorded runs of an operation.
+     * @param account the name of the account.
+     * @param operation the operation.
+     * @return the number of runs, 0 if none were recorded.
+     */
+    public static long count(String account, Operation operation) {
+        AccountMetrics m = ACCOUNTS.get(account);
+        return m == null ? 0 : m.latencies.get(operation).count();
+    }
+
+    /**
+     * Estimate a percentile of the latency of an operation.
+     * @param account the name of the account.
+     * @param operation the operation.
+     * @param percentile the percentile, between 0 and 100.
+     * @return an upper bound of the percentile in nanoseconds, within a factor of two, or 0 if no runs were recorded.
+     */
+    public static long latencyNanos(String account, Operation operation, double percentile) {
+        AccountMetrics m = ACCOUNTS.get(account);
+        return m == null ? 0 : m.latencies.get(operation).percentile(percentile);
+    }
+
+    /**
+     * Estimate a percentile of a sampled size.
+     * @param account the name of the account.
+     * @param size what was measured.
+     * @param percentile the percentile, between 0 and 100.
+     * @return an upper bound of the percentile, within a factor of two, or 0 if no samples were recorded.
+     */
+    public static long size(String account, Size size, double percentile) {
+        AccountMetrics m = ACCOUNTS.get(account);
+        return m == null ? 0 : m.sizes.get(size).percentile(percentile);
+    }
+
+    /**
+     * Discard everything recorded so far.
+     */
+    public static void reset() {
+        ACCOUNTS.clear();
+    }
+
+    private static AccountMetrics of(String account) {
+        AccountMetrics m = ACCOUNTS.get(account);
+        return m != null ? m : ACCOUNTS.computeIfAbsent(account, a -> new AccountMetrics());
+    }
+
+    // the histograms of one account
+    private static class AccountMetrics {
+        private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+        private final Map<Size, Histogram> sizes = new EnumMap<>(Size.class);
+
+        AccountMetrics() {
+            for (Operation o : Operation.values()) {
+                this.latencies.put(o, new Histogram());
+            }
+            for (Size s : Size.values()) {
+                this.sizes.put(s, new Histogram());
+            }
+        }
+    }
+
+    // counts of non-negative values in power-of-two buckets
+    private static class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        Histogram() {
+            for (int b = 0; b < BUCKETS; b++) {
+                this.buckets[b] = new LongAdder();
+            }
+        }
+
+        void add(long value) {
+            this.buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(value, 0)))].increment();
+        }
+
+        long count() {
+            long total = 0;
+            for (LongAdder b : this.buckets) {
+                total += b.sum();
+            }
+            return total;
+        }
+
+        long percentile(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                counts[b] = this.buckets[b].sum();
+                total += counts[b];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts[b];
+                if (seen >= rank) {
+                    return b == 0 ? 0 : b >= 63 ? Long.MAX_VALUE : (1L << b) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
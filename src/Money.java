@@ -0,0 +1,139 @@
+/**
+ * Static methods for amounts of money held as a long number of cents.
+ * Sums of cents are exact and do not depend on the order they are added in, so totals are identical across runs and
+ * thread counts. Conversions from floating point round to the nearest cent, and scaling by a rate, as when compounding
+ * interest, rounds the result to the nearest cent, so a balance never carries fractions of a cent forward.
+ */
+public final class Money {
+    public static final long CENTS_PER_UNIT = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Convert an amount to cents, rounding to the nearest cent.
+     * @param amount the amount in whole units, such as dollars.
+     * @return the amount in cents.
+     * @throws IllegalArgumentException if the amount is not finite.
+     */
+    public static long of(double amount) {
+        if (!Double.isFinite(amount)) {
+            throw new IllegalArgumentException("Amount must be finite. Given amount is " + amount);
+        }
+        return Math.round(amount * CENTS_PER_UNIT);
+    }
+
+    /**
+     * Convert cents to an amount in whole units.
+     * @param cents the amount in cents.
+     * @return the amount in whole units, such as dollars.
+     */
+    public static double toDouble(long cents) {
+        return (double) cents / CENTS_PER_UNIT;
+    }
+
+    /**
+     * Convert cents to an amount in whole units, as a float.
+     * @param cents the amount in cents.
+     * @return the amount in whole units, such as dollars.
+     */
+    public static float toFloat(long cents) {
+        return (float) toDouble(cents);
+    }
+
+    /**
+     * Multiply an amount by a factor, rounding to the nearest cent.
+     * @param cents the amount in cents.
+     * @param factor the factor to multiply by, such as the growth over a period of interest.
+     * @return the scaled amount in cents.
+     */
+    public static long scale(long cents, double factor) {
+        return Math.round(cents * factor);
+    }
+
+    /**
+     * Sum a range of amounts exactly. The loop has no dependencies between elements other than the sum, so it is
+     * vectorized by the JIT compiler.
+     * @param cents the amounts in cents.
+     * @param from the first index to sum, inclusive.
+     * @param to the last index to sum, exclusive.
+     * @return the total in cents.
+     */
+    public static long sum(long[] cents, int from, int to) {
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            total += cents[i];
+        }
+        return total;
+    }
+
+    /**
+     * Add one array of amounts into another, element by element.
+     * @param total the amounts to add to, in cents.
+     * @param cents the amounts to add, at least as long as total.
+     */
+    public static void addInto(long[] total, long[] cents) {
+        for (int i = 0; i < total.length; i++) {
+            total[i] += cents[i];
+        }
+    }
+
+    /**
+     * Read an amount such as -1,234.56, $12 or (7.50) as exact cents, without allocating.
+     * Digits past the cents are rounded half away from zero.
+     * @param s the text to read.
+     * @param from the index of the first character, inclusive.
+     * @param to the index of the last character, exclusive.
+     * @return the amount in cents.
+     * @throws IllegalArgumentException if the text is not an amount.
+     */
+    public static long parse(CharSequence s, int from, int to) {
+        long units = 0;
+        long fraction = 0; // the first three digits after the decimal point
+        int decimals = -1; // the number of digits after the decimal point, -1 before the point
+        boolean negative = false;
+        boolean any = false;
+        for (int i = from; i < to; i++) {
+            char ch = s.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                if (decimals < 0) {
+                    units = Math.addExact(Math.multiplyExact(units, 10), ch - '0');
+                }
+                else if (decimals < 3) {
+                    fraction = fraction * 10 + (ch - '0');
+                    decimals++;
+                }
+                any = true;
+            }
+            else if (ch == '.' && decimals < 0) {
+                decimals = 0;
+            }
+            else if (ch == '-' || ch == '(') {
+                negative = true;
+            }
+            else if (ch != ',' && ch != ')' && ch != '+' && ch != '"' && !Character.isWhitespace(ch)
+                    && Character.getType(ch) != Character.CURRENCY_SYMBOL) {
+                throw new IllegalArgumentException("Cannot read amount: " + s.subSequence(from, to));
+            }
+        }
+        if (!any) {
+            throw new IllegalArgumentException("Cannot read amount: " + s.subSequence(from, to));
+        }
+        for (int d = Math.max(decimals, 0); d < 3; d++) {
+            fraction *= 10;
+        }
+        long cents = Math.addExact(Math.multiplyExact(units, CENTS_PER_UNIT), (fraction + 5) / 10);
+        return negative ? -cents : cents;
+    }
+
+    /**
+     * Format an amount with two decimal places, such as -1234.56.
+     * @param cents the amount in cents.
+     * @return the formatted amount.
+     */
+    public static String format(long cents) {
+        long units = Math.abs(cents / CENTS_PER_UNIT);
+        long remainder = Math.abs(cents % CENTS_PER_UNIT);
+        return (cents < 0 ? "-" : "") + units + (remainder < 10 ? ".0" : ".") + remainder;
+    }
+}
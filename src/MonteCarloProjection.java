@@ -0,0 +1,286 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Probabilistic projection of an account balance. Each simulated path draws its own annual interest rate for every
+ * unit of the projection and scales each day's transactions by a random factor, then the distribution of balances
+ * across paths is summarised as percentile bands.
+ * Paths are simulated in parallel on the common fork-join pool. Every path has its own random generator seeded from
+ * the projection seed and the path's index, so results are identical for a given seed whatever the thread count.
+ * Balances are not kept: each fork-join chunk counts the balances of its paths at each point in a histogram with
+ * logarithmically spaced buckets, and the chunks' histograms are merged by adding their counts. Memory therefore grows
+ * with the points and the buckets their balances spread over, not with the number of paths, and as counts add exactly
+ * the merged histogram does not depend on how the paths were split. Each reported balance is within RELATIVE_ERROR of
+ * the simulated balance at its percentile, and exact where every path has the same balance.
+ */
+public class MonteCarloProjection {
+    private static final double RELATIVE_ERROR = 0.005; // the accuracy of each reported balance, 0.5%
+    private static final double GAMMA = (1 + RELATIVE_ERROR) / (1 - RELATIVE_ERROR); // the ratio between buckets
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_MAGNITUDE = 0.005; // balances closer to zero than half a cent count as zero
+
+    private final int paths; // the number of simulated paths
+    private final long seed; // the seed all path generators are derived from
+    private final float rateVolatility; // the standard deviation of the annual interest rate
+    private final float amountVolatility; // the standard deviation of transaction amounts, relative to the amount
+
+    /**
+     * Create a Monte Carlo projection.
+     * @param paths the number of paths to simulate.
+     * @param seed the seed to reproduce results from.
+     * @param rateVolatility the standard deviation of the annual interest rate drawn for each unit. 1 = 100%.
+     * @param amountVolatility the standard deviation of each day's transactions, as a fraction of their amount.
+     * @throws IllegalArgumentException if paths is not positive or a volatility is negative.
+     */
+    public MonteCarloProjection(int paths, long seed, float rateVolatility, float amountVolatility) {
+        if (paths <= 0) {
+            throw new IllegalArgumentException("Number of paths must be positive. Given number is " + paths);
+        }
+        if (rateVolatility < 0 || amountVolatility < 0) {
+            throw new IllegalArgumentException("Volatility must not be negative.");
+        }
+        this.paths = paths;
+        this.seed = seed;
+        this.rateVolatility = rateVolatility;
+        this.amountVolatility = amountVolatility;
+    }
+
+    /**
+     * Simulate an account's balance over a range and summarise it as percentile bands.
+     * Each path starts from the account's projected balance at the start of the range and uses its interest rate as
+     * the mean rate. Memory grows with the points and the spread of their balances, whatever the number of paths.
+     * @param account the account to simulate.
+     * @param start the starting date to project from, inclusive.
+     * @param end the ending date to project to, inclusive.
+     * @param unit the level of detail of the values. A new interest rate is drawn for each unit.
+     *             For values other than daily, provides values for the first day of the unit (week starting on Sunday)
+     * @param percentiles the percentiles to report, each between 0 and 100.
+     * @return the requested percentiles of the simulated balance at each point.
+     * @throws IllegalArgumentException if the starting value is after the ending date, a percentile is out of range or
+     *                                  the unit is shorter than a day.
+     */
+    public ProjectionBands run(IBudgetAccount account, LocalDateTime start, LocalDateTime end, ChronoUnit unit,
+                               double... percentiles) {
+        Utils.checkNull(account, "Account");
+        Utils.checkNull(start, "Start Date");
+        Utils.checkNull(end, "End Date");
+        Utils.checkNull(unit, "Unit");
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start date " + start + " is after end date " + end);
+        }
+        for (double p : percentiles) {
+            if (!(p >= 0 && p <= 100)) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100. Given percentile is " + p);
+            }
+        }
+
+        long firstDay = start.toLocalDate().toEpochDay();
+        CalendarBuckets points = CalendarBuckets.of(start, end, unit);
+        int[] pointOffsets = new int[points.size()];
+        for (int i = 0; i < pointOffsets.length; i++) {
+            pointOffsets[i] = Math.toIntExact(points.startDay(i) - firstDay);
+        }
+        long[] flows = dailyFlows(account, start, end, firstDay);
+        LocalDateTime dayBefore = start.toLocalDate().minusDays(1).atStartOfDay();
+        BalanceProjection initial = account.projectBalance(dayBefore, dayBefore, ChronoUnit.DAYS);
+        double opening = initial.next() ? Money.toDouble(initial.balanceCents()) : 0;
+        double meanRate = account.getInterestRate();
+
+        int n = pointOffsets.length;
+        Histograms histograms = IntStream.range(0, this.paths).parallel().collect(() -> new Histograms(n),
+                (h, p) -> simulate(p, h, pointOffsets, flows, opening, meanRate), Histograms::merge);
+
+        float[][] bands = new float[percentiles.length][n];
+        for (int q = 0; q < percentiles.length; q++) {
+            long rank = Math.round(percentiles[q] / 100 * (this.paths - 1));
+            for (int k = 0; k < n; k++) {
+                bands[q][k] = (float) histograms.valueAt(k, rank);
+            }
+        }
+        long[] days = new long[n];
+        for (int i = 0; i < n; i++) {
+            days[i] = firstDay + pointOffsets[i];
+        }
+        return new ProjectionBands(days, percentiles.clone(), bands);
+    }
+
+    // simulate path p, counting its balance at each point in the histograms
+    private void simulate(int p, Histograms histograms, int[] pointOffsets, long[] flows, double opening,
+                          double meanRate) {
+        SplittableRandom random = new SplittableRandom(mix(this.seed + p * 0x9E3779B97F4A7C15L));
+        double balance = opening;
+        int day = -1; // the last day offset folded into balance
+        for (int k = 0; k < pointOffsets.length; k++) {
+            int target = pointOffsets[k];
+            double rate = meanRate + this.rateVolatility * random.nextGaussian();
+            double dailyGrowth = Math.pow(Math.max(1 + rate, 0), 1.0 / 365);
+            while (day < target) {
+                day++;
+                balance *= dailyGrowth;
+                if (flows[day] != 0) {
+                    balance += Money.toDouble(flows[day]) * (1 + this.amountVolatility * random.nextGaussian());
+                }
+            }
+            histograms.add(k, balance);
+        }
+    }
+
+    // the total transaction amount in cents on each day of the range, indexed by days since the first day
+    private static long[] dailyFlows(IBudgetAccount account, LocalDateTime start, LocalDateTime end, long firstDay) {
+        int length = Math.toIntExact(end.toLocalDate().toEpochDay() - firstDay + 1);
+        long[] flows = new long[length];
+        LocalDateTime from = start.toLocalDate().atStartOfDay();
+        LocalDateTime to = LocalDate.ofEpochDay(firstDay + length - 1).atTime(23, 59, 59, 999999999);
+        for (String name : account.getTransactions()) {
+            ITransaction t = account.getTransaction(name);
+            long amount = t.getAmountCents();
+            for (LocalDateTime d : t.getTransactions(from, to)) {
+                flows[(int) (d.toLocalDate().toEpochDay() - firstDay)] += amount;
+            }
+        }
+        return flows;
+    }
+
+    // SplitMix64 finalizer, so neighbouring path indices get unrelated seeds
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // a histogram of balances per point, with buckets of positive and of negative balances spaced by GAMMA
+    private static final class Histograms {
+        private final Buckets[] positive;
+        private final Buckets[] negative; // counted by magnitude
+        private final long[] zeros;
+        private final double[] min;
+        private final double[] max;
+
+        Histograms(int points) {
+            this.positive = new Buckets[points];
+            this.negative = new Buckets[points];
+            for (int k = 0; k < points; k++) {
+                this.positive[k] = new Buckets();
+                this.negative[k] = new Buckets();
+            }
+            this.zeros = new long[points];
+            this.min = new double[points];
+            this.max = new double[points];
+            Arrays.fill(this.min, Double.POSITIVE_INFINITY);
+            Arrays.fill(this.max, Double.NEGATIVE_INFINITY);
+        }
+
+        void add(int k, double balance) {
+            if (balance >= MIN_MAGNITUDE) {
+                this.positive[k].add(index(balance));
+            }
+            else if (balance <= -MIN_MAGNITUDE) {
+                this.negative[k].add(index(-balance));
+            }
+            else {
+                this.zeros[k]++;
+            }
+            this.min[k] = Math.min(this.min[k], balance);
+            this.max[k] = Math.max(this.max[k], balance);
+        }
+
+        void merge(Histograms other) {
+            for (int k = 0; k < this.zeros.length; k++) {
+                this.positive[k].merge(other.positive[k]);
+                this.negative[k].merge(other.negative[k]);
+                this.zeros[k] += other.zeros[k];
+                this.min[k] = Math.min(this.min[k], other.min[k]);
+                this.max[k] = Math.max(this.max[k], other.max[k]);
+            }
+        }
+
+        // the balance of the given rank at point k, counting from the lowest balance at rank 0
+        double valueAt(int k, long rank) {
+            double value;
+            long below = this.negative[k].total();
+            if (rank < below) {
+                value = -this.negative[k].valueAt(below - 1 - rank);
+            }
+            else if (rank < below + this.zeros[k]) {
+                value = 0;
+            }
+            else {
+                value = this.positive[k].valueAt(rank - below - this.zeros[k]);
+            }
+            return Math.max(this.min[k], Math.min(this.max[k], value));
+        }
+
+        // the bucket of a magnitude: bucket i holds magnitudes in (GAMMA^(i - 1), GAMMA^i]
+        private static int index(double magnitude) {
+            return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+        }
+    }
+
+    // counts of magnitudes per bucket, over a window of bucket indices that grows to cover the magnitudes added
+    private static final class Buckets {
+        private int[] counts = new int[0];
+        private int offset; // the bucket index of counts[0]
+        private long total;
+
+        void add(int index) {
+            cover(index, index);
+            this.counts[index - this.offset]++;
+            this.total++;
+        }
+
+        void merge(Buckets other) {
+            if (other.total == 0) {
+                return;
+            }
+            int first = other.offset;
+            int last = other.offset + other.counts.length - 1;
+            cover(first, last);
+            for (int i = 0; i < other.counts.length; i++) {
+                this.counts[first - this.offset + i] += other.counts[i];
+            }
+            this.total += other.total;
+        }
+
+        long total() {
+            return this.total;
+        }
+
+        // the middle of the bucket holding the magnitude of the given rank, counting from the smallest at rank 0
+        double valueAt(long rank) {
+            long seen = 0;
+            int i = 0;
+            while (seen + this.counts[i] <= rank) {
+                seen += this.counts[i++];
+            }
+            return 2 * Math.pow(GAMMA, this.offset + i) / (GAMMA + 1);
+        }
+
+        // grow the window to cover bucket indices first to last
+        private void cover(int first, int last) {
+            if (this.total == 0 && this.counts.length == 0) {
+                this.counts = new int[last - first + 1];
+                this.offset = first;
+                return;
+            }
+            int end = this.offset + this.counts.length;
+            if (first >= this.offset && last < end) {
+                return;
+            }
+            int newOffset = Math.min(first, this.offset);
+            int newEnd = Math.max(last + 1, end);
+            // grow by at least half again, so a window widening one bucket at a time is copied rarely
+            int length = Math.max(newEnd - newOffset, this.counts.length + this.counts.length / 2);
+            if (first < this.offset) {
+                newOffset = newEnd - length;
+            }
+            int[] grown = new int[length];
+            System.arraycopy(this.counts, 0, grown, this.offset - newOffset, this.counts.length);
+            this.counts = grown;
+            this.offset = newOffset;
+        }
+    }
+}
@@ -0,0 +1,626 @@
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * A columnar snapshot of every occurrence of the transactions of a model, for ad hoc queries such as "all expenses
+ * over $500 in Q3, grouped by month".
+ * Occurrences are stored as three primitive columns sorted by day: the epoch day, the amount in cents and the id of
+ * the transaction in a dictionary holding each transaction's name, description and account, so an occurrence costs
+ * 16 bytes and a query reads no objects. A range of days is found by binary search. Filters on names, descriptions and
+ * accounts are evaluated once per dictionary entry into a mask indexed by id, and every row is then filtered and
+ * aggregated in one branch-free loop over the columns. Queries over more than PARALLEL_ROWS rows are split into chunks
+ * aggregated in parallel.
+ * The table does not follow later changes to the model; build a new one to see them.
+ */
+public final class OccurrenceTable {
+    private static final int PARALLEL_ROWS = 1 << 18;
+    private static final int CHUNK_ROWS = 1 << 16;
+
+    private final int[] days; // the epoch day of each occurrence, in ascending order
+    private final long[] cents; // the amount of each occurrence, in cents
+    private final int[] ids; // the dictionary id of the transaction of each occurrence
+    private final String[] names; // the name of each transaction, by id
+    private final String[] descriptions; // the description of each transaction, by id
+    private final int[] accountOf; // the account of each transaction, by id
+    private final String[] accounts; // the name of each account
+
+    private OccurrenceTable(int[] days, long[] cents, int[] ids, String[] names, String[] descriptions,
+                            int[] accountOf, String[] accounts) {
+        this.days = days;
+        this.cents = cents;
+        this.ids = ids;
+        this.names = names;
+        this.descriptions = descriptions;
+        this.accountOf = accountOf;
+        this.accounts = accounts;
+    }
+
+    /**
+     * Build a table of every occurrence of every transaction of a model.
+     * @param model the model.
+     * @return the table.
+     */
+    public static OccurrenceTable of(IBudgetModel model) {
+        Utils.checkNull(model, "Model");
+        List<IBudgetAccount> accounts = new ArrayList<>();
+        for (String name : model.getAccounts()) {
+            accounts.add(model.getAccount(name));
+        }
+        return of(accounts);
+    }
+
+    /**
+     * Build a table of every occurrence of every transaction of some accounts.
+     * @param accounts the accounts.
+     * @return the table.
+     */
+    public static OccurrenceTable of(List<? extends IBudgetAccount> accounts) {
+        Utils.checkNull(accounts, "Accounts");
+        List<ITransaction> transactions = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        String[] accountNames = new String[accounts.size()];
+        long rows = 0;
+        for (int a = 0; a < accountNames.length; a++) {
+            IBudgetAccount account = accounts.get(a);
+            accountNames[a] = account.getName();
+            for (String name : account.getTransactions()) {
+                ITransaction t = account.getTransaction(name);
+                transactions.add(t);
+                owners.add(a);
+                rows += t.numInstances();
+            }
+        }
+        int n = Math.toIntExact(rows);
+        int[] days = new int[n];
+        long[] cents = new long[n];
+        int[] ids = new int[n];
+        String[] names = new String[transactions.size()];
+        String[] descriptions = new String[names.length];
+        int[] accountOf = new int[names.length];
+        int row = 0;
+        for (int id = 0; id < names.length; id++) {
+            ITransaction t = transactions.get(id);
+            names[id] = t.getName();
+            descriptions[id] = t.getDescription();
+            accountOf[id] = owners.get(id);
+            long amount = t.getAmountCents();
+            for (LocalDateTime date : t.getTransactions()) {
+                days[row] = Math.toIntExact(date.toLocalDate().toEpochDay());
+                cents[row] = amount;
+                ids[row++] = id;
+            }
+        }
+        // sort the rows by day, keeping each day's rows in dictionary order
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = (long) days[i] << 32 | i;
+        }
+        Arrays.parallelSort(keys);
+        int[] sortedDays = new int[n];
+        long[] sortedCents = new long[n];
+        int[] sortedIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            int from = (int) keys[i];
+            sortedDays[i] = days[from];
+            sortedCents[i] = cents[from];
+            sortedIds[i] = ids[from];
+        }
+        return new OccurrenceTable(sortedDays, sortedCents, sortedIds, names, descriptions, accountOf, accountNames);
+    }
+
+    /**
+     * Return the number of occurrences in the table.
+     * @return the number of rows.
+     */
+    public int size() {
+        return this.days.length;
+    }
+
+    /**
+     * Return the day of an occurrence.
+     * @param row the row of the occurrence.
+     * @return the epoch day.
+     */
+    public long day(int row) {
+        return this.days[row];
+    }
+
+    /**
+     * Return the amount of an occurrence.
+     * @param row the row of the occurrence.
+     * @return the amount in cents.
+     */
+    public long cents(int row) {
+        return this.cents[row];
+    }
+
+    /**
+     * Return the name of the transaction of an occurrence.
+     * @param row the row of the occurrence.
+     * @return the transaction name.
+     */
+    public String name(int row) {
+        return this.names[this.ids[row]];
+    }
+
+    /**
+     * Return the description of the transaction of an occurrence.
+     * @param row the row of the occurrence.
+     * @return the transaction description.
+     */
+    public String description(int row) {
+        return this.descriptions[this.ids[row]];
+    }
+
+    /**
+     * Return the account of an occurrence.
+     * @param row the row of the occurrence.
+     * @return the account name.
+     */
+    public String account(int row) {
+        return this.accounts[this.accountOf[this.ids[row]]];
+    }
+
+    /**
+     * Start a query over every occurrence of the table.
+     * @return a query without filters.
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    /**
+     * A query over the occurrences of the table. Filters narrow the query and can be chained; aggregates run it.
+     */
+    public final class Query {
+        private long firstDay = Long.MIN_VALUE;
+        private long lastDay = Long.MAX_VALUE;
+        private long minCents = Long.MIN_VALUE;
+        private long maxCents = Long.MAX_VALUE;
+        private long[] mask; // -1 for each transaction id to keep and 0 for the others, null to keep all
+
+        private Query() {
+        }
+
+        /**
+         * Keep the occurrences within a range of dates.
+         * @param start the first date, inclusive.
+         * @param end the last date, inclusive.
+         * @return this query.
+         */
+        public Query between(LocalDateTime start, LocalDateTime end) {
+            Utils.checkNull(start, "Start Date");
+            Utils.checkNull(end, "End Date");
+            return days(start.toLocalDate().toEpochDay(), end.toLocalDate().toEpochDay());
+        }
+
+        /**
+         * Keep the occurrences within a range of days.
+         * @param firstDay the first epoch day, inclusive.
+         * @param lastDay the last epoch day, inclusive.
+         * @return this query.
+         */
+        public Query days(long firstDay, long lastDay) {
+            this.firstDay = Math.max(this.firstDay, firstDay);
+            this.lastDay = Math.min(this.lastDay, lastDay);
+            return this;
+        }
+
+        /**
+         * Keep the occurrences of at least an amount.
+         * @param cents the smallest amount, inclusive, in cents.
+         * @return this query.
+         */
+        public Query atLeast(long cents) {
+            this.minCents = Math.max(this.minCents, cents);
+            return this;
+        }
+
+        /**
+         * Keep the occurrences of at most an amount. Expenses over $500 are the amounts of at most -50000 cents.
+         * @param cents the largest amount, inclusive, in cents.
+         * @return this query.
+         */
+        public Query atMost(long cents) {
+            this.maxCents = Math.min(this.maxCents, cents);
+            return this;
+        }
+
+        /**
+         * Keep the occurrences whose transaction name matches.
+         * @param name the test of the name.
+         * @return this query.
+         */
+        public Query names(Predicate<? super String> name) {
+            Utils.checkNull(name, "Name Predicate");
+            return keep(id -> name.test(OccurrenceTable.this.names[id]));
+        }
+
+        /**
+         * Keep the occurrences whose transaction description matches.
+         * @param description the test of the description.
+         * @return this query.
+         */
+        public Query descriptions(Predicate<? super String> description) {
+            Utils.checkNull(description, "Description Predicate");
+            return keep(id -> description.test(OccurrenceTable.this.descriptions[id]));
+        }
+
+        /**
+         * Keep the occurrences of the transactions of an account.
+         * @param account the name of the account.
+         * @return this query.
+         */
+        public Query account(String account) {
+            Utils.checkNull(account, "Account");
+            return keep(id -> account.equals(OccurrenceTable.this.accounts[OccurrenceTable.this.accountOf[id]]));
+        }
+
+        /**
+         * Count the occurrences that pass the filters.
+         * @return the number of occurrences.
+         */
+        public long count() {
+            return aggregate().count(0);
+        }
+
+        /**
+         * Total the amounts of the occurrences that pass the filters.
+         * @return the total in cents.
+         */
+        public long sum() {
+            return aggregate().sum(0);
+        }
+
+        /**
+         * Aggregate the occurrences that pass the filters into a single group.
+         * @return one group, starting on the first day of the range.
+         */
+        public Groups aggregate() {
+            int from = lowerBound(this.firstDay);
+            int to = lowerBound(this.lastDay == Long.MAX_VALUE ? Long.MAX_VALUE : this.lastDay + 1);
+            Groups groups = new Groups(new long[] {this.firstDay}, null);
+            run(groups, new int[] {from, Math.max(from, to)});
+            return groups;
+        }
+
+        /**
+         * Aggregate the occurrences that pass the filters by calendar unit, from days to millennia.
+         * @param unit the unit of the groups.
+         * @return a group for each unit starting within the range of days, or within the days of the table if the
+         * query has no range. Occurrences before the first unit starts are not counted.
+         */
+        public Groups groupBy(ChronoUnit unit) {
+            long[] range = range();
+            return byDay(CalendarBuckets.of(range[0], range[1], unit));
+        }
+
+        /**
+         * Aggregate the occurrences that pass the filters by calendar quarter.
+         * @return a group for each quarter starting within the range of days, or within the days of the table if the
+         * query has no range. Occurrences before the first quarter starts are not counted.
+         */
+        public Groups groupByQuarter() {
+            long[] range = range();
+            return byDay(CalendarBuckets.quarters(range[0], range[1]));
+        }
+
+        /**
+         * Aggregate the occurrences that pass the filters by transaction.
+         * @return a group for each transaction of the table, in dictionary order, keyed by name.
+         */
+        public Groups groupByTransaction() {
+            int from = lowerBound(this.firstDay);
+            int to = Math.max(from, lowerBound(this.lastDay == Long.MAX_VALUE ? Long.MAX_VALUE : this.lastDay + 1));
+            Groups groups = new Groups(null, OccurrenceTable.this.names);
+            if (to - from <= PARALLEL_ROWS) {
+                byId(from, to, groups);
+                return groups;
+            }
+            return IntStream.range(0, (to - from + CHUNK_ROWS - 1) / CHUNK_ROWS).parallel()
+                    .collect(() -> new Groups(null, OccurrenceTable.this.names),
+                            (part, c) -> byId(from + c * CHUNK_ROWS, Math.min(to, from + (c + 1) * CHUNK_ROWS), part),
+                            Groups::merge);
+        }
+
+        /**
+         * Find the occurrences that pass the filters.
+         * @return the rows of the occurrences, in order of day.
+         */
+        public int[] rows() {
+            int from = lowerBound(this.firstDay);
+            int to = lowerBound(this.lastDay == Long.MAX_VALUE ? Long.MAX_VALUE : this.lastDay + 1);
+            int[] output = new int[Math.max(0, to - from)];
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                if (passes(i)) {
+                    output[n++] = i;
+                }
+            }
+            return Arrays.copyOf(output, n);
+        }
+
+        private Query keep(IntPredicate test) {
+            int n = OccurrenceTable.this.names.length;
+            if (this.mask == null) {
+                this.mask = new long[n];
+                Arrays.fill(this.mask, -1L);
+            }
+            for (int id = 0; id < n; id++) {
+                if (this.mask[id] != 0 && !test.test(id)) {
+                    this.mask[id] = 0;
+                }
+            }
+            return this;
+        }
+
+        private boolean passes(int row) {
+            long c = OccurrenceTable.this.cents[row];
+            return c >= this.minCents && c <= this.maxCents
+                    && (this.mask == null || this.mask[OccurrenceTable.this.ids[row]] != 0);
+        }
+
+        // the range of days to group, clamped to the days of the table
+        private long[] range() {
+            int[] days = OccurrenceTable.this.days;
+            long first = this.firstDay;
+            long last = this.lastDay;
+            if (first == Long.MIN_VALUE) {
+                first = days.length == 0 ? 0 : days[0];
+            }
+            if (last == Long.MAX_VALUE) {
+                last = days.length == 0 ? -1 : days[days.length - 1];
+            }
+            return new long[] {first, last};
+        }
+
+        private Groups byDay(CalendarBuckets buckets) {
+            int n = buckets.size();
+            long[] starts = new long[n];
+            int[] bounds = new int[n + 1];
+            for (int b = 0; b < n; b++) {
+                starts[b] = buckets.startDay(b);
+                bounds[b] = lowerBound(starts[b]);
+            }
+            if (n > 0) {
+                bounds[n] = Math.max(bounds[n - 1], lowerBound(range()[1] + 1));
+            }
+            Groups groups = new Groups(starts, null);
+            run(groups, bounds);
+            return groups;
+        }
+
+        // aggregate each group g over the rows bounds[g]..bounds[g + 1], in parallel chunks for large ranges
+        private void run(Groups groups, int[] bounds) {
+            int groupCount = bounds.length - 1;
+            int from = bounds[0];
+            int to = bounds[groupCount];
+            if (to - from <= PARALLEL_ROWS) {
+                scan(groups, bounds, from, to);
+                return;
+            }
+            groups.merge(IntStream.range(0, (to - from + CHUNK_ROWS - 1) / CHUNK_ROWS).parallel()
+                    .collect(() -> new Groups(groups.startDays, null),
+                            (part, c) -> scan(part, bounds, from + c * CHUNK_ROWS,
+                                    Math.min(to, from + (c + 1) * CHUNK_ROWS)),
+                            Groups::merge));
+        }
+
+        // aggregate the rows from..to into the groups whose bounds they fall within
+        private void scan(Groups groups, int[] bounds, int from, int to) {
+            // start from the last group beginning at or before from; equal bounds mark empty groups
+            int g = 0;
+            int high = bounds.length - 2;
+            while (g < high) {
+                int mid = (g + high + 1) >>> 1;
+                if (bounds[mid] <= from) {
+                    g = mid;
+                }
+                else {
+                    high = mid - 1;
+                }
+            }
+            for (int i = from; i < to; g++) {
+                int end = Math.min(to, bounds[g + 1]);
+                if (this.mask == null) {
+                    total(OccurrenceTable.this.cents, this.minCents, this.maxCents, i, end, groups, g);
+                }
+                else {
+                    total(OccurrenceTable.this.cents, OccurrenceTable.this.ids, this.mask, this.minCents,
+                            this.maxCents, i, end, groups, g);
+                }
+                i = end;
+            }
+        }
+
+        private void byId(int from, int to, Groups groups) {
+            long[] cents = OccurrenceTable.this.cents;
+            int[] ids = OccurrenceTable.this.ids;
+            long[] mask = this.mask;
+            for (int i = from; i < to; i++) {
+                long c = cents[i];
+                int id = ids[i];
+                long m = (c >= this.minCents) & (c <= this.maxCents) ? -1L : 0L;
+                if (mask != null) {
+                    m &= mask[id];
+                }
+                groups.counts[id] -= m;
+                groups.sums[id] += c & m;
+                groups.mins[id] = Math.min(groups.mins[id], c & m | ~m & Long.MAX_VALUE);
+                groups.maxes[id] = Math.max(groups.maxes[id], c & m | ~m & Long.MIN_VALUE);
+            }
+        }
+
+        private int lowerBound(long day) {
+            int[] days = OccurrenceTable.this.days;
+            if (day <= Integer.MIN_VALUE) {
+                return 0;
+            }
+            if (day > Integer.MAX_VALUE) {
+                return days.length;
+            }
+            int low = 0;
+            int high = days.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (days[mid] < day) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    // filter and total a run of amounts into group g, without branches so that the loop can be vectorized
+    private static void total(long[] cents, long min, long max, int from, int to, Groups groups, int g) {
+        long count = 0;
+        long sum = 0;
+        long low = Long.MAX_VALUE;
+        long high = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            long c = cents[i];
+            long m = (c >= min) & (c <= max) ? -1L : 0L;
+            count -= m;
+            sum += c & m;
+            low = Math.min(low, c & m | ~m & Long.MAX_VALUE);
+            high = Math.max(high, c & m | ~m & Long.MIN_VALUE);
+        }
+        groups.add(g, count, sum, low, high);
+    }
+
+    // the same, also filtering on the transaction of each row
+    private static void total(long[] cents, int[] ids, long[] mask, long min, long max, int from, int to,
+                              Groups groups, int g) {
+        long count = 0;
+        long sum = 0;
+        long low = Long.MAX_VALUE;
+        long high = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            long c = cents[i];
+            long m = ((c >= min) & (c <= max) ? -1L : 0L) & mask[ids[i]];
+            count -= m;
+            sum += c & m;
+            low = Math.min(low, c & m | ~m & Long.MAX_VALUE);
+            high = Math.max(high, c & m | ~m & Long.MIN_VALUE);
+        }
+        groups.add(g, count, sum, low, high);
+    }
+
+    /**
+     * The aggregates of the groups of a query: the number of occurrences, their total, and the smallest and largest
+     * amounts of each group.
+     */
+    public static final class Groups {
+        private final long[] startDays; // the first day of each group, null when grouped by transaction
+        private final String[] keys; // the transaction of each group, null when grouped by day
+        private final long[] counts;
+        private final long[] sums;
+        private final long[] mins;
+        private final long[] maxes;
+
+        private Groups(long[] startDays, String[] keys) {
+            this.startDays = startDays;
+            this.keys = keys;
+            int n = startDays != null ? startDays.length : keys.length;
+            this.counts = new long[n];
+            this.sums = new long[n];
+            this.mins = new long[n];
+            this.maxes = new long[n];
+            Arrays.fill(this.mins, Long.MAX_VALUE);
+            Arrays.fill(this.maxes, Long.MIN_VALUE);
+        }
+
+        /**
+         * Return the number of groups.
+         * @return the number of groups.
+         */
+        public int size() {
+            return this.counts.length;
+        }
+
+        /**
+         * Return the first day of a group of days.
+         * @param group the index of the group.
+         * @return the epoch day the group starts on.
+         * @throws IllegalStateException if the groups are not days.
+         */
+        public long startDay(int group) {
+            if (this.startDays == null) {
+                throw new IllegalStateException("Groups are not grouped by day.");
+            }
+            return this.startDays[group];
+        }
+
+        /**
+         * Return the transaction name of a group of transactions.
+         * @param group the index of the group.
+         * @return the name of the transaction.
+         * @throws IllegalStateException if the groups are not transactions.
+         */
+        public String key(int group) {
+            if (this.keys == null) {
+                throw new IllegalStateException("Groups are not grouped by transaction.");
+            }
+            return this.keys[group];
+        }
+
+        /**
+         * Return the number of occurrences in a group.
+         * @param group the index of the group.
+         * @return the number of occurrences.
+         */
+        public long count(int group) {
+            return this.counts[group];
+        }
+
+        /**
+         * Return the total of the amounts in a group.
+         * @param group the index of the group.
+         * @return the total in cents.
+         */
+        public long sum(int group) {
+            return this.sums[group];
+        }
+
+        /**
+         * Return the smallest amount in a group.
+         * @param group the index of the group.
+         * @return the smallest amount in cents, or Long.MAX_VALUE if the group is empty.
+         */
+        public long min(int group) {
+            return this.mins[group];
+        }
+
+        /**
+         * Return the largest amount in a group.
+         * @param group the index of the group.
+         * @return the largest amount in cents, or Long.MIN_VALUE if the group is empty.
+         */
+        public long max(int group) {
+            return this.maxes[group];
+        }
+
+        private void add(int g, long count, long sum, long min, long max) {
+            this.counts[g] += count;
+            this.sums[g] += sum;
+            this.mins[g] = Math.min(this.mins[g], min);
+            this.maxes[g] = Math.max(this.maxes[g], max);
+        }
+
+        private Groups merge(Groups other) {
+            for (int g = 0; g < this.counts.length; g++) {
+                add(g, other.counts[g], other.sums[g], other.mins[g], other.maxes[g]);
+            }
+            return this;
+        }
+    }
+}
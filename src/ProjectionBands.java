@@ -0,0 +1,72 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Percentile bands of a probabilistic projection: for each point of the projection,
+ * the balance at each requested percentile of the simulated paths.
+ */
+public class ProjectionBands {
+    private final long[] epochDays; // the day of each point
+    private final double[] percentiles; // the percentiles reported, in the order requested
+    private final float[][] values; // values[percentile][point]
+
+    public ProjectionBands(long[] epochDays, double[] percentiles, float[][] values) {
+        this.epochDays = epochDays;
+        this.percentiles = percentiles;
+        this.values = values;
+    }
+
+    /**
+     * Return the number of points in the projection.
+     * @return the number of points.
+     */
+    public int size() {
+        return this.epochDays.length;
+    }
+
+    /**
+     * Return the day of the nth point.
+     * @param index the index of the point.
+     * @return the epoch day of the point.
+     */
+    public long epochDay(int index) {
+        return this.epochDays[index];
+    }
+
+    /**
+     * Return the balance of a point at one of the reported percentiles.
+     * @param percentile the percentile, which must be one of those the projection was run with.
+     * @param index the index of the point.
+     * @return the balance at the percentile.
+     * @throws IllegalArgumentException if the percentile was not reported.
+     */
+    public float value(double percentile, int index) {
+        return this.values[indexOf(percentile)][index];
+    }
+
+    /**
+     * Create a map of the balance at one percentile for every point, organized by date.
+     * @param percentile the percentile, which must be one of those the projection was run with.
+     * @return a map of date/values in chronological order.
+     * @throws IllegalArgumentException if the percentile was not reported.
+     */
+    public Map<LocalDateTime, Float> band(double percentile) {
+        float[] band = this.values[indexOf(percentile)];
+        Map<LocalDateTime, Float> m = new LinkedHashMap<>();
+        for (int i = 0; i < band.length; i++) {
+            m.put(LocalDate.ofEpochDay(this.epochDays[i]).atStartOfDay(), band[i]);
+        }
+        return m;
+    }
+
+    private int indexOf(double percentile) {
+        for (int i = 0; i < this.percentiles.length; i++) {
+            if (this.percentiles[i] == percentile) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Percentile " + percentile + " was not reported.");
+    }
+}
@@ -0,0 +1,233 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The recent interpolations and balance projections of a BudgetAccount, cached by range and unit.
+ * Each result remembers the account version it was computed at, and the account reports every change along with the
+ * earliest date it can affect: a changed cash flow only affects projected points on or after its day, and a changed
+ * value only affects the curve from two entries before it, since each slope of the curve depends on its neighbours.
+ * Points before that date are kept, and the rest are recomputed on the next request: interpolations re-evaluate only
+ * the later points, and projections resume from the last point still valid, whose balance and day are all the state
+ * a BalanceProjection carries, so the patched result is identical to a full recomputation.
+ * Changes to the interest rate, to every value at once, or to the value a projection starts from discard the result.
+ * The cache is synchronized, so a published account can be read from many threads.
+ */
+class ProjectionCache {
+    private static final int CACHE_SIZE = 32;
+    private static final long SECONDS_PER_DAY = 86400;
+
+    private final BudgetAccount account;
+    private final Map<Key, Result> results = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    ProjectionCache(BudgetAccount account) {
+        this.account = account;
+    }
+
+    /**
+     * Interpolate the account's values at the start of each unit of a range.
+     * @param start the first date of the range.
+     * @param end the last date of the range.
+     * @param unit the unit between points.
+     * @return the estimated values in cents, keyed by epoch second, in a new series.
+     */
+    TimeSeries interpolate(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+        synchronized (this.results) {
+            Result r = update(new Key(start, end, unit, true));
+            int n = r.points.length;
+            return new TimeSeries(Arrays.copyOf(r.points, n), Arrays.copyOf(r.values, n), n);
+        }
+    }
+
+    /**
+     * Project the account's balance, or its net change, at the start of each unit of a range.
+     * @param start the first date of the range.
+     * @param end the last date of the range.
+     * @param unit the unit between points.
+     * @param net true for the change since the previous point, false for the balance.
+     * @return the projected amounts in cents, keyed by epoch second, in a new series.
+     */
+    TimeSeries project(LocalDateTime start, LocalDateTime end, ChronoUnit unit, boolean net) {
+        synchronized (this.results) {
+            Result r = update(new Key(start, end, unit, false));
+            int n = r.points.length;
+            long[] times = new long[n];
+            long[] values = new long[n];
+            long previous = r.opening;
+            for (int i = 0; i < n; i++) {
+                times[i] = r.points[i] * SECONDS_PER_DAY;
+                values[i] = net ? r.values[i] - previous : r.values[i];
+                previous = r.values[i];
+            }
+            return new TimeSeries(times, values, n);
+        }
+    }
+
+    /**
+     * Keep only the results that a value entered or removed at an epoch second cannot affect.
+     * @param time the epoch second of the value.
+     * @param index the index of the value in the account's series, or the index it was removed from.
+     */
+    void valueChanged(long time, int index) {
+        TimeSeries series = this.account.actualValues;
+        long from = index >= 2 ? series.timeAt(index - 2) : Long.MIN_VALUE;
+        synchronized (this.results) {
+            this.results.values().removeIf(r -> r.interpolation ? r.invalidate(from) == 0
+                    : !r.anchored || time <= r.startSecond);
+        }
+    }
+
+    /**
+     * Discard every result, as after the interest rate or many values changed.
+     */
+    void clear() {
+        synchronized (this.results) {
+            this.results.clear();
+        }
+    }
+
+    // bring a result up to date with the account, computing or patching it as needed
+    private Result update(Key key) {
+        long version = this.account.version();
+        long flowDay = this.account.cashFlows.takeEarliestChange();
+        if (flowDay != Long.MAX_VALUE) {
+            this.results.values().removeIf(r -> !r.interpolation
+                    && (flowDay <= r.openingDay || r.invalidate(flowDay) == 0));
+        }
+        Result r = this.results.get(key);
+        if (r != null && r.version == version) {
+            return r;
+        }
+        if (r == null || r.valid == 0) {
+            r = key.interpolation ? interpolate(key) : project(key);
+            this.results.put(key, r);
+        }
+        else if (r.valid < r.points.length) {
+            if (key.interpolation) {
+                patchInterpolation(r);
+            }
+            else {
+                patchProjection(r, key);
+            }
+        }
+        r.version = version;
+        return r;
+    }
+
+    private Result interpolate(Key key) {
+        long[] grid = Utils.grid(key.start, key.end, key.unit);
+        long[] values = new long[grid.length];
+        this.account.interpolator.evaluate(grid, values, this.account.estInterest);
+        return new Result(true, grid, values);
+    }
+
+    private void patchInterpolation(Result r) {
+        long[] times = Arrays.copyOfRange(r.points, r.valid, r.points.length);
+        long[] values = new long[times.length];
+        this.account.interpolator.evaluate(times, values, this.account.estInterest);
+        System.arraycopy(values, 0, r.values, r.valid, values.length);
+        r.valid = r.points.length;
+    }
+
+    private Result project(Key key) {
+        BalanceProjection p = this.account.projectBalance(key.start, key.end, key.unit);
+        long[] days = new long[16];
+        long[] balances = new long[16];
+        long opening = 0;
+        int n = 0;
+        while (p.next()) {
+            if (n == days.length) {
+                days = Arrays.copyOf(days, n * 2);
+                balances = Arrays.copyOf(balances, n * 2);
+            }
+            if (n == 0) {
+                opening = p.balanceCents() - p.netCents();
+            }
+            days[n] = p.epochDay();
+            balances[n++] = p.balanceCents();
+        }
+        Result r = new Result(false, Arrays.copyOf(days, n), Arrays.copyOf(balances, n));
+        r.opening = opening;
+        r.openingDay = key.start.toLocalDate().toEpochDay() - 1;
+        r.startSecond = Utils.toEpochSecond(key.start);
+        r.anchored = this.account.actualValues.upperBound(r.startSecond) > 0;
+        return r;
+    }
+
+    // resume the projection from the last point still valid
+    private void patchProjection(Result r, Key key) {
+        long day = r.points[r.valid - 1];
+        BalanceProjection p = new BalanceProjection(r.values[r.valid - 1], day, this.account.estInterest,
+                this.account.cashFlows, LocalDate.ofEpochDay(day + 1).atStartOfDay(), key.end, key.unit);
+        for (int i = r.valid; i < r.points.length && p.next(); i++) {
+            r.values[i] = p.balanceCents();
+        }
+        r.valid = r.points.length;
+    }
+
+    // the points of a range, with how many of them are still valid
+    private static final class Result {
+        private final boolean interpolation;
+        private final long[] points; // epoch seconds for interpolations, epoch days for projections
+        private final long[] values; // the value or balance at each point, in cents
+        private int valid; // the number of leading points whose values are still valid
+        private long version; // the account version the result was last brought up to date at
+        private long opening; // the projected balance before the first point, in cents
+        private long openingDay; // the day the opening balance is taken at the end of
+        private long startSecond; // the start of the projected range
+        private boolean anchored; // whether the projection starts from an entered value rather than the curve
+
+        Result(boolean interpolation, long[] points, long[] values) {
+            this.interpolation = interpolation;
+            this.points = points;
+            this.values = values;
+            this.valid = points.length;
+        }
+
+        // mark every point at or after a time as invalid, returning the number of points still valid
+        int invalidate(long from) {
+            int i = Arrays.binarySearch(this.points, 0, this.valid, from);
+            this.valid = i >= 0 ? i : -(i + 1);
+            return this.valid;
+        }
+    }
+
+    // a cached range
+    private static final class Key {
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final ChronoUnit unit;
+        private final boolean interpolation;
+
+        Key(LocalDateTime start, LocalDateTime end, ChronoUnit unit, boolean interpolation) {
+            this.start = start;
+            this.end = end;
+            this.unit = unit;
+            this.interpolation = interpolation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return this.start.equals(k.start) && this.end.equals(k.end) && this.unit == k.unit
+                    && this.interpolation == k.interpolation;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((this.start.hashCode() * 31 + this.end.hashCode()) * 31 + this.unit.hashCode()) * 2
+                    + (this.interpolation ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Java Flight Recorder event for a projection of an account that took longer than its threshold, 10 ms unless a
+ * recording configures another one. Fields are only filled in when the event will be committed, so when no recording
+ * is running an event costs a check of a flag.
+ */
+@Name("antibudget.Projection")
+@Label("Account Projection")
+@Category("AntiBudget")
+@Description("A slow interpolation or extrapolation of an account")
+@Threshold("10 ms")
+@StackTrace(false)
+class ProjectionEvent extends Event {
+    @Label("Account")
+    String account;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Unit")
+    String unit;
+
+    @Label("Points")
+    int points; // the number of dates in the projection
+
+    @Label("History Size")
+    int historySize; // the number of values entered into the account
+
+    @Label("Transactions")
+    int transactions; // the number of transactions of the account
+}
@@ -0,0 +1,520 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local HTTP service answering JSON queries about the accounts of a model, so other processes can read projections
+ * without rebuilding the model. It listens on the loopback address only, and answers GET requests for:
+ * <ul>
+ *     <li>/accounts: the names of the accounts.</li>
+ *     <li>/accounts/{name}/values?start=&amp;end=: the values entered between two dates.</li>
+ *     <li>/accounts/{name}/balance?start=&amp;end=&amp;unit=: the projected balance at the start of each unit.</li>
+ *     <li>/accounts/{name}/net?start=&amp;end=&amp;unit=: the projected change in balance over each unit.</li>
+ * </ul>
+ * Dates are ISO dates or date-times, units are ChronoUnit names such as months, and amounts are decimal numbers.
+ * Series are arrays of {"date": ..., "value": ...} objects, written to the connection as they are produced rather
+ * than built in memory first: values are read with a cursor over the account's series, and projections are computed
+ * a chunk of a few hundred points at a time, each sent before the next is computed. Identical projection requests
+ * arriving before the first chunk of one is computed follow it instead of computing it again: the request computing
+ * it hands each chunk to them before sending it itself, so a burst of clients asking for the same report costs one
+ * projection, and a chunk is kept only until the slowest of them has sent it. Requests arriving later compute their
+ * own, so a request made after a change to the account sees that change. Responses go out through a buffer of a few
+ * kilobytes per connection.
+ * Each request holds a thread while it is computed and sent. It runs on a virtual thread where the runtime has them
+ * (Java 21 and later), so thousands of concurrent clients hold no platform threads. On Java 17, which the project
+ * builds for, there are no virtual threads and requests run on a fixed pool of platform threads instead, 64 unless
+ * given at start: connections beyond the pool are accepted but wait in its queue, so at most that many requests are
+ * served at once.
+ * Requests read the model from many threads at once, so its accounts should be ConcurrentBudgetAccounts, or the model
+ * left unchanged while it is served.
+ */
+public class QueryService implements Closeable {
+    private static final int BACKLOG = 1024; // the connections the system may queue before they are accepted
+    private static final int BUFFER_SIZE = 2048; // the bytes written to a connection at a time
+    private static final int POOL_SIZE = 64; // the default platform threads serving requests without virtual threads
+    private static final int CHUNK_SIZE = 256; // the points of a projection handed to waiting requests at a time
+
+    private final IBudgetModel model;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<Key, CompletableFuture<Chunk>> running = new ConcurrentHashMap<>(); // projections starting
+    private final AtomicLong computed = new AtomicLong(); // the number of projections computed
+    private final AtomicLong coalesced = new AtomicLong(); // the number of requests served a shared projection
+
+    private QueryService(IBudgetModel model, HttpServer server, int threads) {
+        this.model = model;
+        this.server = server;
+        this.executor = newExecutor(threads);
+        server.setExecutor(this.executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Start serving a model on a local port.
+     * @param model the model to serve.
+     * @param port the port to listen on, or 0 for any free port.
+     * @return the running service.
+     * @throws IOException if the port cannot be bound.
+     */
+    public static QueryService start(IBudgetModel model, int port) throws IOException {
+        return start(model, port, POOL_SIZE);
+    }
+
+    /**
+     * Start serving a model on a local port, with a given number of platform threads where the runtime has no virtual
+     * threads.
+     * @param model the model to serve.
+     * @param port the port to listen on, or 0 for any free port.
+     * @param threads the number of requests served at once without virtual threads, ignored where there are some.
+     * @return the running service.
+     * @throws IOException if the port cannot be bound.
+     * @throws IllegalArgumentException if the number of threads is not positive.
+     */
+    public static QueryService start(IBudgetModel model, int port, int threads) throws IOException {
+        Utils.checkNull(model, "Model");
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads must be positive. Given threads is " + threads);
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        QueryService service = new QueryService(model, server, threads);
+        server.start();
+        return service;
+    }
+
+    /**
+     * Return the port the service listens on.
+     * @return the local port.
+     */
+    public int port() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Stop accepting requests, give the requests in progress a second to finish, and stop their threads.
+     */
+    @Override
+    public void close() {
+        this.server.stop(1);
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // the number of projections computed
+    long computed() {
+        return this.computed.get();
+    }
+
+    // the number of requests served a projection already being computed
+    long coalesced() {
+        return this.coalesced.get();
+    }
+
+    // a virtual thread per task where the runtime supports them, found by reflection to keep running on Java 17
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "query-service");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange);
+        } catch (RuntimeException | Error e) {
+            if (exchange.getResponseCode() != -1) {
+                // the response has started, so end the connection without completing it, and the client sees the
+                // response fail rather than take a truncated series for a whole one
+                throw new IOException("Response aborted", e);
+            }
+            // requests are checked before the response starts, so the status can still be set
+            boolean bad = e instanceof IllegalArgumentException;
+            error(exchange, bad ? 400 : 500, bad ? e.getMessage() : "Internal error");
+            exchange.close();
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            return;
+        }
+        exchange.close();
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            error(exchange, 405, "Only GET is supported");
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/accounts")) {
+            accounts(exchange);
+            return;
+        }
+        int slash = path.lastIndexOf('/');
+        if (!path.startsWith("/accounts/") || slash <= "/accounts/".length()) {
+            error(exchange, 404, "No such resource: " + path);
+            return;
+        }
+        String name = path.substring("/accounts/".length(), slash);
+        String kind = path.substring(slash + 1);
+        IBudgetAccount account;
+        try {
+            // fetched once, since the account may be removed at any time
+            account = this.model.getAccount(name);
+        } catch (IllegalArgumentException e) {
+            error(exchange, 404, "No such account: " + name);
+            return;
+        }
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+        switch (kind) {
+            case "values":
+                values(exchange, account, date(query, "start"), date(query, "end"));
+                break;
+            case "balance":
+            case "net":
+                projection(exchange, account, date(query, "start"), date(query, "end"), unit(query),
+                        kind.equals("net"));
+                break;
+            default:
+                error(exchange, 404, "No such resource: " + path);
+        }
+    }
+
+    private void accounts(HttpExchange exchange) throws IOException {
+        List<String> names = this.model.getAccounts();
+        try (Json out = open(exchange, 200)) {
+            out.write('[');
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.string(names.get(i));
+            }
+            out.write(']');
+        }
+    }
+
+    private static void values(HttpExchange exchange, IBudgetAccount account, LocalDateTime start, LocalDateTime end)
+            throws IOException {
+        TimeSeries.Cursor cursor = account.getActualValueCursor(start, end);
+        Json out = open(exchange, 200);
+        out.write('[');
+        boolean first = true;
+        while (cursor.next()) {
+            out.point(first, Utils.fromEpochSecond(cursor.time()).toString(), cursor.cents());
+            first = false;
+        }
+        out.write(']');
+        out.close();
+    }
+
+    private void projection(HttpExchange exchange, IBudgetAccount account, LocalDateTime start, LocalDateTime end,
+                            ChronoUnit unit, boolean net) throws IOException {
+        Key key = new Key(account.getName(), start, end, unit);
+        CompletableFuture<Chunk> created = new CompletableFuture<>();
+        CompletableFuture<Chunk> first = this.running.putIfAbsent(key, created);
+        if (first == null) {
+            compute(exchange, key, account, created, net);
+            return;
+        }
+        this.coalesced.incrementAndGet();
+        Chunk chunk = join(first);
+        Json out = open(exchange, 200);
+        out.write('[');
+        long previous = chunk.opening;
+        while (true) {
+            previous = chunk.send(out, previous, net);
+            if (!chunk.full()) {
+                break;
+            }
+            chunk = join(chunk.next);
+        }
+        out.write(']');
+        out.close();
+    }
+
+    // compute a projection and send it, handing each chunk of points to the requests waiting for it before sending it
+    private void compute(HttpExchange exchange, Key key, IBudgetAccount account, CompletableFuture<Chunk> first,
+                         boolean net) throws IOException {
+        CompletableFuture<Chunk> pending = first; // the future the waiting requests read next
+        try {
+            BalanceProjection p;
+            Chunk chunk;
+            try {
+                p = account.projectBalance(key.start, key.end, key.unit);
+                chunk = new Chunk(p, true);
+            } finally {
+                // requests arriving from now on compute afresh, so one made after a change to the account sees it
+                this.running.remove(key, first);
+            }
+            first.complete(chunk);
+            pending = chunk.next;
+            Json out = open(exchange, 200);
+            IOException lost = null; // why this request's client stopped receiving points, if it did
+            out.write('[');
+            long previous = chunk.opening;
+            while (true) {
+                Chunk current = chunk;
+                if (current.full()) {
+                    chunk = new Chunk(p, false);
+                    current.next.complete(chunk);
+                    pending = chunk.next;
+                }
+                if (lost == null) {
+                    try {
+                        previous = current.send(out, previous, net);
+                    } catch (IOException e) {
+                        // keep computing for the waiting requests, which do not depend on this client
+                        lost = e;
+                    }
+                }
+                if (!current.full()) {
+                    break;
+                }
+            }
+            this.computed.incrementAndGet();
+            if (lost != null) {
+                throw lost;
+            }
+            out.write(']');
+            out.close();
+        } catch (Throwable e) {
+            // fail the waiting requests too, whatever was thrown, rather than leave them waiting forever
+            pending.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // wait for a chunk of a projection computed by another request, rethrowing what that request failed with
+    private static Chunk join(CompletableFuture<Chunk> chunk) {
+        try {
+            return chunk.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // start a streamed response of unknown length, closed only once complete so that a failure part way through
+    // aborts the response instead of ending it early
+    private static Json open(HttpExchange exchange, int status) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, 0);
+        return new Json(exchange.getResponseBody());
+    }
+
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        try (Json out = open(exchange, status)) {
+            out.write("{\"error\":");
+            out.string(message == null ? "" : message);
+            out.write('}');
+        }
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> m = new HashMap<>();
+        if (raw == null) {
+            return m;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                m.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return m;
+    }
+
+    private static LocalDateTime date(Map<String, String> query, String parameter) {
+        String s = query.get(parameter);
+        if (s == null) {
+            throw new IllegalArgumentException("Missing parameter: " + parameter);
+        }
+        try {
+            return s.indexOf('T') >= 0 ? LocalDateTime.parse(s) : LocalDate.parse(s).atStartOfDay();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + parameter + " date: " + s);
+        }
+    }
+
+    private static ChronoUnit unit(Map<String, String> query) {
+        String s = query.get("unit");
+        if (s == null) {
+            throw new IllegalArgumentException("Missing parameter: unit");
+        }
+        try {
+            return ChronoUnit.valueOf(s.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid unit: " + s);
+        }
+    }
+
+    // JSON written to a connection through a small buffer of bytes
+    private static final class Json implements Closeable {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int size;
+
+        Json(OutputStream out) {
+            this.out = out;
+        }
+
+        // write a character that is not escaped in JSON and encodes as one byte
+        void write(char c) throws IOException {
+            if (this.size == this.buffer.length) {
+                flush();
+            }
+            this.buffer[this.size++] = (byte) c;
+        }
+
+        // write text that is not escaped in JSON and encodes as one byte per character
+        void write(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) {
+                write(s.charAt(i));
+            }
+        }
+
+        void string(String s) throws IOException {
+            StringBuilder b = new StringBuilder(s.length() + 2).append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    b.append('\\').append(c);
+                }
+                else if (c < 0x20) {
+                    b.append(String.format("\\u%04x", (int) c));
+                }
+                else {
+                    b.append(c);
+                }
+            }
+            for (byte x : b.append('"').toString().getBytes(StandardCharsets.UTF_8)) {
+                if (this.size == this.buffer.length) {
+                    flush();
+                }
+                this.buffer[this.size++] = x;
+            }
+        }
+
+        void point(boolean first, String date, long cents) throws IOException {
+            write(first ? "{\"date\":\"" : ",{\"date\":\"");
+            write(date);
+            write("\",\"value\":");
+            write(Money.format(cents));
+            write('}');
+        }
+
+        private void flush() throws IOException {
+            this.out.write(this.buffer, 0, this.size);
+            this.size = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            this.out.close();
+        }
+    }
+
+    // up to CHUNK_SIZE points of a projection, handed from the request computing it to the requests waiting for it
+    private static final class Chunk {
+        private final long[] days = new long[CHUNK_SIZE]; // the epoch day of each point
+        private final long[] balances = new long[CHUNK_SIZE]; // the balance at each point, in cents
+        private final CompletableFuture<Chunk> next = new CompletableFuture<>(); // the points after these, once full
+        private final boolean first; // whether these are the first points of the projection
+        private long opening; // the balance before the first point, in cents, if first
+        private int size;
+
+        Chunk(BalanceProjection p, boolean first) {
+            this.first = first;
+            while (this.size < CHUNK_SIZE && p.next()) {
+                if (first && this.size == 0) {
+                    this.opening = p.balanceCents() - p.netCents();
+                }
+                this.days[this.size] = p.epochDay();
+                this.balances[this.size++] = p.balanceCents();
+            }
+        }
+
+        // whether the projection may have more points after these
+        boolean full() {
+            return this.size == CHUNK_SIZE;
+        }
+
+        // write the points, given the balance before them, and return the balance after them
+        long send(Json out, long previous, boolean net) throws IOException {
+            for (int i = 0; i < this.size; i++) {
+                out.point(this.first && i == 0, LocalDate.ofEpochDay(this.days[i]).toString(),
+                        net ? this.balances[i] - previous : this.balances[i]);
+                previous = this.balances[i];
+            }
+            return previous;
+        }
+    }
+
+    // a projection request
+    private static final class Key {
+        private final String account;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final ChronoUnit unit;
+
+        Key(String account, LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+            this.account = account;
+            this.start = start;
+            this.end = end;
+            this.unit = unit;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return this.account.equals(k.account) && this.start.equals(k.start) && this.end.equals(k.end)
+                    && this.unit == k.unit;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((this.account.hashCode() * 31 + this.start.hashCode()) * 31 + this.end.hashCode()) * 31
+                    + this.unit.hashCode();
+        }
+    }
+}
@@ -0,0 +1,503 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The rates of return of a BudgetAccount over ranges of days, as annual rates. 1 = 100%.
+ * The account's value at the end of each day comes from the curve through its entered values, or from its projected
+ * balance if it has none. Its cash flows are the net of its transactions on each day, taken at the end of the day.
+ * The money-weighted rate is the XIRR of the opening value, the flows and the closing value, solved by Newton's method
+ * with Brent's method as a fallback. The time-weighted rate chains the returns of the periods between entered
+ * values: each period grows at the constant rate that takes its opening value, with the flows it contains, to its
+ * closing value, so flows only move the value at their own dates. Outside the entered values the account grows at its
+ * estimated interest, and an account without entered values chains the growth of each day of its projected balance
+ * net of that day's flow. Either way the rate is unaffected by when money was added or taken out.
+ * Results for single ranges are cached until the account changes. Rolling windows share one pass over the values and
+ * flows of their whole span: each money-weighted window starts its solver from the previous window's rate, and each
+ * time-weighted window is the difference of two prefix sums.
+ */
+public class RateOfReturn {
+    private static final double DAYS_PER_YEAR = 365;
+    private static final long SECONDS_PER_DAY = 86400;
+    private static final int CACHE_SIZE = 256;
+    private static final int NEWTON_STEPS = 20;
+    private static final int BRENT_STEPS = 200;
+    private static final double TOLERANCE = 1e-12; // on ln(1 + rate)
+    private static final double MAX_LOG = 20; // bounds ln(1 + rate), a rate between -99.9999998% and about e^20
+
+    private final BudgetAccount account;
+    private final Map<Range, Double> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Range, Double> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private long cachedVersion = -1; // the account version the cached results were computed at
+
+    RateOfReturn(BudgetAccount account) {
+        this.account = account;
+    }
+
+    /**
+     * Calculate the money-weighted annual rate of return over a range of days.
+     * @param start the first day of the range, inclusive. The opening value is taken at its start.
+     * @param end the last day of the range, inclusive. The closing value is taken at its end.
+     * @return the annual rate, or NaN if no rate balances the flows.
+     * @throws IllegalArgumentException if the start is after the end.
+     */
+    public double moneyWeighted(LocalDateTime start, LocalDateTime end) {
+        return single(start, end, false);
+    }
+
+    /**
+     * Calculate the time-weighted annual rate of return over a range of days.
+     * @param start the first day of the range, inclusive. The opening value is taken at its start.
+     * @param end the last day of the range, inclusive. The closing value is taken at its end.
+     * @return the annual rate, or NaN if the value of the account is not positive throughout the range, or the return
+     * of a period between entered values it overlaps is undefined.
+     * @throws IllegalArgumentException if the start is after the end.
+     */
+    public double timeWeighted(LocalDateTime start, LocalDateTime end) {
+        return single(start, end, true);
+    }
+
+    /**
+     * Calculate the money-weighted annual rate of return over each of a series of windows of the same length.
+     * @param firstStart the first day of the first window.
+     * @param windowDays the number of days in each window.
+     * @param stepDays the number of days between the starts of consecutive windows.
+     * @param count the number of windows.
+     * @return the rate of each window in order, NaN where no rate balances the flows.
+     * @throws IllegalArgumentException if the window or step is not positive, or the count is negative.
+     */
+    public double[] rollingMoneyWeighted(LocalDateTime firstStart, int windowDays, int stepDays, int count) {
+        Span span = rollingSpan(firstStart, windowDays, stepDays, count);
+        double[] output = new double[count];
+        double[] years = new double[16];
+        double[] amounts = new double[16];
+        double guess = this.account.estInterest;
+        int lo = 0; // the first flow after the opening of the window
+        int hi = 0; // the first flow after the close of the window
+        for (int w = 0; w < count; w++) {
+            int open = w * stepDays;
+            int close = open + windowDays;
+            while (lo < span.flowCount && span.flowDays[lo] <= open) {
+                lo++;
+            }
+            while (hi < span.flowCount && span.flowDays[hi] <= close) {
+                hi++;
+            }
+            int length = hi - lo + 2;
+            if (length > years.length) {
+                years = new double[Math.max(length, years.length * 2)];
+                amounts = new double[years.length];
+            }
+            span.cashFlows(open, close, lo, hi, years, amounts);
+            output[w] = xirr(years, amounts, length, guess);
+            if (Double.isFinite(output[w])) {
+                guess = output[w];
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Calculate the time-weighted annual rate of return over each of a series of windows of the same length.
+     * @param firstStart the first day of the first window.
+     * @param windowDays the number of days in each window.
+     * @param stepDays the number of days between the starts of consecutive windows.
+     * @param count the number of windows.
+     * @return the rate of each window in order, NaN where the value of the account is not positive throughout it or
+     * the return of a period between entered values it overlaps is undefined.
+     * @throws IllegalArgumentException if the window or step is not positive, or the count is negative.
+     */
+    public double[] rollingTimeWeighted(LocalDateTime firstStart, int windowDays, int stepDays, int count) {
+        Span span = rollingSpan(firstStart, windowDays, stepDays, count);
+        span.prefixGrowth();
+        double[] output = new double[count];
+        for (int w = 0; w < count; w++) {
+            output[w] = span.timeWeighted(w * stepDays, w * stepDays + windowDays);
+        }
+        return output;
+    }
+
+    /**
+     * Solve for the annual rate at which a set of dated cash flows has a net present value of zero.
+     * Newton's method is run on ln(1 + rate), so every iterate is a valid rate; from a nearby guess it converges in a
+     * few passes over the flows. If it stalls or diverges, the root is bracketed around the guess and found by Brent's
+     * method, which always converges once bracketed.
+     * @param years the time of each flow in years from any common origin.
+     * @param amounts the amount of each flow, positive for money received and negative for money paid.
+     * @param length the number of flows to take from the start of the arrays.
+     * @param guess the rate to start from, such as the rate of a neighbouring range.
+     * @return the rate, or NaN if the flows do not include both a payment and a receipt or no rate balances them.
+     */
+    public static double xirr(double[] years, double[] amounts, int length, double guess) {
+        boolean paid = false;
+        boolean received = false;
+        for (int k = 0; k < length; k++) {
+            paid |= amounts[k] < 0;
+            received |= amounts[k] > 0;
+        }
+        if (!paid || !received) {
+            return Double.NaN;
+        }
+        double start = Double.isFinite(guess) && guess > -1 ? Math.log1p(guess) : 0;
+        start = Math.max(-MAX_LOG, Math.min(MAX_LOG, start));
+        double x = start;
+        for (int i = 0; i < NEWTON_STEPS; i++) {
+            double f = 0;
+            double slope = 0;
+            for (int k = 0; k < length; k++) {
+                double v = amounts[k] * Math.exp(-x * years[k]);
+                f += v;
+                slope -= years[k] * v;
+            }
+            if (slope == 0 || !Double.isFinite(f) || !Double.isFinite(slope)) {
+                break;
+            }
+            double step = f / slope;
+            x -= step;
+            if (!(Math.abs(x) <= MAX_LOG)) {
+                break;
+            }
+            if (Math.abs(step) < TOLERANCE) {
+                return Math.expm1(x);
+            }
+        }
+        return Math.expm1(brent(years, amounts, length, start));
+    }
+
+    private double single(LocalDateTime start, LocalDateTime end, boolean timeWeighted) {
+        Utils.checkNull(start, "Start Date");
+        Utils.checkNull(end, "End Date");
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("Start date " + start + " is after end date " + end);
+        }
+        long first = start.toLocalDate().toEpochDay();
+        long last = end.toLocalDate().toEpochDay();
+        Range range = new Range(first, last, timeWeighted);
+        long version = this.account.version();
+        synchronized (this.cache) {
+            if (this.cachedVersion != version) {
+                this.cache.clear();
+                this.cachedVersion = version;
+            }
+            Double cached = this.cache.get(range);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Span span = new Span(first, last);
+        int days = Math.toIntExact(last - first + 1);
+        double rate;
+        if (timeWeighted) {
+            span.prefixGrowth();
+            rate = span.timeWeighted(0, days);
+        }
+        else {
+            double[] years = new double[span.flowCount + 2];
+            double[] amounts = new double[years.length];
+            span.cashFlows(0, days, 0, span.flowCount, years, amounts);
+            rate = xirr(years, amounts, years.length, this.account.estInterest);
+        }
+        synchronized (this.cache) {
+            if (this.cachedVersion == version) {
+                this.cache.put(range, rate);
+            }
+        }
+        return rate;
+    }
+
+    private Span rollingSpan(LocalDateTime firstStart, int windowDays, int stepDays, int count) {
+        Utils.checkNull(firstStart, "Start Date");
+        if (windowDays <= 0 || stepDays <= 0) {
+            throw new IllegalArgumentException("Window and step must be positive. Given window is " + windowDays +
+                    " and step is " + stepDays);
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative. Given count is " + count);
+        }
+        long first = firstStart.toLocalDate().toEpochDay();
+        long last = first + (long) Math.max(count - 1, 0) * stepDays + windowDays - 1;
+        return new Span(first, last);
+    }
+
+    // the value of ln(1 + rate) within the bracket at which the flows have a net present value of zero
+    private static double brent(double[] years, double[] amounts, int length, double guess) {
+        double a = guess - 0.05;
+        double b = guess + 0.05;
+        double fa = npv(years, amounts, length, a);
+        double fb = npv(years, amounts, length, b);
+        while (fa * fb > 0) {
+            if (a <= -MAX_LOG && b >= MAX_LOG) {
+                return Double.NaN;
+            }
+            double width = b - a;
+            a = Math.max(-MAX_LOG, a - width);
+            b = Math.min(MAX_LOG, b + width);
+            fa = npv(years, amounts, length, a);
+            fb = npv(years, amounts, length, b);
+        }
+        double c = a;
+        double fc = fa;
+        double d = b - a;
+        double e = d;
+        for (int i = 0; i < BRENT_STEPS; i++) {
+            if (fb * fc > 0) {
+                c = a;
+                fc = fa;
+                d = b - a;
+                e = d;
+            }
+            if (Math.abs(fc) < Math.abs(fb)) {
+                a = b;
+                b = c;
+                c = a;
+                fa = fb;
+                fb = fc;
+                fc = fa;
+            }
+            double tolerance = 2 * Math.ulp(b) + TOLERANCE / 2;
+            double m = (c - b) / 2;
+            if (Math.abs(m) <= tolerance || fb == 0) {
+                return b;
+            }
+            if (Math.abs(e) >= tolerance && Math.abs(fa) > Math.abs(fb)) {
+                // try inverse quadratic interpolation, or the secant if only two points are distinct
+                double s = fb / fa;
+                double p;
+                double q;
+                if (a == c) {
+                    p = 2 * m * s;
+                    q = 1 - s;
+                }
+                else {
+                    double r = fb / fc;
+                    q = fa / fc;
+                    p = s * (2 * m * q * (q - r) - (b - a) * (r - 1));
+                    q = (q - 1) * (r - 1) * (s - 1);
+                }
+                if (p > 0) {
+                    q = -q;
+                }
+                else {
+                    p = -p;
+                }
+                if (2 * p < Math.min(3 * m * q - Math.abs(tolerance * q), Math.abs(e * q))) {
+                    e = d;
+                    d = p / q;
+                }
+                else {
+                    d = m;
+                    e = m;
+                }
+            }
+            else {
+                d = m;
+                e = m;
+            }
+            a = b;
+            fa = fb;
+            b += Math.abs(d) > tolerance ? d : Math.copySign(tolerance, m);
+            fb = npv(years, amounts, length, b);
+        }
+        return b;
+    }
+
+    // the net present value of the flows at a rate of e^x - 1
+    private static double npv(double[] years, double[] amounts, int length, double x) {
+        double f = 0;
+        for (int k = 0; k < length; k++) {
+            f += amounts[k] * Math.exp(-x * years[k]);
+        }
+        return f;
+    }
+
+    // the values and flows of the account over a span of days, indexed by days since the day before the span
+    private class Span {
+        private final double[] values; // the value at the end of each day, in cents, starting the day before the span
+        private final double[] flows; // the net flow on each day, in cents, with flows[0] unused
+        private final int[] flowDays; // the indices of the days with a flow, in ascending order
+        private final long before; // the epoch day before the span
+        private final boolean entered; // whether the values come from the curve through the entered values
+        private int flowCount;
+        private double[] logGrowth; // the running sum of ln(daily growth net of flows), once computed
+        private int[] invalid; // the running count of days whose growth is undefined, once computed
+
+        Span(long first, long last) {
+            int n = Math.toIntExact(last - first + 2);
+            long before = first - 1;
+            this.before = before;
+            this.values = new double[n];
+            long[] cents = new long[n];
+            BudgetAccount a = RateOfReturn.this.account;
+            this.entered = !a.actualValues.isEmpty();
+            if (this.entered) {
+                long[] times = new long[n];
+                for (int k = 0; k < n; k++) {
+                    times[k] = (before + k + 1) * SECONDS_PER_DAY;
+                }
+                a.interpolator.evaluate(times, cents, a.estInterest);
+            }
+            else {
+                LocalDateTime from = LocalDate.ofEpochDay(before).atStartOfDay();
+                BalanceProjection p = a.projectBalance(from, LocalDate.ofEpochDay(last).atStartOfDay(), ChronoUnit.DAYS);
+                for (int k = 0; k < n && p.next(); k++) {
+                    cents[k] = p.balanceCents();
+                }
+            }
+            for (int k = 0; k < n; k++) {
+                this.values[k] = cents[k];
+            }
+
+            this.flows = new double[n];
+            CashFlowIndex index = a.cashFlows;
+            int size = index.compact();
+            int[] days = new int[16];
+            for (int i = index.lowerBound(first); i < size && index.dayAt(i) <= last; i++) {
+                int k = (int) (index.dayAt(i) - before);
+                this.flows[k] = index.netAt(i);
+                if (this.flows[k] != 0) {
+                    if (this.flowCount == days.length) {
+                        days = Arrays.copyOf(days, this.flowCount * 2);
+                    }
+                    days[this.flowCount++] = k;
+                }
+            }
+            this.flowDays = days;
+        }
+
+        // write the investor's flows of the window closing at day close: the opening value paid, each flow of the
+        // account paid in, and the closing value received, timed in years from the opening
+        void cashFlows(int open, int close, int lo, int hi, double[] years, double[] amounts) {
+            years[0] = 0;
+            amounts[0] = -this.values[open];
+            int n = 1;
+            for (int i = lo; i < hi; i++) {
+                int k = this.flowDays[i];
+                years[n] = (k - open) / DAYS_PER_YEAR;
+                amounts[n++] = -this.flows[k];
+            }
+            years[n] = (close - open) / DAYS_PER_YEAR;
+            amounts[n] = this.values[close];
+        }
+
+        void prefixGrowth() {
+            int n = this.values.length;
+            this.logGrowth = new double[n];
+            this.invalid = new int[n];
+            if (this.entered) {
+                chainEnteredValues();
+                return;
+            }
+            for (int k = 1; k < n; k++) {
+                double before = this.values[k - 1];
+                double after = this.values[k] - this.flows[k];
+                boolean valid = before > 0 && after > 0;
+                this.logGrowth[k] = this.logGrowth[k - 1] + (valid ? Math.log(after / before) : 0);
+                this.invalid[k] = this.invalid[k - 1] + (valid ? 0 : 1);
+            }
+        }
+
+        // sum the growth of each day from the rates of the periods between entered values that it overlaps, rather
+        // than from the curve, which passes smoothly through the entered values and so does not jump on flow days
+        private void chainEnteredValues() {
+            TimeSeries series = RateOfReturn.this.account.actualValues;
+            int size = series.size();
+            long t = (this.before + 1) * SECONDS_PER_DAY; // the end of the day before the span
+            int j = series.upperBound(t) - 1; // the last entry at or before t, -1 if there is none
+            double rate = periodRate(series, j);
+            for (int k = 1; k < this.values.length; k++) {
+                long end = t + SECONDS_PER_DAY;
+                double growth = 0;
+                boolean valid = true;
+                while (t < end) {
+                    long next = j + 1 < size ? Math.min(end, series.timeAt(j + 1)) : end;
+                    valid &= !Double.isNaN(rate);
+                    growth += valid ? rate * (next - t) : 0;
+                    t = next;
+                    if (j + 1 < size && t == series.timeAt(j + 1)) {
+                        rate = periodRate(series, ++j);
+                    }
+                }
+                this.logGrowth[k] = this.logGrowth[k - 1] + growth;
+                this.invalid[k] = this.invalid[k - 1] + (valid ? 0 : 1);
+            }
+        }
+
+        // ln(1 + rate) per second from entry j of the series to entry j + 1, at the estimated interest before the
+        // first entry and after the last, or NaN if either value is not positive or no rate balances the period
+        private double periodRate(TimeSeries series, int j) {
+            BudgetAccount a = RateOfReturn.this.account;
+            if (j < 0 || j >= series.size() - 1) {
+                return Math.log1p(a.estInterest) / DAYS_PER_YEAR / SECONDS_PER_DAY;
+            }
+            long open = series.timeAt(j);
+            long close = series.timeAt(j + 1);
+            if (series.valueAt(j) <= 0 || series.valueAt(j + 1) <= 0) {
+                return Double.NaN;
+            }
+            // the flows of the days that end after the opening value and no later than the closing value
+            CashFlowIndex index = a.cashFlows;
+            int count = index.compact();
+            int lo = index.lowerBound(Math.floorDiv(open, SECONDS_PER_DAY));
+            int hi = lo;
+            while (hi < count && index.dayAt(hi) < Math.floorDiv(close, SECONDS_PER_DAY)) {
+                hi++;
+            }
+            double[] years = new double[hi - lo + 2];
+            double[] amounts = new double[years.length];
+            years[0] = 0;
+            amounts[0] = -series.valueAt(j);
+            for (int i = lo; i < hi; i++) {
+                years[i - lo + 1] = ((index.dayAt(i) + 1) * SECONDS_PER_DAY - open) / (double) SECONDS_PER_DAY
+                        / DAYS_PER_YEAR;
+                amounts[i - lo + 1] = -index.netAt(i);
+            }
+            years[years.length - 1] = (close - open) / (double) SECONDS_PER_DAY / DAYS_PER_YEAR;
+            amounts[years.length - 1] = series.valueAt(j + 1);
+            double rate = xirr(years, amounts, years.length, a.estInterest);
+            return Math.log1p(rate) / DAYS_PER_YEAR / SECONDS_PER_DAY;
+        }
+
+        // the annual time-weighted rate from the end of day open to the end of day close
+        double timeWeighted(int open, int close) {
+            if (this.invalid[close] != this.invalid[open]) {
+                return Double.NaN;
+            }
+            double growth = this.logGrowth[close] - this.logGrowth[open];
+            return Math.expm1(growth * DAYS_PER_YEAR / (close - open));
+        }
+    }
+
+    // a cached range of days
+    private static final class Range {
+        private final long first;
+        private final long last;
+        private final boolean timeWeighted;
+
+        Range(long first, long last, boolean timeWeighted) {
+            this.first = first;
+            this.last = last;
+            this.timeWeighted = timeWeighted;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Range)) {
+                return false;
+            }
+            Range r = (Range) o;
+            return this.first == r.first && this.last == r.last && this.timeWeighted == r.timeWeighted;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.first * 31 + this.last) * 2 + (this.timeWeighted ? 1 : 0);
+        }
+    }
+}
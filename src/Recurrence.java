@@ -0,0 +1,356 @@
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * A rule generating the dates of a recurring transaction: every interval units from a start date up to an end date,
+ * except for any occurrences that have been excluded.
+ * Occurrences are computed from their index rather than stored, so a rule takes the same memory whether it spans a
+ * month or forty years. The kth occurrence is always start + k * interval units, so monthly rules do not drift
+ * when a month is shorter than the starting day.
+ */
+public class Recurrence {
+    private final LocalDateTime start; // the first occurrence
+    private final int interval; // the number of units between occurrences
+    private final ChronoUnit unit; // the unit of the interval
+    private final long last; // the index of the last occurrence not after the end date
+    private long[] exceptions = new long[0]; // sorted indices of excluded occurrences
+    private int numExceptions;
+
+    /**
+     * Create a recurrence rule.
+     * @param start the date of the first occurrence.
+     * @param interval the number of units between occurrences.
+     * @param unit the unit of the interval.
+     * @param end the last date an occurrence can fall on, inclusive.
+     * @throws IllegalArgumentException if the interval is not positive, the end is before the start,
+     * or the unit cannot be added to a date.
+     */
+    public Recurrence(LocalDateTime start, int interval, ChronoUnit unit, LocalDateTime end) {
+        Utils.checkNull(start, "Start Date");
+        Utils.checkNull(unit, "Unit");
+        Utils.checkNull(end, "End Date");
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval must be positive. Given interval is " + interval);
+        }
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("End date " + end + " is before start date " + start);
+        }
+        if (!start.isSupported(unit)) {
+            throw new IllegalArgumentException("Unit " + unit + " cannot be used for a recurrence.");
+        }
+        this.start = start;
+        this.interval = interval;
+        this.unit = unit;
+        this.last = floorIndex(end);
+    }
+
+    /**
+     * Create an independent copy of the rule, with the same exclusions.
+     * @return the copy.
+     */
+    public Recurrence copy() {
+        Recurrence r = new Recurrence(this.start, this.interval, this.unit, this.last);
+        r.exceptions = Arrays.copyOf(this.exceptions, this.numExceptions);
+        r.numExceptions = this.numExceptions;
+        return r;
+    }
+
+    private Recurrence(LocalDateTime start, int interval, ChronoUnit unit, long last) {
+        this.start = start;
+        this.interval = interval;
+        this.unit = unit;
+        this.last = last;
+    }
+
+    public LocalDateTime getStart() {
+        return this.start;
+    }
+
+    public int getInterval() {
+        return this.interval;
+    }
+
+    public ChronoUnit getUnit() {
+        return this.unit;
+    }
+
+    /**
+     * Return the date of the last occurrence the rule can generate, ignoring exclusions.
+     * @return the date of the last possible occurrence.
+     */
+    public LocalDateTime getEnd() {
+        return occurrence(this.last);
+    }
+
+    /**
+     * Return the date of the kth occurrence, ignoring exclusions.
+     * @param k the index of the occurrence.
+     * @return the date of the occurrence.
+     */
+    public LocalDateTime occurrence(long k) {
+        return this.start.plus(k * this.interval, this.unit);
+    }
+
+    /**
+     * Return the number of occurrences of the rule, not counting exclusions.
+     * @return the number of occurrences.
+     */
+    public long size() {
+        return this.last + 1 - this.numExceptions;
+    }
+
+    /**
+     * Check if the rule has an occurrence on the given date that has not been excluded.
+     * @param date the date to check.
+     * @return true if there is an occurrence on the date, false otherwise.
+     */
+    public boolean occursOn(LocalDateTime date) {
+        long k = indexOf(date);
+        return k >= 0 && !isExcluded(k);
+    }
+
+    /**
+     * Check if the given date is an occurrence of the rule that has been excluded.
+     * @param date the date to check.
+     * @return true if the date is an excluded occurrence, false otherwise.
+     */
+    public boolean isExcluded(LocalDateTime date) {
+        long k = indexOf(date);
+        return k >= 0 && isExcluded(k);
+    }
+
+    /**
+     * Exclude the occurrence on the given date.
+     * @param date the date of the occurrence.
+     * @throws IllegalArgumentException if the rule has no occurrence on the date.
+     */
+    public void exclude(LocalDateTime date) {
+        long k = indexOf(date);
+        int i = k < 0 ? 0 : Arrays.binarySearch(this.exceptions, 0, this.numExceptions, k);
+        if (k < 0 || i >= 0) {
+            throw new IllegalArgumentException("Recurrence has no occurrence on given date: " + date);
+        }
+        i = -(i + 1);
+        if (this.numExceptions == this.exceptions.length) {
+            this.exceptions = Arrays.copyOf(this.exceptions, Math.max(4, this.numExceptions * 2));
+        }
+        System.arraycopy(this.exceptions, i, this.exceptions, i + 1, this.numExceptions - i);
+        this.exceptions[i] = k;
+        this.numExceptions++;
+    }
+
+    /**
+     * Restore an excluded occurrence.
+     * @param date the date of the occurrence.
+     * @throws IllegalArgumentException if the date is not an excluded occurrence.
+     */
+    public void include(LocalDateTime date) {
+        long k = indexOf(date);
+        int i = k < 0 ? -1 : Arrays.binarySearch(this.exceptions, 0, this.numExceptions, k);
+        if (i < 0) {
+            throw new IllegalArgumentException("Recurrence has no excluded occurrence on given date: " + date);
+        }
+        System.arraycopy(this.exceptions, i + 1, this.exceptions, i, this.numExceptions - i - 1);
+        this.numExceptions--;
+    }
+
+    /**
+     * Return the dates of the excluded occurrences, in chronological order.
+     * @return a new list of the excluded dates.
+     */
+    public List<LocalDateTime> exclusions() {
+        List<LocalDateTime> excluded = new ArrayList<>(this.numExceptions);
+        for (int i = 0; i < this.numExceptions; i++) {
+            excluded.add(occurrence(this.exceptions[i]));
+        }
+        return excluded;
+    }
+
+    /**
+     * Count the occurrences within a range.
+     * @param from the starting date, inclusive.
+     * @param to the ending date, inclusive.
+     * @return the number of occurrences that have not been excluded within the range.
+     */
+    public long count(LocalDateTime from, LocalDateTime to) {
+        long lo = ceilIndex(from);
+        long hi = Math.min(floorIndex(to), this.last);
+        if (hi < lo) {
+            return 0;
+        }
+        return hi - lo + 1 - (rank(hi + 1) - rank(lo));
+    }
+
+    /**
+     * Return the date of the nth occurrence that has not been excluded.
+     * @param n the index of the occurrence among those not excluded.
+     * @return the date of the occurrence.
+     * @throws IllegalArgumentException if n is out of bounds.
+     */
+    public LocalDateTime nth(long n) {
+        if (n < 0 || n >= size()) {
+            throw new IllegalArgumentException("Index out of bounds. Requested index " + n + " of size " + size());
+        }
+        return occurrence(nthIndex(n));
+    }
+
+    /**
+     * Return the first occurrence that has not been excluded.
+     * @return the first date, or null if every occurrence is excluded.
+     */
+    public LocalDateTime first() {
+        return size() == 0 ? null : occurrence(nthIndex(0));
+    }
+
+    /**
+     * Return the last occurrence that has not been excluded.
+     * @return the last date, or null if every occurrence is excluded.
+     */
+    public LocalDateTime last() {
+        return size() == 0 ? null : occurrence(nthIndex(size() - 1));
+    }
+
+    /**
+     * Lazily generate the occurrences within a range, in chronological order.
+     * @param from the starting date, inclusive.
+     * @param to the ending date, inclusive.
+     * @return an iterator over the dates of occurrences that have not been excluded.
+     */
+    public Iterator<LocalDateTime> iterator(LocalDateTime from, LocalDateTime to) {
+        long lo = ceilIndex(from);
+        long hi = Math.min(floorIndex(to), this.last);
+        return new Iterator<LocalDateTime>() {
+            long k = lo;
+            int e = rank(lo); // the next exception at or after k
+
+            @Override
+            public boolean hasNext() {
+                while (e < numExceptions && exceptions[e] == k) {
+                    k++;
+                    e++;
+                }
+                return k <= hi;
+            }
+
+            @Override
+            public LocalDateTime next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return occurrence(k++);
+            }
+        };
+    }
+
+    /**
+     * Create a read-only view of the occurrences within a range, in chronological order.
+     * Dates are computed when accessed. The size of the view is fixed when it is created, so it should not be
+     * used after occurrences are excluded or restored.
+     * @param from the starting date, inclusive.
+     * @param to the ending date, inclusive.
+     * @return a list of the dates of occurrences that have not been excluded.
+     */
+    public List<LocalDateTime> between(LocalDateTime from, LocalDateTime to) {
+        long before = ceilIndex(from);
+        long skipped = before - rank(before); // occurrences that have not been excluded before the range
+        int size = Math.toIntExact(count(from, to));
+        return new RangeView(from, to, skipped, size);
+    }
+
+    /**
+     * Find the index of the occurrence on the given date, excluded or not.
+     * @param date the date of the occurrence.
+     * @return the index of the occurrence, or -1 if the rule has none on the date.
+     */
+    long indexOf(LocalDateTime date) {
+        Utils.checkNull(date, "Date");
+        long k = floorIndex(date);
+        return k >= 0 && k <= this.last && occurrence(k).equals(date) ? k : -1;
+    }
+
+    private boolean isExcluded(long k) {
+        return Arrays.binarySearch(this.exceptions, 0, this.numExceptions, k) >= 0;
+    }
+
+    // the number of exceptions before occurrence index k
+    private int rank(long k) {
+        int i = Arrays.binarySearch(this.exceptions, 0, this.numExceptions, k);
+        return i >= 0 ? i : -(i + 1);
+    }
+
+    // the index of the nth occurrence that has not been excluded
+    private long nthIndex(long n) {
+        long k = n;
+        for (int i = 0; i < this.numExceptions && this.exceptions[i] <= k; i++) {
+            k++;
+        }
+        return k;
+    }
+
+    // the index of the last occurrence not after the date, or -1 if the date is before the start
+    private long floorIndex(LocalDateTime date) {
+        if (date.isBefore(this.start)) {
+            return -1;
+        }
+        long k = this.unit.between(this.start, date) / this.interval;
+        // month and year arithmetic clamps to the end of shorter months, so the next occurrence may still fit
+        while (fits(k + 1, date)) {
+            k++;
+        }
+        return k;
+    }
+
+    // the index of the first occurrence not before the date
+    private long ceilIndex(LocalDateTime date) {
+        long k = floorIndex(date);
+        return k >= 0 && occurrence(k).equals(date) ? k : k + 1;
+    }
+
+    private boolean fits(long k, LocalDateTime date) {
+        try {
+            return !occurrence(k).isAfter(date);
+        } catch (DateTimeException | ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private class RangeView extends AbstractList<LocalDateTime> implements RandomAccess {
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        private final long skipped;
+        private final int size;
+
+        RangeView(LocalDateTime from, LocalDateTime to, long skipped, int size) {
+            this.from = from;
+            this.to = to;
+            this.skipped = skipped;
+            this.size = size;
+        }
+
+        @Override
+        public LocalDateTime get(int index) {
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException("Index " + index + " of size " + this.size);
+            }
+            return occurrence(nthIndex(this.skipped + index));
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+        @Override
+        public Iterator<LocalDateTime> iterator() {
+            return Recurrence.this.iterator(this.from, this.to);
+        }
+    }
+}
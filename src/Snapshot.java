@@ -0,0 +1,268 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A copy of the complete state of a BudgetAccount at one moment: its settings, entered values and transactions.
+ * Capturing takes a copy-on-write fork of the account, which shares its value arrays and transaction dates instead of
+ * copying them, so the caller pays O(1) per transaction whatever the history. The fork is never changed, so it can
+ * be written from another thread while the account keeps changing; the account copies whatever it changes next.
+ * The file stores values as two contiguous arrays, so reading it back costs a bulk copy rather than a replay of every
+ * change that produced them.
+ */
+public class Snapshot {
+    private static final int MAGIC = 0x41425350; // "ABSP"
+    private static final int VERSION = 2;
+    private static final int CHUNK = 1 << 13; // the number of values written at a time
+
+    private final String name;
+    private final String description;
+    private final float interest;
+    private final TimeSeries values; // the account's entered values, never changed
+    private final List<ITransaction> transactions; // the account's transactions, never changed
+
+    private Snapshot(String name, String description, float interest, TimeSeries values,
+                     List<ITransaction> transactions) {
+        this.name = name;
+        this.description = description;
+        this.interest = interest;
+        this.values = values;
+        this.transactions = transactions;
+    }
+
+    /**
+     * Capture the current state of an account, without copying its history.
+     * @param account the account to capture.
+     * @return a snapshot independent of any later change to the account.
+     */
+    public static Snapshot capture(BudgetAccount account) {
+        Utils.checkNull(account, "Account");
+        BudgetAccount fork = account.fork();
+        List<ITransaction> transactions = new ArrayList<>(fork.transactions.size());
+        for (ITransaction t : fork.transactions) {
+            transactions.add(t);
+        }
+        return new Snapshot(fork.name, fork.description, fork.estInterest, fork.actualValues, transactions);
+    }
+
+    /**
+     * Read a snapshot written by write.
+     * @param file the path of the snapshot.
+     * @return the snapshot.
+     * @throws IOException if the file cannot be read or is not a snapshot.
+     */
+    public static Snapshot read(Path file) throws IOException {
+        Utils.checkNull(file, "File");
+        try (FileChannel channel = FileChannel.open(file)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a snapshot: " + file);
+            }
+            String name = getText(in);
+            String description = getText(in);
+            float interest = in.getFloat();
+
+            int size = in.getInt();
+            long[] times = new long[size];
+            long[] values = new long[size];
+            in.asLongBuffer().get(times);
+            in.position(in.position() + size * 8);
+            in.asLongBuffer().get(values);
+            in.position(in.position() + size * 8);
+
+            int count = in.getInt();
+            List<ITransaction> transactions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                transactions.add(TransactionState.read(in).restore());
+            }
+            return new Snapshot(name, description, interest, new TimeSeries(times, values, size), transactions);
+        }
+    }
+
+    /**
+     * Write the snapshot to a file, replacing any file already there.
+     * The file is first written under a temporary name and then moved into place, so a snapshot file is always
+     * complete even if writing is interrupted.
+     * @param file the path of the snapshot.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        Utils.checkNull(file, "File");
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            putText(out, this.name);
+            putText(out, this.description);
+            out.writeFloat(this.interest);
+
+            int size = this.values.size();
+            out.writeInt(size);
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK * 8);
+            for (int i = 0; i < size; i += CHUNK) {
+                int n = Math.min(CHUNK, size - i);
+                chunk.clear();
+                chunk.asLongBuffer().put(this.values.times(), i, n);
+                out.write(chunk.array(), 0, n * 8);
+            }
+            for (int i = 0; i < size; i += CHUNK) {
+                int n = Math.min(CHUNK, size - i);
+                chunk.clear();
+                chunk.asLongBuffer().put(this.values.values(), i, n);
+                out.write(chunk.array(), 0, n * 8);
+            }
+
+            out.writeInt(this.transactions.size());
+            for (ITransaction t : this.transactions) {
+                TransactionState.of(t).write(out);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Create a new account in the state the snapshot was taken in.
+     * @return the restored account.
+     */
+    public BudgetAccount restore() {
+        BudgetAccount account = new BudgetAccount(this.name, this.description, this.interest);
+        account.restoreValues(this.values.copy());
+        for (ITransaction t : this.transactions) {
+            account.addTransaction(t instanceof Transaction ? ((Transaction) t).fork() : Transaction.copyOf(t));
+        }
+        return account;
+    }
+
+    private static void putText(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getText(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // the saved form of one transaction, with its dates as epoch seconds
+    private static class TransactionState {
+        private String name;
+        private String description;
+        private long amount; // in cents
+        private int interval; // the interval of the recurrence rule, or 0 if the transaction does not recur
+        private int unit;
+        private long start;
+        private long end;
+        private long[] exclusions;
+        private long[] dates; // the one-off dates
+
+        static TransactionState of(ITransaction transaction) {
+            TransactionState s = new TransactionState();
+            s.name = transaction.getName();
+            s.description = transaction.getDescription();
+            s.amount = transaction.getAmountCents();
+            Recurrence rule = transaction instanceof Transaction ? ((Transaction) transaction).getRecurrence() : null;
+            List<LocalDateTime> dates = transaction.getTransactions();
+            if (rule == null) {
+                s.exclusions = new long[0];
+            }
+            else {
+                s.interval = rule.getInterval();
+                s.unit = rule.getUnit().ordinal();
+                s.start = Utils.toEpochSecond(rule.getStart());
+                s.end = Utils.toEpochSecond(rule.getEnd());
+                s.exclusions = seconds(rule.exclusions());
+                dates = ((Transaction) transaction).oneOffDates();
+            }
+            s.dates = seconds(dates);
+            return s;
+        }
+
+        static TransactionState read(ByteBuffer in) {
+            TransactionState s = new TransactionState();
+            s.name = getText(in);
+            s.description = getText(in);
+            s.amount = in.getLong();
+            s.interval = in.getInt();
+            s.unit = in.getInt();
+            s.start = in.getLong();
+            s.end = in.getLong();
+            s.exclusions = new long[in.getInt()];
+            for (int i = 0; i < s.exclusions.length; i++) {
+                s.exclusions[i] = in.getLong();
+            }
+            s.dates = new long[in.getInt()];
+            for (int i = 0; i < s.dates.length; i++) {
+                s.dates[i] = in.getLong();
+            }
+            return s;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            putText(out, this.name);
+            putText(out, this.description);
+            out.writeLong(this.amount);
+            out.writeInt(this.interval);
+            out.writeInt(this.unit);
+            out.writeLong(this.start);
+            out.writeLong(this.end);
+            out.writeInt(this.exclusions.length);
+            for (long e : this.exclusions) {
+                out.writeLong(e);
+            }
+            out.writeInt(this.dates.length);
+            for (long d : this.dates) {
+                out.writeLong(d);
+            }
+        }
+
+        Transaction restore() {
+            Transaction t = this.interval == 0
+                    ? new Transaction(this.name, this.description, 0f)
+                    : new Transaction(this.name, this.description, 0f, Utils.fromEpochSecond(this.start),
+                            this.interval, ChronoUnit.values()[this.unit], Utils.fromEpochSecond(this.end));
+            t.setAmountCents(this.amount);
+            for (long e : this.exclusions) {
+                t.removeInstance(Utils.fromEpochSecond(e));
+            }
+            for (long d : this.dates) {
+                t.addInstance(Utils.fromEpochSecond(d));
+            }
+            return t;
+        }
+
+        private static long[] seconds(List<LocalDateTime> dates) {
+            long[] output = new long[dates.size()];
+            for (int i = 0; i < output.length; i++) {
+                output[i] = Utils.toEpochSecond(dates.get(i));
+            }
+            return output;
+        }
+    }
+}
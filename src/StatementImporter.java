@@ -0,0 +1,469 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imports bank statements into the accounts of a budget model, reading CSV or OFX/QFX files as a stream.
+ * Each row is an instance of the transaction named by its payee, on the account it belongs to, and a row with a
+ * balance also enters that balance as the account's value on the row's date. Rows are buffered up to a fixed count,
+ * then grouped by account and transaction name, sorted and applied with the accounts' and transactions' batch methods,
+ * so each group is merged in one pass and the memory held besides one identifier per row stays bounded whatever the
+ * size of the file.
+ * Dates are read without their time of day. Rows of one payee are grouped by amount, since a transaction has a single
+ * amount: the group of the first amount seen becomes the transaction named by the payee, and each other amount a
+ * transaction named by the payee and that amount, such as "Grocer (-30.00)". A transaction the account already has
+ * under the payee's name takes the rows of its own amount. A transaction has at most one instance a day, so a row
+ * its transaction already has on that day goes to the next of "Cafe #2", "Cafe #3" and so on with a free day, and
+ * every row counts once. Accounts that do not exist yet are created with no interest.
+ * Each row is identified by its OFX FITID, or failing that by its account, date, amount and payee and the number of
+ * identical rows before it in the statement. Rows whose identifier this importer has already imported are skipped,
+ * so overlapping statements can be imported again, while identical rows within one statement are all kept.
+ */
+public class StatementImporter {
+    private static final int BATCH = 1 << 16; // the number of rows buffered before they are applied
+    private static final int ORDER_BITS = 20; // room for the row order below the day when sorting values
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L; // the starting state of a row identifier's hash
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final IBudgetModel model;
+    private final Map<String, AccountRows> pending = new HashMap<>(); // buffered rows by account name
+    private final Set<Long> imported = new HashSet<>(); // the identifiers of the rows imported so far
+    private int buffered;
+
+    public StatementImporter(IBudgetModel model) {
+        Utils.checkNull(model, "Model");
+        this.model = model;
+    }
+
+    /**
+     * Import a CSV statement. The first line must be a header naming the columns: a column containing "date" and an
+     * "amount" column are required; "account", "balance" and a payee column ("name", "payee", "description" or
+     * "memo") are optional. Dates may be written as yyyy-MM-dd, yyyy/MM/dd, yyyyMMdd or MM/dd/yyyy. Amounts may
+     * carry currency symbols, thousands separators, or parentheses for negative values.
+     * @param in the statement to read.
+     * @param account the account of rows that do not name one.
+     * @return the number of rows imported, not counting rows that were imported before.
+     * @throws IOException if the statement cannot be read.
+     * @throws IllegalArgumentException if the header lacks a required column or a row cannot be parsed.
+     */
+    public int importCsv(Reader in, String account) throws IOException {
+        Utils.checkNull(in, "Reader");
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+        String line = reader.readLine();
+        if (line == null) {
+            return 0;
+        }
+        int[] bounds = new int[16];
+        int columns;
+        while ((columns = split(line, bounds)) > bounds.length / 2) {
+            bounds = new int[columns * 2];
+        }
+        int dateColumn = -1, amountColumn = -1, accountColumn = -1, balanceColumn = -1, nameColumn = -1;
+        for (int c = 0; c < columns; c++) {
+            String header = field(line, bounds, c).trim().toLowerCase(Locale.ROOT);
+            if (header.contains("date") && dateColumn < 0) {
+                dateColumn = c;
+            }
+            else if (header.equals("amount")) {
+                amountColumn = c;
+            }
+            else if (header.equals("account")) {
+                accountColumn = c;
+            }
+            else if (header.equals("balance")) {
+                balanceColumn = c;
+            }
+            else if (nameColumn < 0 && (header.equals("name") || header.equals("payee")
+                    || header.equals("description") || header.equals("memo"))) {
+                nameColumn = c;
+            }
+        }
+        if (dateColumn < 0 || amountColumn < 0) {
+            throw new IllegalArgumentException("CSV header needs a date and an amount column: " + line);
+        }
+
+        Set<Long> seen = new HashSet<>(); // the identifiers of the rows of this statement
+        int rows = 0;
+        int number = 1;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            if (line.isBlank()) {
+                continue;
+            }
+            int fields;
+            while ((fields = split(line, bounds)) > bounds.length / 2) {
+                bounds = new int[fields * 2];
+            }
+            try {
+                long day = parseDay(line, bounds[2 * dateColumn], bounds[2 * dateColumn + 1]);
+                long amount = Money.parse(line, bounds[2 * amountColumn], bounds[2 * amountColumn + 1]);
+                String accountName = accountColumn < 0 ? account : field(line, bounds, accountColumn).trim();
+                String name = nameColumn < 0 ? "Imported" : field(line, bounds, nameColumn).trim();
+                boolean hasBalance = balanceColumn >= 0 && bounds[2 * balanceColumn] < bounds[2 * balanceColumn + 1];
+                long balance = hasBalance
+                        ? Money.parse(line, bounds[2 * balanceColumn], bounds[2 * balanceColumn + 1]) : 0;
+                if (this.imported.add(occurrence(seen, rowId(accountName, day, amount, name)))) {
+                    add(accountName, day, name, amount, hasBalance, balance);
+                    rows++;
+                }
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Cannot import line " + number + ": " + line, e);
+            }
+        }
+        flush();
+        return rows;
+    }
+
+    /**
+     * Import an OFX or QFX statement, in either the SGML or the XML form. Each STMTTRN is a row of the account named
+     * by the ACCTID before it, dated by DTPOSTED with its amount from TRNAMT and its name from NAME, or MEMO if it
+     * has no name, and identified by its FITID if it has one. Each LEDGERBAL enters its BALAMT as the account's value
+     * on its DTASOF date.
+     * @param in the statement to read.
+     * @return the number of transactions imported, not counting transactions that were imported before.
+     * @throws IOException if the statement cannot be read.
+     * @throws IllegalArgumentException if a transaction cannot be parsed.
+     */
+    public int importOfx(Reader in) throws IOException {
+        Utils.checkNull(in, "Reader");
+        Reader reader = in instanceof BufferedReader ? in : new BufferedReader(in, 1 << 16);
+        StringBuilder tag = new StringBuilder();
+        StringBuilder value = new StringBuilder();
+        String account = "";
+        String posted = null, amount = null, name = null, memo = null, fitId = null, balance = null, asOf = null;
+        Set<Long> seen = new HashSet<>(); // the identifiers of the transactions of this statement
+        int rows = 0;
+        int c = reader.read();
+        while (c >= 0) {
+            if (c != '<') {
+                c = reader.read();
+                continue;
+            }
+            tag.setLength(0);
+            while ((c = reader.read()) >= 0 && c != '>') {
+                tag.append((char) c);
+            }
+            value.setLength(0);
+            while ((c = reader.read()) >= 0 && c != '<') {
+                value.append((char) c);
+            }
+            String text = value.toString().trim();
+            switch (tag.toString().trim().toUpperCase(Locale.ROOT)) {
+                case "ACCTID":
+                    account = text;
+                    break;
+                case "STMTTRN":
+                    posted = amount = name = memo = fitId = null;
+                    break;
+                case "FITID":
+                    fitId = text;
+                    break;
+                case "DTPOSTED":
+                    posted = text;
+                    break;
+                case "TRNAMT":
+                    amount = text;
+                    break;
+                case "NAME":
+                    name = text;
+                    break;
+                case "MEMO":
+                    memo = text;
+                    break;
+                case "/STMTTRN":
+                    if (posted == null || amount == null) {
+                        throw new IllegalArgumentException("OFX transaction has no date or amount.");
+                    }
+                    long day = parseDay(posted, 0, Math.min(8, posted.length()));
+                    String payee = name != null ? name : memo != null ? memo : "Imported";
+                    long cents = Money.parse(amount, 0, amount.length());
+                    long id = fitId != null && !fitId.isEmpty()
+                            ? hash(hash(FNV_OFFSET, account), "FITID " + fitId)
+                            : occurrence(seen, rowId(account, day, cents, payee));
+                    if (this.imported.add(id)) {
+                        add(account, day, payee, cents, false, 0);
+                        rows++;
+                    }
+                    break;
+                case "LEDGERBAL":
+                    balance = asOf = null;
+                    break;
+                case "BALAMT":
+                    balance = text;
+                    break;
+                case "DTASOF":
+                    asOf = text;
+                    break;
+                case "/LEDGERBAL":
+                    if (balance != null && asOf != null) {
+                        addBalance(account, parseDay(asOf, 0, Math.min(8, asOf.length())),
+                                Money.parse(balance, 0, balance.length()));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        flush();
+        return rows;
+    }
+
+    // the identifier of a row without a statement identifier, before counting the identical rows before it
+    private static long rowId(String account, long day, long amount, String name) {
+        long h = hash(hash(FNV_OFFSET, String.valueOf(account)), name);
+        h = (h ^ day) * FNV_PRIME;
+        return (h ^ amount) * FNV_PRIME;
+    }
+
+    // the identifier of the next row of a statement with the given row identifier, distinct from the identical rows
+    // before it in the statement, which are recorded in seen
+    private static long occurrence(Set<Long> seen, long id) {
+        long h = id;
+        for (int k = 1; !seen.add(h); k++) {
+            h = (id ^ k) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    // continue a 64-bit FNV-1a hash with the characters of a string and a terminator
+    private static long hash(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * FNV_PRIME;
+        }
+        return (h ^ 0xffff) * FNV_PRIME;
+    }
+
+    private void add(String account, long day, String name, long amount, boolean hasBalance, long balance) {
+        AccountRows rows = this.pending.computeIfAbsent(account, a -> new AccountRows());
+        rows.instance(name, amount, day);
+        if (hasBalance) {
+            rows.value(day, balance);
+        }
+        if (++this.buffered >= BATCH) {
+            flush();
+        }
+    }
+
+    private void addBalance(String account, long day, long balance) {
+        this.pending.computeIfAbsent(account, a -> new AccountRows()).value(day, balance);
+        if (++this.buffered >= BATCH) {
+            flush();
+        }
+    }
+
+    // apply every buffered row to the model
+    private void flush() {
+        for (Map.Entry<String, AccountRows> e : this.pending.entrySet()) {
+            String name = e.getKey();
+            if (!this.model.hasAccount(name)) {
+                this.model.addAccount(new BudgetAccount(name, "", 0));
+            }
+            e.getValue().applyTo(this.model.getAccount(name));
+        }
+        this.pending.clear();
+        this.buffered = 0;
+    }
+
+    // split a CSV line into fields, writing the start and end of field c to bounds[2c] and bounds[2c + 1]
+    // returns the number of fields, which may exceed the room in bounds
+    private static int split(String line, int[] bounds) {
+        int c = 0;
+        int i = 0;
+        int n = line.length();
+        while (true) {
+            int start = i;
+            int end;
+            if (i < n && line.charAt(i) == '"') {
+                i++;
+                start = i;
+                while (i < n && !(line.charAt(i) == '"' && (i + 1 >= n || line.charAt(i + 1) != '"'))) {
+                    i += line.charAt(i) == '"' ? 2 : 1;
+                }
+                end = i;
+                while (i < n && line.charAt(i) != ',') {
+                    i++;
+                }
+            }
+            else {
+                while (i < n && line.charAt(i) != ',') {
+                    i++;
+                }
+                end = i;
+            }
+            if (2 * c + 1 < bounds.length) {
+                bounds[2 * c] = start;
+                bounds[2 * c + 1] = end;
+            }
+            c++;
+            if (i >= n) {
+                return c;
+            }
+            i++;
+        }
+    }
+
+    private static String field(String line, int[] bounds, int c) {
+        String text = line.substring(bounds[2 * c], bounds[2 * c + 1]);
+        return text.indexOf('"') >= 0 ? text.replace("\"\"", "\"") : text;
+    }
+
+    // parse a date without allocating, as the epoch day
+    static long parseDay(CharSequence s, int from, int to) {
+        int first = 0, second = 0, third = 0; // the numbers of the date in the order they are written
+        int firstDigits = 0;
+        int count = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = from; i <= to && count < 3; i++) {
+            char ch = i < to ? s.charAt(i) : ' ';
+            if (ch >= '0' && ch <= '9' && digits < 9) {
+                value = value * 10 + (ch - '0');
+                digits++;
+            }
+            else if (digits > 0) {
+                if (count == 0) {
+                    first = value;
+                    firstDigits = digits;
+                }
+                else if (count == 1) {
+                    second = value;
+                }
+                else {
+                    third = value;
+                }
+                count++;
+                value = 0;
+                digits = 0;
+            }
+        }
+        try {
+            if (count >= 1 && firstDigits == 8) {
+                return LocalDate.of(first / 10000, first / 100 % 100, first % 100).toEpochDay();
+            }
+            if (count == 3 && firstDigits == 4) {
+                return LocalDate.of(first, second, third).toEpochDay();
+            }
+            if (count == 3) {
+                return LocalDate.of(third, first, second).toEpochDay();
+            }
+        } catch (DateTimeException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Cannot read date: " + s.subSequence(from, to));
+    }
+
+    // the buffered rows of one account
+    private static class AccountRows {
+        private long[] keys = new long[16]; // the day of each value above its row order, so sorting keeps file order
+        private long[] values = new long[16]; // in cents
+        private int size;
+        private final Map<String, Map<Long, NameRows>> names = new HashMap<>(); // instances by payee and amount
+
+        void value(long day, long value) {
+            if (this.size == this.keys.length) {
+                this.keys = Arrays.copyOf(this.keys, this.size * 2);
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.keys[this.size] = (day << ORDER_BITS) | this.size;
+            this.values[this.size++] = value;
+        }
+
+        void instance(String name, long amount, long day) {
+            this.names.computeIfAbsent(name, n -> new LinkedHashMap<>()).computeIfAbsent(amount, NameRows::new)
+                    .add(day);
+        }
+
+        void applyTo(IBudgetAccount account) {
+            if (this.size > 0) {
+                long[] sorted = Arrays.copyOf(this.keys, this.size);
+                Arrays.sort(sorted);
+                long[] times = new long[this.size];
+                long[] ordered = new long[this.size];
+                for (int i = 0; i < this.size; i++) {
+                    times[i] = (sorted[i] >> ORDER_BITS) * 86400L;
+                    ordered[i] = this.values[(int) (sorted[i] & ((1 << ORDER_BITS) - 1))];
+                }
+                account.enterValues(times, ordered, this.size);
+            }
+            for (Map.Entry<String, Map<Long, NameRows>> e : this.names.entrySet()) {
+                String payee = e.getKey();
+                for (NameRows rows : e.getValue().values()) {
+                    String name = payee;
+                    if (account.hasTransaction(payee)
+                            && account.getTransaction(payee).getAmountCents() != rows.amount) {
+                        name = payee + " (" + Money.format(rows.amount) + ")";
+                    }
+                    // a transaction has one instance a day, so rows on a day it already has go to the next copy
+                    List<LocalDateTime> remaining = rows.dates();
+                    for (int copy = 1; !remaining.isEmpty(); copy++) {
+                        String copyName = copy == 1 ? name : name + " #" + copy;
+                        ITransaction t;
+                        if (account.hasTransaction(copyName)) {
+                            t = account.getTransaction(copyName);
+                            if (t.getAmountCents() != rows.amount) {
+                                continue;
+                            }
+                        }
+                        else {
+                            t = new Transaction(copyName, "", 0f);
+                            t.setAmountCents(rows.amount);
+                            account.addTransaction(t);
+                        }
+                        List<LocalDateTime> taken = new ArrayList<>(remaining.size());
+                        List<LocalDateTime> left = new ArrayList<>();
+                        for (LocalDateTime d : remaining) {
+                            boolean repeated = !taken.isEmpty() && taken.get(taken.size() - 1).equals(d);
+                            if (repeated || t.hasInstance(d)) {
+                                left.add(d);
+                            }
+                            else {
+                                taken.add(d);
+                            }
+                        }
+                        t.addInstances(taken);
+                        remaining = left;
+                    }
+                }
+            }
+        }
+    }
+
+    // the buffered instances of one transaction
+    private static class NameRows {
+        private final long amount; // the amount of every row, in cents
+        private long[] days = new long[4];
+        private int size;
+
+        NameRows(long amount) {
+            this.amount = amount;
+        }
+
+        void add(long day) {
+            if (this.size == this.days.length) {
+                this.days = Arrays.copyOf(this.days, this.size * 2);
+            }
+            this.days[this.size++] = day;
+        }
+
+        List<LocalDateTime> dates() {
+            Arrays.sort(this.days, 0, this.size);
+            List<LocalDateTime> output = new ArrayList<>(this.size);
+            for (int i = 0; i < this.size; i++) {
+                output.add(LocalDate.ofEpochDay(this.days[i]).atStartOfDay());
+            }
+            return output;
+        }
+    }
+}
@@ -0,0 +1,534 @@
+import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * A chronologically sorted series of amounts, stored as two parallel primitive arrays.
+ * Timestamps are epoch seconds (UTC) and amounts are exact long cents, so each entry costs 16 bytes of array space
+ * instead of a tree node, a boxed Float and a LocalDateTime. Map views present the amounts as Floats.
+ * Appends in chronological order are amortized O(1), lookups are O(log n).
+ */
+public class TimeSeries {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] times;
+    private long[] values; // amounts in cents
+    private int size;
+    private int modCount; // incremented whenever entries are inserted or removed, so views can fail fast
+    private boolean shared; // whether the arrays are shared with a fork, so they must be copied before a change
+
+    public TimeSeries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TimeSeries(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative. Given capacity is " + capacity);
+        }
+        this.times = new long[capacity];
+        this.values = new long[capacity];
+        this.size = 0;
+    }
+
+    // wrap chronologically sorted arrays without copying them
+    TimeSeries(long[] times, long[] values, int size) {
+        this.times = times;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Create an independent copy of the series.
+     * @return a new series with the same entries.
+     */
+    public TimeSeries copy() {
+        return new TimeSeries(Arrays.copyOf(this.times, this.size), Arrays.copyOf(this.values, this.size), this.size);
+    }
+
+    /**
+     * Create a series with the same entries that shares this one's arrays, in O(1). Whichever series changes first
+     * copies the arrays, so later changes to either series are not visible in the other.
+     * @return a new series with the same entries.
+     */
+    public TimeSeries fork() {
+        TimeSeries series = new TimeSeries(this.times, this.values, this.size);
+        series.shared = true;
+        this.shared = true;
+        return series;
+    }
+
+    // the backing arrays, valid up to size()
+    long[] times() {
+        return this.times;
+    }
+
+    long[] values() {
+        return this.values;
+    }
+
+    /**
+     * Return the number of entries in the series.
+     * @return the number of entries.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Check if the series has no entries.
+     * @return true if the series is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Return the timestamp of the nth entry.
+     * @param index the index of the entry.
+     * @return the epoch second of the entry.
+     * @throws IllegalArgumentException if the index is out of bounds.
+     */
+    public long timeAt(int index) {
+        checkIndex(index);
+        return this.times[index];
+    }
+
+    /**
+     * Return the amount of the nth entry.
+     * @param index the index of the entry.
+     * @return the amount of the entry, in cents.
+     * @throws IllegalArgumentException if the index is out of bounds.
+     */
+    public long valueAt(int index) {
+        checkIndex(index);
+        return this.values[index];
+    }
+
+    /**
+     * Find the entry with the given timestamp.
+     * @param time the epoch second to look for.
+     * @return the index of the entry if present, otherwise (-(insertion point) - 1).
+     */
+    public int indexOf(long time) {
+        if (this.size > 0 && time > this.times[this.size - 1]) {
+            return -(this.size) - 1;
+        }
+        return Arrays.binarySearch(this.times, 0, this.size, time);
+    }
+
+    /**
+     * Check if the series has an entry at the given timestamp.
+     * @param time the epoch second to check.
+     * @return true if there is an entry, false otherwise.
+     */
+    public boolean contains(long time) {
+        return indexOf(time) >= 0;
+    }
+
+    /**
+     * Return the index of the first entry at or after the given timestamp.
+     * @param time the epoch second to search from.
+     * @return the index of the first entry not before time, or size() if there is none.
+     */
+    public int lowerBound(long time) {
+        int i = indexOf(time);
+        return i >= 0 ? i : -(i + 1);
+    }
+
+    /**
+     * Return the index of the first entry after the given timestamp.
+     * @param time the epoch second to search from.
+     * @return the index of the first entry after time, or size() if there is none.
+     */
+    public int upperBound(long time) {
+        int i = indexOf(time);
+        return i >= 0 ? i + 1 : -(i + 1);
+    }
+
+    /**
+     * Enter a value at the given timestamp, replacing any value already there.
+     * @param time the epoch second of the value.
+     * @param value the amount to store, in cents.
+     * @return the index the value was stored at.
+     */
+    public int put(long time, long value) {
+        own();
+        int i = indexOf(time);
+        if (i >= 0) {
+            this.values[i] = value;
+            return i;
+        }
+        i = -(i + 1);
+        ensureCapacity(this.size + 1);
+        if (i < this.size) {
+            System.arraycopy(this.times, i, this.times, i + 1, this.size - i);
+            System.arraycopy(this.values, i, this.values, i + 1, this.size - i);
+        }
+        this.times[i] = time;
+        this.values[i] = value;
+        this.size++;
+        this.modCount++;
+        return i;
+    }
+
+    /**
+     * Enter a chronologically sorted run of values in one pass, replacing any values already at the same timestamps.
+     * Appending after the last entry copies the run in place; otherwise the run and the series are merged into new
+     * arrays, so the cost is linear in both rather than a shift per value. Where the run repeats a timestamp, its last
+     * value is kept.
+     * @param times the epoch seconds of the values, in ascending order.
+     * @param values the amounts to store, in cents.
+     * @param length the number of values to take from the start of the arrays.
+     * @return the number of entries inserted on new timestamps.
+     * @throws IllegalArgumentException if the timestamps are not in ascending order.
+     */
+    public int putAll(long[] times, long[] values, int length) {
+        Utils.checkNull(times, "Times");
+        Utils.checkNull(values, "Values");
+        for (int k = 1; k < length; k++) {
+            if (times[k] < times[k - 1]) {
+                throw new IllegalArgumentException("Times are not in ascending order at index " + k);
+            }
+        }
+        if (length == 0) {
+            return 0;
+        }
+        int before = this.size;
+        if (this.size == 0 || times[0] > this.times[this.size - 1]) {
+            own();
+            ensureCapacity(this.size + length);
+            for (int k = 0; k < length; k++) {
+                if (this.size > before && this.times[this.size - 1] == times[k]) {
+                    this.values[this.size - 1] = values[k];
+                }
+                else {
+                    this.times[this.size] = times[k];
+                    this.values[this.size++] = values[k];
+                }
+            }
+        }
+        else {
+            long[] mergedTimes = new long[this.size + length];
+            long[] mergedValues = new long[this.size + length];
+            int n = 0;
+            int i = 0;
+            for (int k = 0; k < length; k++) {
+                while (i < this.size && this.times[i] < times[k]) {
+                    mergedTimes[n] = this.times[i];
+                    mergedValues[n++] = this.values[i++];
+                }
+                if (i < this.size && this.times[i] == times[k]) {
+                    i++; // replaced by the run
+                }
+                if (n > 0 && mergedTimes[n - 1] == times[k]) {
+                    mergedValues[n - 1] = values[k];
+                    continue;
+                }
+                mergedTimes[n] = times[k];
+                mergedValues[n++] = values[k];
+            }
+            System.arraycopy(this.times, i, mergedTimes, n, this.size - i);
+            System.arraycopy(this.values, i, mergedValues, n, this.size - i);
+            n += this.size - i;
+            before = this.size;
+            this.times = mergedTimes;
+            this.values = mergedValues;
+            this.size = n;
+            this.shared = false;
+        }
+        if (this.size != before) {
+            this.modCount++;
+        }
+        return this.size - before;
+    }
+
+    /**
+     * Remove the entry at the given timestamp.
+     * @param time the epoch second of the entry.
+     * @return the index the entry was removed from, or -1 if there was no entry.
+     */
+    public int remove(long time) {
+        int i = indexOf(time);
+        if (i < 0) {
+            return -1;
+        }
+        removeAt(i);
+        return i;
+    }
+
+    /**
+     * Remove the nth entry.
+     * @param index the index of the entry.
+     * @throws IllegalArgumentException if the index is out of bounds.
+     */
+    public void removeAt(int index) {
+        checkIndex(index);
+        own();
+        int tail = this.size - index - 1;
+        if (tail > 0) {
+            System.arraycopy(this.times, index + 1, this.times, index, tail);
+            System.arraycopy(this.values, index + 1, this.values, index, tail);
+        }
+        this.size--;
+        this.modCount++;
+    }
+
+    /**
+     * Create a read-only, chronologically ordered view of the entries within a range.
+     * Nothing is copied: entries are read from the series as the view is accessed. Replacing a value is visible
+     * through the view, but inserting or removing entries invalidates it.
+     * @param start the first epoch second of the range, inclusive.
+     * @param end the last epoch second of the range, inclusive.
+     * @return a sorted map of the entries within the range.
+     */
+    public SortedMap<LocalDateTime, Float> view(long start, long end) {
+        int from = lowerBound(start);
+        return new RangeView(from, Math.max(from, upperBound(end)));
+    }
+
+    /**
+     * Copy every entry into a new map, converting the timestamps to dates and the amounts to Floats.
+     * @return a chronologically ordered map of the entries.
+     */
+    public Map<LocalDateTime, Float> toMap() {
+        Map<LocalDateTime, Float> m = new LinkedHashMap<>();
+        for (int i = 0; i < this.size; i++) {
+            m.put(Utils.fromEpochSecond(this.times[i]), Money.toFloat(this.values[i]));
+        }
+        return m;
+    }
+
+    /**
+     * Create a cursor over the entries within a range, in chronological order.
+     * The cursor reads directly from the series and allocates nothing while it is advanced.
+     * @param start the first epoch second of the range, inclusive.
+     * @param end the last epoch second of the range, inclusive.
+     * @return a cursor positioned before the first entry of the range.
+     */
+    public Cursor cursor(long start, long end) {
+        int from = lowerBound(start);
+        return new Cursor(from, Math.max(from, upperBound(end)));
+    }
+
+    // copy the arrays if they are shared with a fork, before changing them
+    private void own() {
+        if (this.shared) {
+            this.times = Arrays.copyOf(this.times, this.times.length);
+            this.values = Arrays.copyOf(this.values, this.values.length);
+            this.shared = false;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.times.length) {
+            int grown = Math.max(capacity, this.times.length + (this.times.length >> 1) + 1);
+            this.times = Arrays.copyOf(this.times, grown);
+            this.values = Arrays.copyOf(this.values, grown);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IllegalArgumentException("Index out of bounds. Requested index " + index +
+                    " of size " + this.size);
+        }
+    }
+
+    private void checkModCount(int expected) {
+        if (expected != this.modCount) {
+            throw new ConcurrentModificationException("Series was modified while being viewed.");
+        }
+    }
+
+    /**
+     * A forward-only cursor over a range of the series. Call next() to advance to each entry,
+     * then read it with time() and cents() or value().
+     */
+    public class Cursor {
+        private final int end;
+        private final int expectedModCount;
+        private int index;
+
+        private Cursor(int start, int end) {
+            this.index = start - 1;
+            this.end = end;
+            this.expectedModCount = modCount;
+        }
+
+        /**
+         * Advance to the next entry.
+         * @return true if there is another entry, false if the range is exhausted.
+         * @throws ConcurrentModificationException if entries were inserted or removed since the cursor was created.
+         */
+        public boolean next() {
+            checkModCount(this.expectedModCount);
+            if (this.index + 1 >= this.end) {
+                this.index = this.end;
+                return false;
+            }
+            this.index++;
+            return true;
+        }
+
+        /**
+         * Return the timestamp of the current entry.
+         * @return the epoch second of the entry.
+         */
+        public long time() {
+            checkPosition();
+            return times[this.index];
+        }
+
+        /**
+         * Return the amount of the current entry.
+         * @return the amount of the entry, in cents.
+         */
+        public long cents() {
+            checkPosition();
+            return values[this.index];
+        }
+
+        /**
+         * Return the amount of the current entry.
+         * @return the amount of the entry, rounded to a float.
+         */
+        public float value() {
+            return Money.toFloat(cents());
+        }
+
+        private void checkPosition() {
+            if (this.index < 0 || this.index >= this.end) {
+                throw new IllegalStateException("Cursor is not positioned on an entry.");
+            }
+        }
+    }
+
+    private class RangeView extends AbstractMap<LocalDateTime, Float> implements SortedMap<LocalDateTime, Float> {
+        private final int from;
+        private final int to;
+        private final int expectedModCount;
+
+        RangeView(int from, int to) {
+            this.from = from;
+            this.to = to;
+            this.expectedModCount = modCount;
+        }
+
+        @Override
+        public int size() {
+            checkModCount(this.expectedModCount);
+            return this.to - this.from;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) >= 0;
+        }
+
+        @Override
+        public Float get(Object key) {
+            int i = find(key);
+            return i >= 0 ? Money.toFloat(values[i]) : null;
+        }
+
+        @Override
+        public Comparator<? super LocalDateTime> comparator() {
+            return null;
+        }
+
+        @Override
+        public SortedMap<LocalDateTime, Float> subMap(LocalDateTime fromKey, LocalDateTime toKey) {
+            if (fromKey.isAfter(toKey)) {
+                throw new IllegalArgumentException("Start date " + fromKey + " is after end date " + toKey);
+            }
+            checkModCount(this.expectedModCount);
+            return new RangeView(clamp(lowerBound(Utils.toEpochSecond(fromKey))),
+                    clamp(lowerBound(Utils.toEpochSecond(toKey))));
+        }
+
+        @Override
+        public SortedMap<LocalDateTime, Float> headMap(LocalDateTime toKey) {
+            checkModCount(this.expectedModCount);
+            return new RangeView(this.from, clamp(lowerBound(Utils.toEpochSecond(toKey))));
+        }
+
+        @Override
+        public SortedMap<LocalDateTime, Float> tailMap(LocalDateTime fromKey) {
+            checkModCount(this.expectedModCount);
+            return new RangeView(clamp(lowerBound(Utils.toEpochSecond(fromKey))), this.to);
+        }
+
+        @Override
+        public LocalDateTime firstKey() {
+            if (size() == 0) {
+                throw new NoSuchElementException();
+            }
+            return Utils.fromEpochSecond(times[this.from]);
+        }
+
+        @Override
+        public LocalDateTime lastKey() {
+            if (size() == 0) {
+                throw new NoSuchElementException();
+            }
+            return Utils.fromEpochSecond(times[this.to - 1]);
+        }
+
+        @Override
+        public Set<Entry<LocalDateTime, Float>> entrySet() {
+            return new AbstractSet<Entry<LocalDateTime, Float>>() {
+                @Override
+                public Iterator<Entry<LocalDateTime, Float>> iterator() {
+                    return new Iterator<Entry<LocalDateTime, Float>>() {
+                        int i = from;
+
+                        @Override
+                        public boolean hasNext() {
+                            checkModCount(expectedModCount);
+                            return this.i < to;
+                        }
+
+                        @Override
+                        public Entry<LocalDateTime, Float> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<LocalDateTime, Float> e = new SimpleImmutableEntry<>(
+                                    Utils.fromEpochSecond(times[this.i]), Money.toFloat(values[this.i]));
+                            this.i++;
+                            return e;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return RangeView.this.size();
+                }
+            };
+        }
+
+        // the index of the entry with the given key within the view, or -1 if there is none
+        private int find(Object key) {
+            checkModCount(this.expectedModCount);
+            if (!(key instanceof LocalDateTime)) {
+                return -1;
+            }
+            int i = indexOf(Utils.toEpochSecond((LocalDateTime) key));
+            return i >= this.from && i < this.to ? i : -1;
+        }
+
+        private int clamp(int index) {
+            return Math.min(Math.max(index, this.from), this.to);
+        }
+    }
+}
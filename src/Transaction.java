@@ -1,6 +1,9 @@
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * Abstract representation of a transaction
@@ -8,16 +11,74 @@ import java.util.Collections;
 public class Transaction implements ITransaction {
     private String name; //the name of the transaction
     private String description; // a text description of the transaction
-    private ArrayList<LocalDateTime> dates = new ArrayList<>(); // the dates of the transaction
-    private float amount; // the amount of the transaction
+    private ArrayList<LocalDateTime> dates = new ArrayList<>(); // the one-off dates of the transaction
+    private boolean datesShared; // whether dates is shared with a fork, so it must be copied before a change
+    private Recurrence recurrence; // the rule generating recurring dates, null if the transaction does not recur
+    private long amount; // the amount of the transaction, in cents
+    private final List<ITransactionListener> listeners = new ArrayList<>(1); // observers of changes
 
     public Transaction(String name, String description, float amount, LocalDateTime date){
         this.name = name;
         this.description = description;
-        this.amount = amount;
+        this.amount = Money.of(amount);
         this.dates.add(date);
     }
 
+    /**
+     * Create a transaction with no instances yet.
+     */
+    public Transaction(String name, String description, float amount){
+        this.name = name;
+        this.description = description;
+        this.amount = Money.of(amount);
+    }
+
+    /**
+     * Create an independent copy of a transaction, with the same instances and no listeners.
+     * @param transaction the transaction to copy.
+     * @return the copy.
+     */
+    public static Transaction copyOf(ITransaction transaction) {
+        Utils.checkNull(transaction, "Provided ITransaction");
+        Transaction t = new Transaction(transaction.getName(), transaction.getDescription(), 0f);
+        t.amount = transaction.getAmountCents();
+        if (transaction instanceof Transaction) {
+            Transaction source = (Transaction) transaction;
+            t.dates = new ArrayList<>(source.dates);
+            t.recurrence = source.recurrence == null ? null : source.recurrence.copy();
+        }
+        else {
+            t.dates = new ArrayList<>(transaction.getTransactions());
+        }
+        return t;
+    }
+
+    /**
+     * Create a scenario fork of the transaction, with the same instances and no listeners. The one-off dates are
+     * shared with this transaction until either changes them, so the fork costs O(1) however many dates there are.
+     * @return the fork.
+     */
+    public Transaction fork() {
+        Transaction t = new Transaction(this.name, this.description, 0f);
+        t.amount = this.amount;
+        t.dates = this.dates;
+        t.datesShared = true;
+        this.datesShared = true;
+        t.recurrence = this.recurrence == null ? null : this.recurrence.copy();
+        return t;
+    }
+
+    /**
+     * Create a recurring transaction, taking place every interval units from start until end.
+     * Occurrences are generated from the rule rather than stored individually.
+     */
+    public Transaction(String name, String description, float amount,
+                       LocalDateTime start, int interval, ChronoUnit unit, LocalDateTime end){
+        this.name = name;
+        this.description = description;
+        this.amount = Money.of(amount);
+        this.recurrence = new Recurrence(start, interval, unit, end);
+    }
 
     @Override
     public float getValue(LocalDateTime date, float interest) {
@@ -38,35 +99,62 @@ public class Transaction implements ITransaction {
     }
 
     @Override
-    public ArrayList<LocalDateTime> getTransactions(LocalDateTime start, LocalDateTime end) {
+    public List<LocalDateTime> getTransactions(LocalDateTime start, LocalDateTime end) {
         Utils.checkNull(start, "Start Date");
-        Utils.checkNull(start, "End Date");
-        ArrayList<LocalDateTime> output = new ArrayList<>(this.dates);
-        output.removeIf(s -> s.isBefore(start) || s.isAfter(end));
-        return output;
+        Utils.checkNull(end, "End Date");
+        int first = this.lowerBound(start);
+        List<LocalDateTime> oneOff = Collections.unmodifiableList(
+                this.dates.subList(first, Math.max(first, this.upperBound(end))));
+        if (this.recurrence == null) {
+            return oneOff;
+        }
+        List<LocalDateTime> recurring = this.recurrence.between(start, end);
+        if (oneOff.isEmpty()) {
+            return recurring;
+        }
+        if (recurring.isEmpty()) {
+            return oneOff;
+        }
+        return Collections.unmodifiableList(merge(oneOff, recurring.iterator()));
     }
 
     @Override
-    public ArrayList<LocalDateTime> getTransactions() {
-        return new ArrayList<LocalDateTime>(this.dates);
+    public List<LocalDateTime> getTransactions() {
+        if (this.recurrence == null) {
+            return Collections.unmodifiableList(this.dates);
+        }
+        if (this.dates.isEmpty()) {
+            return this.recurrence.between(this.recurrence.getStart(), this.recurrence.getEnd());
+        }
+        return Collections.unmodifiableList(merge(this.dates, allRecurring()));
     }
 
     @Override
     public void removeInstance(LocalDateTime date) {
         Utils.checkNull(date, "Date");
-        if (!this.hasInstance(date)) {
+        int i = Collections.binarySearch(this.dates, date);
+        if (i >= 0) {
+            ownDates();
+            this.dates.remove(i);
+        }
+        else if (this.recurrence != null && this.recurrence.occursOn(date)) {
+            this.recurrence.exclude(date);
+        }
+        else {
             throw new IllegalArgumentException("Transaction has no instance on given date: " + date);
         }
-        this.dates.remove(date);
+        for (ITransactionListener l : this.listeners) {
+            l.instanceRemoved(this, date);
+        }
     }
 
     @Override
     public void removeInstance(int index) {
-        if (index > this.dates.size()-1 || index < 0){
+        if (index > this.numInstances()-1 || index < 0){
             throw new IllegalArgumentException("Provided index is out of bounds of this Transaction. Given index is " +
-                    index + ". Transaction has " + this.dates.size() + " instances");
+                    index + ". Transaction has " + this.numInstances() + " instances");
         }
-        this.dates.remove(index);
+        this.removeInstance(this.instanceAt(index));
     }
 
     @Override
@@ -75,37 +163,143 @@ public class Transaction implements ITransaction {
         if (this.hasInstance(date)) {
             throw new IllegalArgumentException("Transaction already has an instance on " + date + ".");
         }
-        this.dates.add(date);
-        Collections.sort(this.dates);
-        //TODO: implement quicksort
+        if (this.recurrence != null && this.recurrence.isExcluded(date)) {
+            this.recurrence.include(date);
+        }
+        else {
+            ownDates();
+            this.dates.add(this.lowerBound(date), date);
+        }
+        for (ITransactionListener l : this.listeners) {
+            l.instanceAdded(this, date);
+        }
+    }
+
+    @Override
+    public int addInstances(List<LocalDateTime> dates) {
+        Utils.checkNull(dates, "Dates");
+        // check every date before changing anything, so a bad date leaves the transaction and its listeners in step
+        LocalDateTime previous = null;
+        for (LocalDateTime d : dates) {
+            checkDate(d, "Date");
+            if (previous != null && d.isBefore(previous)) {
+                throw new IllegalArgumentException("Dates are not in ascending order: " + d + " follows " + previous);
+            }
+            previous = d;
+        }
+        List<LocalDateTime> added = new ArrayList<>(dates.size());
+        List<LocalDateTime> oneOff = new ArrayList<>(dates.size());
+        previous = null;
+        for (LocalDateTime d : dates) {
+            if (d.equals(previous)) {
+                continue;
+            }
+            previous = d;
+            if (this.recurrence != null && this.recurrence.isExcluded(d)) {
+                this.recurrence.include(d);
+                added.add(d);
+            }
+            else if (this.recurrence == null || !this.recurrence.occursOn(d)) {
+                oneOff.add(d);
+            }
+        }
+        if (!oneOff.isEmpty()) {
+            if (this.dates.isEmpty() || this.dates.get(this.dates.size() - 1).isBefore(oneOff.get(0))) {
+                ownDates();
+                this.dates.addAll(oneOff);
+                added.addAll(oneOff);
+            }
+            else {
+                // merge the run into the existing dates, skipping dates already present
+                ArrayList<LocalDateTime> merged = new ArrayList<>(this.dates.size() + oneOff.size());
+                int i = 0;
+                for (LocalDateTime d : oneOff) {
+                    while (i < this.dates.size() && this.dates.get(i).isBefore(d)) {
+                        merged.add(this.dates.get(i++));
+                    }
+                    if (i < this.dates.size() && this.dates.get(i).equals(d)) {
+                        continue;
+                    }
+                    merged.add(d);
+                    added.add(d);
+                }
+                merged.addAll(this.dates.subList(i, this.dates.size()));
+                this.dates = merged;
+                this.datesShared = false;
+            }
+        }
+        if (!added.isEmpty()) {
+            Collections.sort(added);
+            List<LocalDateTime> view = Collections.unmodifiableList(added);
+            for (ITransactionListener l : this.listeners) {
+                l.instancesAdded(this, view);
+            }
+        }
+        return added.size();
     }
 
     @Override
     public boolean hasInstance(LocalDateTime date) {
-        Utils.checkNull(date, "Date");
-        return this.dates.contains(date);
+        checkDate(date, "Date");
+        return Collections.binarySearch(this.dates, date) >= 0
+                || (this.recurrence != null && this.recurrence.occursOn(date));
     }
 
     @Override
     public boolean hasInstance(LocalDateTime start, LocalDateTime end) {
-        Utils.checkNull(start, "Start Date");
-        Utils.checkNull(start, "End Date");
-        return Utils.orMap(this.dates, (d) -> !(d.isAfter(end) || d.isBefore(start)));
+        checkDate(start, "Start Date");
+        checkDate(end, "End Date");
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("End date " + end + " is before start date " + start);
+        }
+        int first = this.lowerBound(start);
+        return (first < this.dates.size() && !this.dates.get(first).isAfter(end))
+                || (this.recurrence != null && this.recurrence.count(start, end) > 0);
     }
 
     @Override
     public int numInstances() {
-        return this.dates.size();
+        if (this.recurrence == null) {
+            return this.dates.size();
+        }
+        return Math.toIntExact(this.dates.size() + this.recurrence.size());
     }
 
     @Override
     public LocalDateTime startDate() {
-        return this.dates.get(0);
+        if (this.numInstances() == 0) {
+            throw new IllegalStateException("Transaction has no instances.");
+        }
+        return this.instanceAt(0);
     }
 
     @Override
     public LocalDateTime endDate() {
-        return this.dates.get(this.dates.size()-1);
+        if (this.numInstances() == 0) {
+            throw new IllegalStateException("Transaction has no instances.");
+        }
+        LocalDateTime last = this.dates.isEmpty() ? null : this.dates.get(this.dates.size()-1);
+        LocalDateTime recurring = this.recurrence == null ? null : this.recurrence.last();
+        if (last == null || (recurring != null && recurring.isAfter(last))) {
+            return recurring;
+        }
+        return last;
+    }
+
+    /**
+     * Return the rule generating the recurring dates of the transaction.
+     * @return the recurrence rule, or null if the transaction does not recur.
+     */
+    public Recurrence getRecurrence() {
+        return this.recurrence;
+    }
+
+    /**
+     * Return the dates that were added individually rather than generated by the recurrence rule.
+     * @return a read-only list of the one-off dates, in chronological order.
+     */
+    List<LocalDateTime> oneOffDates() {
+        return Collections.unmodifiableList(this.dates);
     }
 
     @Override
@@ -116,6 +310,9 @@ public class Transaction implements ITransaction {
     @Override
     public void changeDescription(String description) {
         this.description = description;
+        for (ITransactionListener l : this.listeners) {
+            l.descriptionChanged(this, description);
+        }
     }
 
     @Override
@@ -125,7 +322,108 @@ public class Transaction implements ITransaction {
 
     @Override
     public void setName(String name) {
+        Utils.checkNull(name, "Provided name");
+        for (ITransactionListener l : this.listeners) {
+            l.checkName(this, name);
+        }
+        for (ITransactionListener l : this.listeners) {
+            l.nameChanged(this, this.name, name);
+        }
         this.name = name;
     }
 
+    @Override
+    public long getAmountCents() {
+        return this.amount;
+    }
+
+    @Override
+    public void setAmountCents(long amount) {
+        long old = this.amount;
+        this.amount = amount;
+        for (ITransactionListener l : this.listeners) {
+            l.amountChanged(this, old, amount);
+        }
+    }
+
+    @Override
+    public void addListener(ITransactionListener listener) {
+        Utils.checkNull(listener, "Provided listener");
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(ITransactionListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    // the index of the first one-off date not before the given date
+    private int lowerBound(LocalDateTime date) {
+        int i = Collections.binarySearch(this.dates, date);
+        return i >= 0 ? i : -(i + 1);
+    }
+
+    // the index of the first one-off date after the given date
+    private int upperBound(LocalDateTime date) {
+        int i = Collections.binarySearch(this.dates, date);
+        return i >= 0 ? i + 1 : -(i + 1);
+    }
+
+    private static void checkDate(LocalDateTime date, String s) {
+        if (date == null) {
+            throw new IllegalArgumentException(s + " is null.");
+        }
+    }
+
+    private Iterator<LocalDateTime> allRecurring() {
+        return this.recurrence.iterator(this.recurrence.getStart(), this.recurrence.getEnd());
+    }
+
+    // copy the one-off dates if they are shared with a fork, before changing them
+    private void ownDates() {
+        if (this.datesShared) {
+            this.dates = new ArrayList<>(this.dates);
+            this.datesShared = false;
+        }
+    }
+
+    // find the nth instance in chronological order, walking the one-off dates and the recurrence together
+    private LocalDateTime instanceAt(int index) {
+        if (this.recurrence == null) {
+            return this.dates.get(index);
+        }
+        Iterator<LocalDateTime> r = allRecurring();
+        LocalDateTime next = r.hasNext() ? r.next() : null;
+        int d = 0;
+        for (int n = 0; ; n++) {
+            LocalDateTime current;
+            if (next == null || (d < this.dates.size() && this.dates.get(d).isBefore(next))) {
+                current = this.dates.get(d++);
+            }
+            else {
+                current = next;
+                next = r.hasNext() ? r.next() : null;
+            }
+            if (n == index) {
+                return current;
+            }
+        }
+    }
+
+    // merge sorted one-off dates with recurring dates into a single chronological list
+    private static ArrayList<LocalDateTime> merge(List<LocalDateTime> oneOff, Iterator<LocalDateTime> recurring) {
+        ArrayList<LocalDateTime> output = new ArrayList<>(oneOff.size());
+        int i = 0;
+        while (recurring.hasNext()) {
+            LocalDateTime r = recurring.next();
+            while (i < oneOff.size() && oneOff.get(i).isBefore(r)) {
+                output.add(oneOff.get(i++));
+            }
+            output.add(r);
+        }
+        while (i < oneOff.size()) {
+            output.add(oneOff.get(i++));
+        }
+        return output;
+    }
 }
@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A set of uniquely named transactions, indexed by name and kept in insertion order.
+ * Lookup, insertion and removal are constant time. The registry listens to each transaction it holds,
+ * so the name index follows ITransaction.setName and duplicate names are rejected.
+ */
+public class TransactionRegistry implements ITransactionListener, Iterable<ITransaction> {
+    private final Map<String, ITransaction> byName = new HashMap<>(); // transactions keyed by current name
+    private final Set<ITransaction> ordered = new LinkedHashSet<>(); // transactions in insertion order
+
+    /**
+     * Add a transaction to the registry.
+     * @param transaction the transaction to add.
+     * @throws IllegalArgumentException if a transaction of the same name is already registered.
+     */
+    public void add(ITransaction transaction) {
+        Utils.checkNull(transaction, "Provided ITransaction");
+        if (this.byName.containsKey(transaction.getName())) {
+            throw new IllegalArgumentException("Transaction of name: " + transaction.getName() + " already in model.");
+        }
+        this.byName.put(transaction.getName(), transaction);
+        this.ordered.add(transaction);
+        transaction.addListener(this);
+    }
+
+    /**
+     * Remove a transaction from the registry.
+     * @param transaction the transaction to remove.
+     * @throws IllegalArgumentException if the transaction is not registered.
+     */
+    public void remove(ITransaction transaction) {
+        Utils.checkNull(transaction, "Provided ITransaction");
+        ITransaction registered = this.byName.get(transaction.getName());
+        if (registered == null || !registered.equals(transaction)) {
+            throw new IllegalArgumentException("Transaction of name: " + transaction.getName() + " not in model.");
+        }
+        this.byName.remove(transaction.getName());
+        this.ordered.remove(registered);
+        registered.removeListener(this);
+    }
+
+    /**
+     * Get the transaction of a particular name.
+     * @param name the name of the transaction.
+     * @return the transaction, or null if there is none of the given name.
+     */
+    public ITransaction get(String name) {
+        return this.byName.get(name);
+    }
+
+    /**
+     * Check if there is a transaction of a given name.
+     * @param name the name of the transaction.
+     * @return true if there is a transaction of the given name, false otherwise.
+     */
+    public boolean contains(String name) {
+        return this.byName.containsKey(name);
+    }
+
+    /**
+     * Return the number of registered transactions.
+     * @return the number of transactions.
+     */
+    public int size() {
+        return this.ordered.size();
+    }
+
+    /**
+     * Generate a list of the names of all registered transactions, in insertion order.
+     * @return a list of transaction names.
+     */
+    public List<String> names() {
+        List<String> output = new ArrayList<>(this.ordered.size());
+        for (ITransaction t : this.ordered) {
+            output.add(t.getName());
+        }
+        return output;
+    }
+
+    @Override
+    public Iterator<ITransaction> iterator() {
+        return this.ordered.iterator();
+    }
+
+    @Override
+    public void checkName(ITransaction transaction, String newName) {
+        Utils.checkNull(newName, "Provided name");
+        ITransaction holder = this.byName.get(newName);
+        if (holder != null && holder != transaction) {
+            throw new IllegalArgumentException("Transaction of name: " + newName + " already in model.");
+        }
+    }
+
+    @Override
+    public void nameChanged(ITransaction transaction, String oldName, String newName) {
+        if (oldName.equals(newName)) {
+            return;
+        }
+        this.byName.remove(oldName);
+        this.byName.put(newName, transaction);
+    }
+}
@@ -0,0 +1,429 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A full-text index over the names and descriptions of the transactions of any number of accounts, for substring and
+ * fuzzy search.
+ * The lowercased text of each transaction, its name and description separated by a line break and padded with a
+ * space at each end, is broken into trigrams, each packed into a long. An inverted index maps each trigram to the
+ * sorted ids of the transactions containing it. A substring search intersects the posting lists of the query's
+ * trigrams, starting from the shortest, and checks only the transactions left. A fuzzy search counts the query
+ * trigrams each transaction shares and ranks the transactions by the fraction shared, so a misspelling still finds
+ * the transactions that share most of its trigrams. Neither search looks at transactions sharing no trigram with
+ * the query.
+ * The index follows the accounts it is attached to: transactions added, removed, renamed or given a new description
+ * are reindexed as the change happens, touching only the posting lists of their own trigrams. Its methods are
+ * synchronized, so it may be searched from other threads while the accounts change.
+ */
+public class TransactionSearch implements IBudgetAccountListener, ITransactionListener {
+    private static final int MAX_SHARED = (1 << 11) - 1; // the most shared trigrams a fuzzy ranking tells apart
+    private static final long MAX_LENGTH = (1 << 21) - 1; // the longest text a fuzzy ranking tells apart
+    private static final Comparator<Document> BY_NAME = Comparator.comparing((Document d) -> d.transaction.getName())
+            .thenComparingInt(d -> d.id);
+    private final Map<ITransaction, Integer> ids = new IdentityHashMap<>(); // the document id of each transaction
+    private final List<Document> documents = new ArrayList<>(); // documents by id, null where an id is free
+    private final List<Integer> free = new ArrayList<>(); // ids of removed documents, to reuse
+    private final Map<Long, Postings> index = new HashMap<>(); // the ids of the documents containing each trigram
+    private int[] shared = new int[0]; // the trigrams each document shares with a fuzzy query, zero between queries
+
+    /**
+     * A transaction found by a search, with its account and the score it was ranked by.
+     */
+    public static final class Hit {
+        private final IBudgetAccount account;
+        private final ITransaction transaction;
+        private final double score;
+
+        private Hit(IBudgetAccount account, ITransaction transaction, double score) {
+            this.account = account;
+            this.transaction = transaction;
+            this.score = score;
+        }
+
+        /**
+         * Return the account of the transaction found.
+         * @return the account.
+         */
+        public IBudgetAccount account() {
+            return this.account;
+        }
+
+        /**
+         * Return the transaction found.
+         * @return the transaction.
+         */
+        public ITransaction transaction() {
+            return this.transaction;
+        }
+
+        /**
+         * Return how well the transaction matched, between 0 and 1.
+         * @return the score, higher for better matches.
+         */
+        public double score() {
+            return this.score;
+        }
+    }
+
+    /**
+     * Index every transaction of an account, and follow its changes from now on.
+     * @param account the account to index.
+     */
+    public synchronized void attach(IBudgetAccount account) {
+        Utils.checkNull(account, "Account");
+        for (String name : account.getTransactions()) {
+            add(account, account.getTransaction(name));
+        }
+        account.addListener(this);
+    }
+
+    /**
+     * Remove every transaction of an account from the index, and stop following its changes.
+     * @param account the account to remove.
+     */
+    public synchronized void detach(IBudgetAccount account) {
+        Utils.checkNull(account, "Account");
+        account.removeListener(this);
+        for (String name : account.getTransactions()) {
+            remove(account.getTransaction(name));
+        }
+    }
+
+    /**
+     * Return the number of transactions in the index.
+     * @return the number of transactions.
+     */
+    public synchronized int size() {
+        return this.ids.size();
+    }
+
+    /**
+     * Find the transactions whose name or description contains a text, ignoring case.
+     * Transactions whose name contains the text come first, scored 1, then those whose description does, scored 0.5;
+     * each group is ordered by name.
+     * @param text the text to look for.
+     * @return the transactions found, best first.
+     */
+    public List<Hit> find(String text) {
+        return find(text, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find the best transactions whose name or description contains a text, ignoring case, ranked as by find(text).
+     * Only the transactions returned are ordered, so a short page of a broad search stays fast.
+     * @param text the text to look for.
+     * @param limit the most transactions to return.
+     * @return the transactions found, best first.
+     * @throws IllegalArgumentException if the limit is negative.
+     */
+    public synchronized List<Hit> find(String text, int limit) {
+        Utils.checkNull(text, "Text");
+        checkLimit(limit);
+        String query = normalize(text);
+        long[] trigrams = trigrams(query, false);
+        List<Document> names = new ArrayList<>();
+        List<Document> descriptions = new ArrayList<>();
+        if (trigrams.length == 0) {
+            // too short to have a trigram: check every document
+            for (Document d : this.documents) {
+                if (d != null) {
+                    match(d, query, names, descriptions);
+                }
+            }
+        }
+        else {
+            Postings[] lists = new Postings[trigrams.length];
+            for (int k = 0; k < trigrams.length; k++) {
+                lists[k] = this.index.get(trigrams[k]);
+                if (lists[k] == null) {
+                    return new ArrayList<>();
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+            Postings shortest = lists[0];
+            candidates:
+            for (int i = 0; i < shortest.size; i++) {
+                int id = shortest.ids[i];
+                for (int k = 1; k < lists.length; k++) {
+                    if (!lists[k].contains(id)) {
+                        continue candidates;
+                    }
+                }
+                match(this.documents.get(id), query, names, descriptions);
+            }
+        }
+        List<Hit> hits = new ArrayList<>(Math.min(limit, names.size() + descriptions.size()));
+        for (Document d : top(names, limit)) {
+            hits.add(new Hit(d.account, d.transaction, 1));
+        }
+        for (Document d : top(descriptions, limit - hits.size())) {
+            hits.add(new Hit(d.account, d.transaction, 0.5));
+        }
+        return hits;
+    }
+
+    /**
+     * Find the transactions whose name or description resembles a text, such as a misspelling of a word in it.
+     * A transaction is scored by the fraction of the trigrams of the text it shares, and ties go to the transaction
+     * with the shorter text.
+     * @param text the text to look for.
+     * @param minScore the lowest score to include, between 0 and 1.
+     * @param limit the most transactions to return.
+     * @return the transactions found, best first.
+     * @throws IllegalArgumentException if the limit is negative.
+     */
+    public synchronized List<Hit> findSimilar(String text, double minScore, int limit) {
+        Utils.checkNull(text, "Text");
+        checkLimit(limit);
+        long[] trigrams = trigrams(normalize(text), true);
+        if (this.shared.length < this.documents.size()) {
+            this.shared = new int[this.documents.size()];
+        }
+        int[] shared = this.shared;
+        int[] touched = new int[16];
+        int n = 0;
+        for (long trigram : trigrams) {
+            Postings p = this.index.get(trigram);
+            if (p == null) {
+                continue;
+            }
+            for (int i = 0; i < p.size; i++) {
+                int id = p.ids[i];
+                if (shared[id]++ == 0) {
+                    if (n == touched.length) {
+                        touched = Arrays.copyOf(touched, n * 2);
+                    }
+                    touched[n++] = id;
+                }
+            }
+        }
+        // rank by a key packing the shared count, descending, then the text length and id, ascending
+        long[] ranked = new long[n];
+        int found = 0;
+        for (int k = 0; k < n; k++) {
+            int id = touched[k];
+            if ((double) shared[id] / trigrams.length >= minScore) {
+                long length = Math.min(this.documents.get(id).text.length(), MAX_LENGTH);
+                ranked[found++] = (long) (MAX_SHARED - Math.min(shared[id], MAX_SHARED)) << 52 | length << 31 | id;
+            }
+        }
+        Arrays.sort(ranked, 0, found);
+        List<Hit> hits = new ArrayList<>(Math.min(limit, found));
+        for (int k = 0; k < found && k < limit; k++) {
+            Document d = this.documents.get((int) (ranked[k] & Integer.MAX_VALUE));
+            hits.add(new Hit(d.account, d.transaction, (double) shared[d.id] / trigrams.length));
+        }
+        for (int k = 0; k < n; k++) {
+            shared[touched[k]] = 0;
+        }
+        return hits;
+    }
+
+    @Override
+    public synchronized void transactionAdded(IBudgetAccount account, ITransaction transaction) {
+        add(account, transaction);
+    }
+
+    @Override
+    public synchronized void transactionRemoved(IBudgetAccount account, ITransaction transaction) {
+        remove(transaction);
+    }
+
+    /**
+     * Reindex a transaction under its new name. Called before the name takes effect, after the account's own
+     * registry has accepted it.
+     */
+    @Override
+    public synchronized void nameChanged(ITransaction transaction, String oldName, String newName) {
+        Integer id = this.ids.get(transaction);
+        if (id != null) {
+            update(this.documents.get(id), newName, transaction.getDescription());
+        }
+    }
+
+    @Override
+    public synchronized void descriptionChanged(ITransaction transaction, String description) {
+        Integer id = this.ids.get(transaction);
+        if (id != null) {
+            update(this.documents.get(id), transaction.getName(), description);
+        }
+    }
+
+    private void add(IBudgetAccount account, ITransaction transaction) {
+        if (this.ids.containsKey(transaction)) {
+            return;
+        }
+        int id;
+        if (this.free.isEmpty()) {
+            id = this.documents.size();
+            this.documents.add(null);
+        }
+        else {
+            id = this.free.remove(this.free.size() - 1);
+        }
+        Document d = new Document(id, account, transaction);
+        this.documents.set(id, d);
+        this.ids.put(transaction, id);
+        update(d, transaction.getName(), transaction.getDescription());
+        transaction.addListener(this);
+    }
+
+    private void remove(ITransaction transaction) {
+        Integer id = this.ids.remove(transaction);
+        if (id == null) {
+            return;
+        }
+        transaction.removeListener(this);
+        Document d = this.documents.get(id);
+        for (long trigram : d.trigrams) {
+            Postings p = this.index.get(trigram);
+            p.remove(id);
+            if (p.size == 0) {
+                this.index.remove(trigram);
+            }
+        }
+        this.documents.set(id, null);
+        this.free.add(id);
+    }
+
+    // replace the text of a document, updating only the posting lists of trigrams it gains or loses
+    private void update(Document d, String name, String description) {
+        String nameText = normalize(name);
+        String text = nameText + "\n" + normalize(description);
+        long[] trigrams = trigrams(text, true);
+        long[] old = d.trigrams;
+        for (long trigram : old) {
+            if (Arrays.binarySearch(trigrams, trigram) < 0) {
+                Postings p = this.index.get(trigram);
+                p.remove(d.id);
+                if (p.size == 0) {
+                    this.index.remove(trigram);
+                }
+            }
+        }
+        for (long trigram : trigrams) {
+            if (Arrays.binarySearch(old, trigram) < 0) {
+                this.index.computeIfAbsent(trigram, t -> new Postings()).add(d.id);
+            }
+        }
+        d.name = nameText;
+        d.text = text;
+        d.trigrams = trigrams;
+    }
+
+    // add a document to the name or description matches if either contains the query
+    private static void match(Document d, String query, List<Document> names, List<Document> descriptions) {
+        if (d.name.contains(query)) {
+            names.add(d);
+        }
+        else if (d.text.indexOf(query, d.name.length() + 1) >= 0) {
+            descriptions.add(d);
+        }
+    }
+
+    // the first documents by name, selecting them with a bounded heap when only a few of many are wanted
+    private static List<Document> top(List<Document> documents, int limit) {
+        if (documents.size() <= limit) {
+            documents.sort(BY_NAME);
+            return documents;
+        }
+        PriorityQueue<Document> heap = new PriorityQueue<>(limit + 1, BY_NAME.reversed());
+        for (Document d : documents) {
+            if (heap.size() < limit) {
+                heap.add(d);
+            }
+            else if (limit > 0 && BY_NAME.compare(d, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(d);
+            }
+        }
+        List<Document> output = new ArrayList<>(heap);
+        output.sort(BY_NAME);
+        return output;
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative. Given limit is " + limit);
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    // the distinct trigrams of a text in ascending order, padded with a space at each end if pad is set
+    private static long[] trigrams(String text, boolean pad) {
+        String s = pad ? " " + text + " " : text;
+        if (s.length() < 3) {
+            return new long[0];
+        }
+        long[] output = new long[s.length() - 2];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+        }
+        Arrays.sort(output);
+        int n = 0;
+        for (int i = 0; i < output.length; i++) {
+            if (n == 0 || output[n - 1] != output[i]) {
+                output[n++] = output[i];
+            }
+        }
+        return Arrays.copyOf(output, n);
+    }
+
+    // an indexed transaction
+    private static final class Document {
+        private final int id;
+        private final IBudgetAccount account;
+        private final ITransaction transaction;
+        private String name = ""; // the lowercased name
+        private String text = ""; // the lowercased name and description, separated by a line break
+        private long[] trigrams = new long[0]; // the distinct trigrams of the padded text, in ascending order
+
+        Document(int id, IBudgetAccount account, ITransaction transaction) {
+            this.id = id;
+            this.account = account;
+            this.transaction = transaction;
+        }
+    }
+
+    // the sorted ids of the documents containing a trigram
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(this.ids, 0, this.size, id) >= 0;
+        }
+
+        void add(int id) {
+            int i = Arrays.binarySearch(this.ids, 0, this.size, id);
+            if (i >= 0) {
+                return;
+            }
+            i = -(i + 1);
+            if (this.size == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.size * 2);
+            }
+            System.arraycopy(this.ids, i, this.ids, i + 1, this.size - i);
+            this.ids[i] = id;
+            this.size++;
+        }
+
+        void remove(int id) {
+            int i = Arrays.binarySearch(this.ids, 0, this.size, id);
+            if (i >= 0) {
+                System.arraycopy(this.ids, i + 1, this.ids, i, this.size - i - 1);
+                this.size--;
+            }
+        }
+    }
+}
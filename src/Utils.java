@@ -1,4 +1,8 @@
+import java.time.DayOfWeek;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
@@ -86,4 +90,82 @@ public class Utils {
     public static boolean dateWithinRange(LocalDateTime d, LocalDateTime s, LocalDateTime e){
         return (!d.isAfter(e) && !d.isBefore(s));
     }
+
+    /**
+     * Convert a date to the number of seconds since the epoch, treating it as UTC.
+     * Anything finer than a second is dropped.
+     * @param d the date to convert.
+     * @return the epoch second of the date.
+     */
+    public static long toEpochSecond(LocalDateTime d){
+        return d.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Convert a number of seconds since the epoch back into a date, treating it as UTC.
+     * @param epochSecond the epoch second to convert.
+     * @return the date of the epoch second.
+     */
+    public static LocalDateTime fromEpochSecond(long epochSecond){
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Find the first day of the unit containing the given date. Weeks start on Sunday.
+     * @param d the date to align.
+     * @param unit the unit to align to.
+     * @return the start of the unit containing d.
+     * @throws IllegalArgumentException if the unit is not a calendar unit between seconds and millennia.
+     */
+    public static LocalDateTime startOfUnit(LocalDateTime d, ChronoUnit unit){
+        switch (unit) {
+            case SECONDS:
+            case MINUTES:
+            case HOURS:
+            case HALF_DAYS:
+            case DAYS:
+                return d.truncatedTo(unit);
+            case WEEKS:
+                return d.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY));
+            case MONTHS:
+                return d.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+            case YEARS:
+                return d.truncatedTo(ChronoUnit.DAYS).withDayOfYear(1);
+            case DECADES:
+                return d.truncatedTo(ChronoUnit.DAYS).withDayOfYear(1).withYear(Math.floorDiv(d.getYear(), 10) * 10);
+            case CENTURIES:
+                return d.truncatedTo(ChronoUnit.DAYS).withDayOfYear(1).withYear(Math.floorDiv(d.getYear(), 100) * 100);
+            case MILLENNIA:
+                return d.truncatedTo(ChronoUnit.DAYS).withDayOfYear(1).withYear(Math.floorDiv(d.getYear(), 1000) * 1000);
+            default:
+                throw new IllegalArgumentException("Unsupported unit: " + unit);
+        }
+    }
+
+    /**
+     * Generate the start of every unit that falls within a range, in chronological order.
+     * Units of a day or longer are found by CalendarBuckets without creating a date per point.
+     * @param start the starting date, inclusive.
+     * @param end the ending date, inclusive.
+     * @param unit the unit of the grid. Weeks start on Sunday.
+     * @return the epoch seconds of each start of the unit within the range.
+     */
+    public static long[] grid(LocalDateTime start, LocalDateTime end, ChronoUnit unit){
+        if (unit.isDateBased()) {
+            return CalendarBuckets.of(start, end, unit).startSeconds();
+        }
+        LocalDateTime d = startOfUnit(start, unit);
+        if (d.isBefore(start)) {
+            d = d.plus(1, unit);
+        }
+        List<LocalDateTime> dates = new ArrayList<>();
+        for (; !d.isAfter(end); d = d.plus(1, unit)) {
+            dates.add(d);
+        }
+        long[] output = new long[dates.size()];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = toEpochSecond(dates.get(i));
+        }
+        return output;
+    }
 }
@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Reopen from the newest snapshot and the journal after it")
+    void checkpoint() throws Exception {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        try (AccountStore store = AccountStore.create(dir, new BudgetAccount("Checking", "Test Account", 0.05f))) {
+            BudgetAccount a = store.getAccount();
+            Transaction rent = new Transaction("Rent", "Monthly rent", -1000f, jan, 1, ChronoUnit.MONTHS,
+                    jan.plusYears(1));
+            rent.removeInstance(jan.plusMonths(1));
+            a.addTransaction(rent);
+            a.addTransaction(new Transaction("Gift", null, 50f, jan.plusDays(9)));
+            for (int i = 0; i < 1000; i++) {
+                a.enterValue(jan.plusDays(i), i);
+            }
+            store.checkpoint().get();
+            a.enterValue(jan.plusDays(2000), 2000f);
+            a.getTransaction("Gift").setAmount(60f);
+            a.removeTransaction(rent);
+            a.setInterestRate(0.01f);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+
+        try (AccountStore store = AccountStore.open(dir)) {
+            BudgetAccount a = store.getAccount();
+            assertEquals("Checking", a.getName());
+            assertEquals(0.01f, a.getInterestRate());
+            assertEquals(1001, a.actualValues.size());
+            assertEquals(2000f, a.getValue(jan.plusDays(2000), false));
+            assertFalse(a.hasTransaction("Rent"));
+            assertEquals(60f, a.getTransaction("Gift").getAmount());
+            assertNull(a.getTransaction("Gift").getDescription());
+            a.getTransaction("Gift").addInstance(jan.plusDays(10));
+        }
+        try (AccountStore store = AccountStore.open(dir)) {
+            assertEquals(2, store.getAccount().getTransaction("Gift").numInstances());
+            assertThrows(java.nio.file.FileAlreadyExistsException.class,
+                    () -> AccountStore.create(dir, new BudgetAccount("", "", 0)));
+        }
+    }
+
+    @Test
+    @DisplayName("Checkpoint once the journal passes the threshold")
+    void threshold() throws Exception {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        try (AccountStore store = AccountStore.create(dir, new BudgetAccount("Checking", "Test Account", 0))) {
+            store.setCheckpointThreshold(3200);
+            for (int i = 0; i < 1000; i++) {
+                store.getAccount().enterValue(jan.plusDays(i), i);
+            }
+        }
+        try (AccountStore store = AccountStore.open(dir)) {
+            assertEquals(1000, store.getAccount().actualValues.size());
+            assertEquals(999f, store.getAccount().getValue(999));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.allMatch(f -> !f.getFileName().toString().endsWith("0000000000")));
+        }
+    }
+
+    @Test
+    @DisplayName("A snapshot keeps the state it was captured in while the account changes")
+    void snapshotIsolation() throws Exception {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        BudgetAccount a = new BudgetAccount("Checking", "Test Account", 0.05f);
+        Transaction gift = new Transaction("Gift", "", 50f, jan);
+        a.addTransaction(gift);
+        Transaction rent = new Transaction("Rent", "", -1000f, jan, 1, ChronoUnit.MONTHS, jan.plusYears(1));
+        a.addTransaction(rent);
+        for (int i = 0; i < 100; i++) {
+            a.enterValue(jan.plusDays(i), i);
+        }
+        Snapshot snapshot = Snapshot.capture(a);
+        a.enterValue(jan.plusDays(5), 500f);
+        a.removeValue(jan.plusDays(6));
+        gift.addInstance(jan.plusDays(3));
+        gift.setAmount(70f);
+        rent.removeInstance(jan.plusMonths(2));
+        a.removeTransaction(rent);
+
+        snapshot.write(dir.resolve("snapshot"));
+        BudgetAccount[] restored = {snapshot.restore(), Snapshot.read(dir.resolve("snapshot")).restore()};
+        for (BudgetAccount b : restored) {
+            assertEquals(100, b.actualValues.size());
+            assertEquals(5f, b.getValue(jan.plusDays(5), false));
+            assertEquals(6f, b.getValue(jan.plusDays(6), false));
+            assertEquals(1, b.getTransaction("Gift").numInstances());
+            assertEquals(50f, b.getTransaction("Gift").getAmount());
+            assertEquals(13, b.getTransaction("Rent").numInstances());
+        }
+    }
+}
@@ -0,0 +1,261 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BudgetAccountTest {
+    IBudgetAccount a;
+    LocalDateTime jan;
+    LocalDateTime feb;
+    LocalDateTime mar;
+
+    @BeforeEach
+    void setUp() {
+        a = new BudgetAccount("Checking", "Test Account", 0.05f);
+        jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        feb = LocalDateTime.of(2022, 2, 1, 0, 0);
+        mar = LocalDateTime.of(2022, 3, 1, 0, 0);
+    }
+
+    @Test
+    @DisplayName("Enter and replace values")
+    void enterValue() {
+        assertFalse(a.hasValue(feb));
+        a.enterValue(feb, 200f);
+        a.enterValue(jan, 100f);
+        assertTrue(a.hasValue(feb));
+        assertEquals(100f, a.getValue(0));
+        assertEquals(200f, a.getValue(1));
+        a.enterValue(feb, 250f);
+        assertEquals(250f, a.getValue(1));
+        assertThrows(IllegalArgumentException.class, () -> a.getValue(2));
+        assertThrows(IllegalArgumentException.class, () -> a.getValue(-1));
+    }
+
+    @Test
+    @DisplayName("Remove an entered value")
+    void removeValue() {
+        assertThrows(IllegalArgumentException.class, () -> a.removeValue(jan));
+        a.enterValue(jan, 100f);
+        a.enterValue(feb, 200f);
+        a.removeValue(jan);
+        assertFalse(a.hasValue(jan));
+        assertEquals(200f, a.getValue(0));
+    }
+
+    @Test
+    @DisplayName("Actual values within a range")
+    void getActualValues() {
+        a.enterValue(mar, 300f);
+        a.enterValue(jan, 100f);
+        a.enterValue(feb, 200f);
+        Map<LocalDateTime, Float> m = a.getActualValues(feb, mar);
+        List<LocalDateTime> l = new ArrayList<>();
+        l.add(feb);
+        l.add(mar);
+        assertEquals(l, new ArrayList<>(m.keySet()));
+        assertEquals(300f, m.get(mar));
+        assertTrue(a.getActualValues(mar.plusDays(1), mar.plusDays(2)).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> a.getActualValues(mar, jan));
+    }
+
+    @Test
+    @DisplayName("Add, look up and remove transactions by name")
+    void transactions() {
+        ITransaction rent = new Transaction("Rent", "Monthly rent", -1000f, jan);
+        ITransaction pay = new Transaction("Pay", "Salary", 2000f, jan);
+        a.addTransaction(rent);
+        a.addTransaction(pay);
+        assertTrue(a.hasTransaction("Rent"));
+        assertFalse(a.hasTransaction("Food"));
+        assertSame(pay, a.getTransaction("Pay"));
+        assertThrows(IllegalArgumentException.class, () -> a.getTransaction("Food"));
+        assertThrows(IllegalArgumentException.class,
+                () -> a.addTransaction(new Transaction("Rent", "Duplicate", 1f, jan)));
+        assertEquals(List.of("Rent", "Pay"), a.getTransactions());
+        a.removeTransaction(rent);
+        assertFalse(a.hasTransaction("Rent"));
+        assertThrows(IllegalArgumentException.class, () -> a.removeTransaction(rent));
+    }
+
+    @Test
+    @DisplayName("Renaming a transaction keeps the name index consistent")
+    void renameTransaction() {
+        ITransaction rent = new Transaction("Rent", "Monthly rent", -1000f, jan);
+        ITransaction pay = new Transaction("Pay", "Salary", 2000f, jan);
+        a.addTransaction(rent);
+        a.addTransaction(pay);
+        rent.setName("Mortgage");
+        assertFalse(a.hasTransaction("Rent"));
+        assertSame(rent, a.getTransaction("Mortgage"));
+        assertEquals(List.of("Mortgage", "Pay"), a.getTransactions());
+        assertThrows(IllegalArgumentException.class, () -> rent.setName("Pay"));
+        assertEquals("Mortgage", rent.getName());
+    }
+
+    @Test
+    @DisplayName("Actual values can be streamed and viewed without copying")
+    void actualValueViews() {
+        a.enterValue(jan, 100f);
+        a.enterValue(feb, 200f);
+        a.enterValue(mar, 300f);
+        TimeSeries.Cursor c = a.getActualValueCursor(jan.plusDays(1), mar);
+        assertTrue(c.next());
+        assertEquals(Utils.toEpochSecond(feb), c.time());
+        assertEquals(200f, c.value());
+        assertTrue(c.next());
+        assertEquals(300f, c.value());
+        assertFalse(c.next());
+
+        SortedMap<LocalDateTime, Float> m = a.getActualValues(jan, mar);
+        assertEquals(jan, m.firstKey());
+        assertEquals(2, m.headMap(mar).size());
+        a.enterValue(feb, 250f);
+        assertEquals(250f, m.get(feb));
+        assertThrows(UnsupportedOperationException.class, () -> m.put(jan, 1f));
+        a.enterValue(mar.plusDays(1), 400f);
+        assertThrows(ConcurrentModificationException.class, m::size);
+        assertThrows(ConcurrentModificationException.class, () -> m.subMap(jan, feb));
+        assertThrows(ConcurrentModificationException.class, () -> m.headMap(feb));
+        assertThrows(ConcurrentModificationException.class, () -> m.tailMap(feb));
+    }
+
+    @Test
+    @DisplayName("Interpolate between and extrapolate beyond entered values")
+    void interpolate() {
+        assertThrows(IllegalStateException.class, () -> a.getValue(feb, true));
+        a.enterValue(jan, 100f);
+        a.enterValue(mar, 300f);
+        assertThrows(IllegalArgumentException.class, () -> a.getValue(feb, false));
+        assertEquals(300f, a.getValue(mar, false));
+        float mid = a.getValue(feb, true);
+        assertTrue(mid > 100f && mid < 300f);
+        assertEquals(300f * 1.05f, a.getValue(mar.plusDays(365), true), 0.01f);
+
+        Map<LocalDateTime, Float> m = a.interpolate(jan.minusDays(1), mar, ChronoUnit.MONTHS);
+        assertEquals(List.of(jan, feb, mar), new ArrayList<>(m.keySet()));
+        assertEquals(mid, m.get(feb));
+    }
+
+    @Test
+    @DisplayName("Entering values refits the curve the same way as fitting from scratch")
+    void interpolateAfterEdits() {
+        IBudgetAccount b = new BudgetAccount("Savings", "Fitted once", 0.05f);
+        for (int i = 0; i < 20; i++) {
+            b.enterValue(jan.plusDays(i * 7L), (float) (i * i));
+        }
+        b.getValue(jan, true);
+        b.enterValue(jan.plusDays(30), 5f);
+        b.removeValue(jan.plusDays(70));
+        b.enterValue(jan.plusDays(14), 40f);
+
+        for (int i = 0; i < 20; i++) {
+            a.enterValue(jan.plusDays(i * 7L), (float) (i * i));
+        }
+        a.enterValue(jan.plusDays(30), 5f);
+        a.removeValue(jan.plusDays(70));
+        a.enterValue(jan.plusDays(14), 40f);
+        assertEquals(a.interpolate(jan, jan.plusDays(140), ChronoUnit.DAYS),
+                b.interpolate(jan, jan.plusDays(140), ChronoUnit.DAYS));
+    }
+
+    @Test
+    @DisplayName("Extrapolate balances and net changes from transactions")
+    void extrapolate() {
+        a.setInterestRate(0f);
+        a.enterValue(jan, 1000f);
+        a.addTransaction(new Transaction("Rent", "Monthly rent", -500f, jan.plusDays(4), 1, ChronoUnit.MONTHS, mar));
+        a.addTransaction(new Transaction("Pay", "Bonus", 800f, feb.plusDays(9)));
+        Map<LocalDateTime, Float> balances = a.extrapolateBalance(jan, mar, ChronoUnit.MONTHS);
+        assertEquals(List.of(jan, feb, mar), new ArrayList<>(balances.keySet()));
+        assertEquals(1000f, balances.get(jan));
+        assertEquals(500f, balances.get(feb));
+        assertEquals(800f, balances.get(mar));
+        Map<LocalDateTime, Float> net = a.extrapolateNet(jan.plusDays(1), mar, ChronoUnit.MONTHS);
+        assertEquals(List.of(feb, mar), new ArrayList<>(net.keySet()));
+        assertEquals(-500f, net.get(feb));
+        assertEquals(300f, net.get(mar));
+    }
+
+    @Test
+    @DisplayName("Series results keep the exact cents that the float maps round")
+    void exactSeries() {
+        IBudgetAccount b = new BudgetAccount("Savings", "Test Account", 0f);
+        b.enterValueCents(jan, 1234567891L);
+        b.enterValueCents(mar, 1234567893L);
+        Transaction t = new Transaction("Pay", "Salary", 0f, feb.plusDays(9));
+        t.setAmountCents(3L);
+        b.addTransaction(t);
+
+        TimeSeries balances = b.extrapolateBalanceSeries(jan, mar, ChronoUnit.MONTHS);
+        assertEquals(3, balances.size());
+        assertEquals(Utils.toEpochSecond(feb), balances.timeAt(1));
+        assertEquals(1234567891L, balances.valueAt(0));
+        assertEquals(1234567894L, balances.valueAt(2));
+        assertEquals(b.extrapolateBalance(jan, mar, ChronoUnit.MONTHS), balances.toMap());
+        assertNotEquals(Money.toDouble(1234567894L), (double) balances.toMap().get(mar));
+
+        TimeSeries net = b.extrapolateNetSeries(jan.plusDays(1), mar, ChronoUnit.MONTHS);
+        assertEquals(2, net.size());
+        assertEquals(0L, net.valueAt(0));
+        assertEquals(3L, net.valueAt(1));
+
+        TimeSeries values = b.interpolateSeries(jan, mar, ChronoUnit.MONTHS);
+        assertEquals(1234567893L, values.valueAt(2));
+        assertEquals(b.interpolate(jan, mar, ChronoUnit.MONTHS), values.toMap());
+        assertEquals(3L, t.getAmountCents());
+        assertEquals(0.03f, t.getAmount());
+    }
+
+    @Test
+    @DisplayName("Balance projections compound interest and can run without an end")
+    void projectBalance() {
+        a.setInterestRate(0.1f);
+        a.enterValue(jan, 1000f);
+        BalanceProjection p = a.projectBalance(jan, null, ChronoUnit.YEARS);
+        for (int year = 0; year < 100; year++) {
+            assertTrue(p.next());
+            assertEquals(jan.plusYears(year), p.date());
+        }
+        assertEquals(1000 * Math.pow(1.1, 99 * 365.25 / 365), p.balance(), 1e4);
+        assertTrue(p.net() > 0);
+
+        Transaction bonus = new Transaction("Bonus", "", 500f, jan.plusYears(200));
+        a.addTransaction(bonus);
+        assertThrows(ConcurrentModificationException.class, p::next);
+        BalanceProjection q = a.projectBalance(jan, null, ChronoUnit.YEARS);
+        assertTrue(q.next());
+        bonus.setAmount(600f);
+        assertThrows(ConcurrentModificationException.class, q::next);
+    }
+
+    @Test
+    @DisplayName("Net cash flow follows transaction edits")
+    void getNet() {
+        ITransaction coffee = new Transaction("Coffee", "Daily coffee", -3f, jan, 1, ChronoUnit.DAYS, jan.plusDays(99));
+        ITransaction pay = new Transaction("Pay", "Salary", 2000f, jan.plusDays(14));
+        a.addTransaction(coffee);
+        a.addTransaction(pay);
+        assertEquals(-3f, a.getNet(jan));
+        assertEquals(1997f, a.getNet(jan.plusDays(14)));
+        assertEquals(-300f + 2000f, a.getNet(jan, jan.plusDays(200)));
+        coffee.removeInstance(jan.plusDays(14));
+        pay.addInstance(jan.plusDays(28));
+        coffee.setAmount(-4f);
+        assertEquals(2000f, a.getNet(jan.plusDays(14)));
+        assertEquals(-396f + 4000f, a.getNet(jan, jan.plusDays(200)));
+        assertEquals(-4f * 10, a.getNet(jan, jan.plusDays(9)));
+        a.removeTransaction(pay);
+        assertEquals(0f, a.getNet(jan.plusDays(28), jan.plusDays(28)) + 4f);
+        assertEquals(0f, a.getNet(jan.plusDays(150)));
+    }
+}
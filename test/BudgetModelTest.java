@@ -0,0 +1,86 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BudgetModelTest {
+    IBudgetModel m;
+    LocalDateTime jan;
+
+    @BeforeEach
+    void setUp() {
+        m = new BudgetModel();
+        jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+    }
+
+    @Test
+    @DisplayName("Add, look up and remove accounts by name")
+    void accounts() {
+        IBudgetAccount checking = new BudgetAccount("Checking", "Test Account", 0f);
+        m.addAccount(checking);
+        m.addAccount(new BudgetAccount("Savings", "Test Account", 0f));
+        assertTrue(m.hasAccount("Checking"));
+        assertSame(checking, m.getAccount("Checking"));
+        assertEquals(List.of("Checking", "Savings"), m.getAccounts());
+        assertThrows(IllegalArgumentException.class, () -> m.addAccount(new BudgetAccount("Savings", "Again", 0f)));
+        m.removeAccount("Checking");
+        assertFalse(m.hasAccount("Checking"));
+        assertThrows(IllegalArgumentException.class, () -> m.getAccount("Checking"));
+        assertThrows(IllegalArgumentException.class, () -> m.removeAccount("Checking"));
+    }
+
+    @Test
+    @DisplayName("Renaming an account re-keys it, and a name taken by another account is rejected")
+    void rename() {
+        IBudgetAccount checking = new BudgetAccount("Checking", "Test Account", 0f);
+        IBudgetAccount savings = new ConcurrentBudgetAccount("Savings", "Test Account", 0f);
+        m.addAccount(checking);
+        m.addAccount(savings);
+        checking.setName("Current");
+        assertFalse(m.hasAccount("Checking"));
+        assertSame(checking, m.getAccount("Current"));
+        savings.setName("Reserve");
+        assertSame(savings, m.getAccount("Reserve"));
+        assertEquals(List.of("Current", "Reserve"), m.getAccounts());
+
+        assertThrows(IllegalArgumentException.class, () -> checking.setName("Reserve"));
+        assertEquals("Current", checking.getName());
+        assertSame(savings, m.getAccount("Reserve"));
+        assertThrows(IllegalArgumentException.class, () -> savings.setName("Current"));
+        assertEquals("Reserve", savings.getName());
+
+        // a removed account is no longer followed
+        m.removeAccount("Current");
+        checking.setName("Reserve");
+        assertSame(savings, m.getAccount("Reserve"));
+        assertEquals(List.of("Reserve"), m.getAccounts());
+    }
+
+    @Test
+    @DisplayName("Aggregate balances and net changes across accounts")
+    void aggregate() {
+        for (int i = 0; i < 20; i++) {
+            IBudgetAccount a = new BudgetAccount("Account " + i, "Test Account", 0f);
+            a.enterValue(jan, 100f * i);
+            a.addTransaction(new Transaction("Deposit", "Monthly deposit", 10f, jan.plusDays(1), 1,
+                    ChronoUnit.MONTHS, jan.plusYears(1)));
+            m.addAccount(a);
+        }
+        Map<LocalDateTime, Float> balance = m.aggregateBalance(jan, jan.plusMonths(3), ChronoUnit.MONTHS);
+        assertEquals(4, balance.size());
+        assertEquals(19000f, balance.get(jan));
+        assertEquals(19600f, balance.get(jan.plusMonths(3)));
+        Map<LocalDateTime, Float> net = m.aggregateNet(jan.plusDays(1), jan.plusMonths(3), ChronoUnit.MONTHS);
+        assertEquals(200f, net.get(jan.plusMonths(2)));
+        TimeSeries exact = m.aggregateBalanceSeries(jan, jan.plusMonths(3), ChronoUnit.MONTHS);
+        assertEquals(1900000L, exact.valueAt(0));
+        assertEquals(balance, exact.toMap());
+        assertEquals(20000L, m.aggregateNetSeries(jan.plusDays(1), jan.plusMonths(3), ChronoUnit.MONTHS).valueAt(1));
+    }
+}
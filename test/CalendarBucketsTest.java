@@ -0,0 +1,57 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalendarBucketsTest {
+
+    @Test
+    @DisplayName("Bucket starts match the calendar")
+    void startOf() {
+        ChronoUnit[] units = {ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS, ChronoUnit.YEARS,
+                ChronoUnit.DECADES, ChronoUnit.CENTURIES, ChronoUnit.MILLENNIA};
+        SplittableRandom random = new SplittableRandom(7);
+        long min = LocalDate.of(-3000, 1, 1).toEpochDay();
+        long max = LocalDate.of(4000, 1, 1).toEpochDay();
+        for (int i = 0; i < 20000; i++) {
+            long day = random.nextLong(min, max);
+            LocalDateTime date = LocalDate.ofEpochDay(day).atStartOfDay();
+            for (ChronoUnit unit : units) {
+                LocalDateTime start = Utils.startOfUnit(date, unit);
+                assertEquals(start.toLocalDate().toEpochDay(), CalendarBuckets.startOf(day, unit), date + " " + unit);
+                assertEquals(start.plus(1, unit).toLocalDate().toEpochDay(),
+                        CalendarBuckets.next(CalendarBuckets.startOf(day, unit), unit));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> CalendarBuckets.startOf(0, ChronoUnit.HOURS));
+    }
+
+    @Test
+    @DisplayName("Buckets of a range are shared and searchable")
+    void buckets() {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        CalendarBuckets months = CalendarBuckets.of(jan, jan.plusYears(1), ChronoUnit.MONTHS);
+        assertEquals(13, months.size());
+        assertSame(months, CalendarBuckets.of(jan, jan.plusYears(1), ChronoUnit.MONTHS));
+        long feb = LocalDate.of(2022, 2, 1).toEpochDay();
+        assertEquals(feb, months.startDay(1));
+        assertEquals(1, months.bucketOf(feb + 27));
+        assertEquals(0, months.bucketOf(feb - 1));
+        assertEquals(-1, months.bucketOf(feb - 32));
+        assertEquals(12, CalendarBuckets.of(jan.plusHours(1), jan.plusYears(1), ChronoUnit.MONTHS).size());
+        assertArrayEquals(Utils.grid(jan.plusHours(1), jan.plusYears(1), ChronoUnit.WEEKS),
+                CalendarBuckets.of(jan.plusHours(1), jan.plusYears(1), ChronoUnit.WEEKS).startSeconds());
+
+        long day = jan.toLocalDate().toEpochDay();
+        CalendarBuckets quarters = CalendarBuckets.quarters(day + 1, day + 365);
+        assertEquals(4, quarters.size());
+        assertEquals(LocalDate.of(2022, 4, 1).toEpochDay(), quarters.startDay(0));
+        assertEquals(LocalDate.of(2023, 1, 1).toEpochDay(), quarters.startDay(3));
+        assertEquals(0, CalendarBuckets.of(day, day - 1, ChronoUnit.DAYS).size());
+    }
+}
@@ -0,0 +1,116 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentBudgetAccountTest {
+    LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+
+    @Test
+    @DisplayName("Reads see completed writes")
+    void readAfterWrite() {
+        ConcurrentBudgetAccount a = new ConcurrentBudgetAccount("Checking", "Test Account", 0.05f);
+        a.enterValue(jan, 100f);
+        assertEquals(100f, a.getValue(jan, false));
+        Transaction rent = new Transaction("Rent", "Monthly rent", -50f, jan, 1, ChronoUnit.MONTHS,
+                jan.plusMonths(11));
+        a.addTransaction(rent);
+        rent.setAmount(-60f); // the account holds its own copy
+        assertEquals(-550f, a.getNet(jan, jan.plusMonths(11).minusDays(1)));
+        a.updateTransaction("Rent", t -> t.setAmount(-70f));
+        assertEquals(-70f, a.getTransaction("Rent").getAmount());
+        a.removeTransaction(a.getTransaction("Rent"));
+        assertFalse(a.hasTransaction("Rent"));
+        assertThrows(IllegalArgumentException.class, () -> a.removeValue(jan.plusDays(1)));
+    }
+
+    @Test
+    @DisplayName("A thread sees its own writes while another thread is writing")
+    void readOwnWrites() throws Exception {
+        ConcurrentBudgetAccount a = new ConcurrentBudgetAccount("Checking", "Test Account", 0f);
+        a.addTransaction(new Transaction("Rent", "Monthly rent", -50f, jan));
+        assertTrue(a.hasTransaction("Rent"));
+        CountDownLatch wrote = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> own = pool.submit(() -> {
+                a.enterValue(jan, 100f);
+                wrote.countDown();
+                writing.await();
+                return a.hasValue(jan);
+            });
+            wrote.await();
+            Future<?> slow = pool.submit(() -> a.updateTransaction("Rent", t -> {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                t.setAmountCents(-6000);
+            }));
+            writing.await();
+            Thread.sleep(50);
+            release.countDown();
+            assertTrue(own.get(5, TimeUnit.SECONDS));
+            slow.get(5, TimeUnit.SECONDS);
+            assertEquals(-6000L, a.getTransaction("Rent").getAmountCents());
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Readers see consistent versions while a writer runs")
+    void concurrentReads() throws Exception {
+        ConcurrentBudgetAccount a = new ConcurrentBudgetAccount("Checking", "Test Account", 0);
+        a.enterValue(jan, 0f);
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(pool.submit(() -> {
+                while (!done.get()) {
+                    // every entered value equals its day offset, so a consistent version interpolates to a line
+                    int known = a.getActualValues(jan, jan.plusYears(10)).size();
+                    Map<LocalDateTime, Float> m = a.interpolate(jan, jan.plusDays(10), ChronoUnit.DAYS);
+                    for (Map.Entry<LocalDateTime, Float> e : m.entrySet()) {
+                        long day = ChronoUnit.DAYS.between(jan, e.getKey());
+                        if (day < known - 1) {
+                            assertEquals(day, e.getValue(), 1e-3);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        Future<?> writer = pool.submit(() -> {
+            for (int i = 1; i < 2000; i++) {
+                a.enterValue(jan.plusDays(i), i);
+            }
+            done.set(true);
+            return null;
+        });
+        writer.get();
+        for (Future<?> f : readers) {
+            f.get();
+        }
+        pool.shutdown();
+        assertEquals(1999f, a.getValue(1999));
+    }
+}
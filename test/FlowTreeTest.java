@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowTreeTest {
+
+    @Test
+    @DisplayName("Forked trees match independent maps of flows")
+    void forks() {
+        SplittableRandom random = new SplittableRandom(3);
+        List<FlowTree> trees = new ArrayList<>(List.of(new FlowTree()));
+        List<TreeMap<Long, Long>> expected = new ArrayList<>(List.of(new TreeMap<>()));
+        for (int step = 0; step < 20000; step++) {
+            int k = random.nextInt(trees.size());
+            if (random.nextInt(500) == 0 && trees.size() < 8) {
+                trees.add(trees.get(k).fork());
+                expected.add(new TreeMap<>(expected.get(k)));
+                continue;
+            }
+            long day = random.nextLong(-2000, 2000);
+            long amount = random.nextLong(-1000, 1000);
+            trees.get(k).add(day, amount);
+            expected.get(k).merge(day, amount, Long::sum);
+        }
+        for (int k = 0; k < trees.size(); k++) {
+            FlowTree tree = trees.get(k);
+            TreeMap<Long, Long> map = expected.get(k);
+            assertEquals(map.size(), tree.size());
+            long[] days = new long[tree.size()];
+            long[] flows = new long[tree.size()];
+            tree.copyTo(days, flows);
+            int i = 0;
+            for (Map.Entry<Long, Long> e : map.entrySet()) {
+                assertEquals(e.getKey(), days[i]);
+                assertEquals(e.getValue(), flows[i++]);
+            }
+            for (long day = -2010; day <= 2010; day += 7) {
+                assertEquals(map.getOrDefault(day, 0L), tree.get(day));
+                assertEquals(map.headMap(day, true).values().stream().mapToLong(Long::longValue).sum(),
+                        tree.total(day));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Scenario forks are independent and project in parallel")
+    void scenarios() {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        BudgetAccount base = new BudgetAccount("Savings", "", 0.03f);
+        for (int i = 0; i < 100; i++) {
+            base.enterValue(jan.plusDays(i * 30L), 1000f + i * 10);
+        }
+        Transaction rent = new Transaction("Rent", "", -900f, jan.plusDays(1), 1, ChronoUnit.MONTHS,
+                jan.plusYears(20));
+        Transaction bonus = new Transaction("Bonus", "", 0f);
+        for (int i = 0; i < 20; i++) {
+            bonus.addInstance(jan.plusYears(i).plusDays(200));
+        }
+        bonus.setAmount(5000f);
+        base.addTransaction(rent);
+        base.addTransaction(bonus);
+        Map<LocalDateTime, Float> baseline = base.extrapolateBalance(jan, jan.plusYears(20), ChronoUnit.MONTHS);
+
+        List<BudgetAccount> forks = IntStream.range(0, 50).mapToObj(i -> {
+            BudgetAccount f = base.fork();
+            ITransaction t = f.getTransaction("Bonus");
+            t.setAmountCents(t.getAmountCents() * (100 + i) / 100);
+            t.addInstance(jan.plusYears(5).plusDays(i));
+            f.enterValue(jan.plusDays(3001), 2000f + i);
+            return f;
+        }).collect(Collectors.toList());
+        List<Map<LocalDateTime, Float>> projected = forks.parallelStream()
+                .map(f -> f.extrapolateBalance(jan, jan.plusYears(20), ChronoUnit.MONTHS))
+                .collect(Collectors.toList());
+        for (int i = 0; i < forks.size(); i++) {
+            BudgetAccount copy = forks.get(i).copy();
+            assertEquals(copy.extrapolateBalance(jan, jan.plusYears(20), ChronoUnit.MONTHS), projected.get(i));
+            assertEquals(copy.interpolate(jan, jan.plusYears(10), ChronoUnit.WEEKS),
+                    forks.get(i).interpolate(jan, jan.plusYears(10), ChronoUnit.WEEKS));
+        }
+        assertEquals(baseline, base.extrapolateBalance(jan, jan.plusYears(20), ChronoUnit.MONTHS));
+        assertEquals(20, bonus.numInstances());
+        assertFalse(base.hasValue(jan.plusDays(3001)));
+
+        // the base account's own edits do not reach its forks
+        BudgetAccount fork = base.fork();
+        Map<LocalDateTime, Float> before = fork.extrapolateNet(jan, jan.plusYears(20), ChronoUnit.YEARS);
+        rent.removeInstance(jan.plusMonths(3).plusDays(1));
+        bonus.addInstance(jan.plusDays(10));
+        base.removeValue(jan);
+        assertEquals(before, fork.extrapolateNet(jan, jan.plusYears(20), ChronoUnit.YEARS));
+        assertEquals(20, fork.getTransaction("Bonus").numInstances());
+        assertTrue(fork.hasValue(jan));
+    }
+}
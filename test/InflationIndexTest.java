@@ -0,0 +1,60 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InflationIndexTest {
+
+    @Test
+    @DisplayName("Load published points and interpolate between them")
+    void load(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("cpi.csv");
+        Files.writeString(file, "date,cpi\n2022-01-01,100\n2022-01-11,121\n\n01/21/2022,121\n");
+        InflationIndex index = InflationIndex.load(file);
+        long jan = LocalDate.of(2022, 1, 1).toEpochDay();
+        assertEquals(100, index.level(jan));
+        assertEquals(110, index.level(jan + 5), 1e-9);
+        assertEquals(121, index.level(jan + 15));
+        assertEquals(100, index.level(jan - 400));
+        assertEquals(121, index.level(jan + 400));
+        assertEquals(100 / 121.0, index.deflator(jan + 10, jan), 1e-12);
+
+        Files.writeString(file, "2022-01-01,100\n2021-12-01,99\n");
+        assertThrows(IllegalArgumentException.class, () -> InflationIndex.load(file));
+        Files.writeString(file, "2022-01-01 100\n");
+        assertThrows(IllegalArgumentException.class, () -> InflationIndex.load(file));
+    }
+
+    @Test
+    @DisplayName("Deflate balance series and real rates of return")
+    void deflate() {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        long day = jan.toLocalDate().toEpochDay();
+        InflationIndex index = new InflationIndex(new long[] {day - 1, day + 364}, new double[] {100, 103}, 2);
+        assertEquals(0.03, index.annualRate(day - 1, day + 364), 1e-12);
+
+        BudgetAccount a = new BudgetAccount("Savings", "", 0.05f);
+        a.enterValue(jan, 1000f);
+        a.enterValue(jan.plusDays(365), 1050f);
+        assertThrows(IllegalStateException.class, () -> a.rateOfReturn(jan, jan.plusDays(364), true));
+        a.setInflationIndex(index);
+        assertEquals(1.05 / 1.03 - 1, a.rateOfReturn(jan, jan.plusDays(364), true), 1e-6);
+        assertEquals(0.05, a.rateOfReturn(jan, jan.plusDays(364), false), 1e-6);
+
+        Map<LocalDateTime, Float> nominal = a.interpolate(jan, jan.plusDays(365), ChronoUnit.DAYS);
+        Map<LocalDateTime, Float> real = index.deflate(nominal, jan);
+        assertEquals(nominal.keySet(), real.keySet());
+        assertEquals(1000f, real.get(jan), 0.01);
+        assertEquals(1050 / 1.03 * Math.pow(1.03, 1 / 365.0), real.get(jan.plusDays(365)), 0.01);
+        assertSame(index, a.copy().getInflationIndex());
+    }
+}
@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Replay restores values, transactions and settings")
+    void replay() throws IOException {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        Path file = dir.resolve("checking.journal");
+        try (Journal journal = Journal.open(file)) {
+            BudgetAccount a = new BudgetAccount("Checking", "Test Account", 0.05f);
+            journal.attach(a);
+            for (int i = 0; i < 100000; i++) {
+                a.enterValue(jan.plusHours(i), i);
+            }
+            a.removeValue(jan.plusHours(5));
+            a.setInterestRate(0.02f);
+            a.setName("Main");
+            Transaction rent = new Transaction("Rent", "Monthly rent", -1000f, jan, 1, ChronoUnit.MONTHS,
+                    jan.plusYears(1));
+            rent.removeInstance(jan.plusMonths(2));
+            rent.addInstance(jan.plusDays(3));
+            a.addTransaction(rent);
+            Transaction gift = new Transaction("Gift", "Birthday", 50f, jan.plusDays(9));
+            a.addTransaction(gift);
+            gift.setName("Present");
+            gift.setAmount(75f);
+            gift.changeDescription(null);
+            a.addTransaction(new Transaction("Refund", "Once", 20f, jan));
+            a.removeTransaction(a.getTransaction("Refund"));
+            rent.removeInstance(jan.plusMonths(4));
+        }
+
+        BudgetAccount b = new BudgetAccount("", "", 0);
+        try (Journal journal = Journal.open(file)) {
+            journal.replay(b);
+            journal.attach(b);
+            b.getTransaction("Rent").addInstance(jan.plusMonths(4));
+        }
+        assertEquals("Main", b.getName());
+        assertEquals(0.02f, b.getInterestRate());
+        assertEquals(99999, b.actualValues.size());
+        assertFalse(b.hasValue(jan.plusHours(5)));
+        assertEquals(6f, b.getValue(jan.plusHours(6), false));
+        assertFalse(b.hasTransaction("Refund"));
+        ITransaction present = b.getTransaction("Present");
+        assertEquals(75f, present.getAmount());
+        assertNull(present.getDescription());
+        assertTrue(present.hasInstance(jan.plusDays(9)));
+        ITransaction rent = b.getTransaction("Rent");
+        assertEquals(13, rent.numInstances());
+        assertFalse(rent.hasInstance(jan.plusMonths(2)));
+        assertTrue(rent.hasInstance(jan.plusDays(3)));
+        assertEquals(-12925f, b.getNet(jan, jan.plusYears(1)));
+
+        BudgetAccount c = new BudgetAccount("", "", 0);
+        try (Journal journal = Journal.open(file)) {
+            journal.replay(c);
+            journal.attach(c);
+            assertThrows(IllegalStateException.class, () -> journal.replay(c));
+        }
+        assertEquals(13, c.getTransaction("Rent").numInstances());
+    }
+}
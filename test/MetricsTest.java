@@ -0,0 +1,48 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    @Test
+    @DisplayName("Operations are counted and timed by account")
+    @EnabledIfSystemProperty(named = "antibudget.metrics", matches = "true")
+    void record() {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        BudgetAccount a = new BudgetAccount("MetricsTest", "", 0.05f);
+        Transaction rent = new Transaction("Rent", "", -1000f);
+        rent.addInstances(List.of(jan.plusDays(1), jan.plusDays(32), jan.plusDays(60)));
+        a.addTransaction(rent);
+        for (int i = 0; i < 10; i++) {
+            a.enterValue(jan.plusDays(i * 30), 5000f + i);
+        }
+        a.getActualValues(jan, jan.plusYears(1));
+        a.interpolate(jan, jan.plusYears(1), ChronoUnit.MONTHS);
+        a.extrapolateBalance(jan, jan.plusYears(1), ChronoUnit.WEEKS);
+        a.extrapolateNet(jan, jan.plusYears(1), ChronoUnit.WEEKS);
+        a.rateOfReturn(jan, jan.plusDays(200), false);
+        a.getTransaction("Rent");
+
+        assertTrue(Metrics.accounts().contains("MetricsTest"));
+        assertEquals(10, Metrics.count("MetricsTest", Metrics.Operation.ENTER_VALUE));
+        for (Metrics.Operation o : new Metrics.Operation[] {Metrics.Operation.GET_ACTUAL_VALUES,
+                Metrics.Operation.INTERPOLATE, Metrics.Operation.EXTRAPOLATE_BALANCE,
+                Metrics.Operation.EXTRAPOLATE_NET, Metrics.Operation.RATE_OF_RETURN,
+                Metrics.Operation.GET_TRANSACTION}) {
+            assertEquals(1, Metrics.count("MetricsTest", o), o.name());
+        }
+        long p50 = Metrics.latencyNanos("MetricsTest", Metrics.Operation.ENTER_VALUE, 50);
+        assertTrue(p50 > 0 && p50 <= Metrics.latencyNanos("MetricsTest", Metrics.Operation.ENTER_VALUE, 100));
+        // 10 values fall in the bucket of 8 to 15, 3 instances in the bucket of 2 to 3
+        assertEquals(15, Metrics.size("MetricsTest", Metrics.Size.HISTORY, 100));
+        assertEquals(3, Metrics.size("MetricsTest", Metrics.Size.INSTANCES, 50));
+        assertEquals(0, Metrics.count("Unknown", Metrics.Operation.ENTER_VALUE));
+        assertEquals(0, Metrics.latencyNanos("Unknown", Metrics.Operation.ENTER_VALUE, 50));
+    }
+}
@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    @DisplayName("Parse, round and format exact cents")
+    void conversions() {
+        assertEquals(-123456, Money.parse("-1,234.56", 0, 9));
+        assertEquals(1200, Money.parse("$12", 0, 3));
+        assertEquals(-750, Money.parse("(7.50)", 0, 6));
+        assertEquals(10, Money.parse("0.1", 0, 3));
+        assertEquals(101, Money.parse("1.005", 0, 5));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("12a", 0, 3));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("$", 0, 1));
+
+        assertEquals(30, Money.of(0.1 + 0.2));
+        assertEquals(-4, Money.of(-0.035));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(Double.NaN));
+        assertEquals("-1234.05", Money.format(-123405));
+        assertEquals("0.10", Money.format(10));
+        assertEquals(105, Money.scale(100, 1.049));
+    }
+
+    @Test
+    @DisplayName("Sums of many small amounts stay exact")
+    void exactSums() {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        BudgetAccount a = new BudgetAccount("Checking", "", 0);
+        Transaction coffee = new Transaction("Coffee", "", -0.1f, jan, 1, ChronoUnit.DAYS, jan.plusDays(9999));
+        a.addTransaction(coffee);
+        assertEquals(-100000, a.getNetCents(jan, jan.plusYears(40)));
+        coffee.setAmountCents(-7);
+        assertEquals(-70000, a.getNetCents(jan, jan.plusYears(40)));
+        assertEquals(-0.07f, coffee.getAmount());
+
+        // the aggregate of many accounts does not depend on the order the parallel sums complete in
+        BudgetModel model = new BudgetModel();
+        for (int i = 0; i < 64; i++) {
+            BudgetAccount b = new BudgetAccount("Account " + i, "", 0);
+            b.enterValueCents(jan, 1);
+            b.addTransaction(new Transaction("Fee", "", -0.01f, jan.plusDays(1), 1, ChronoUnit.DAYS, jan.plusDays(99)));
+            model.addAccount(b);
+        }
+        Map<LocalDateTime, Float> first = model.aggregateBalance(jan, jan.plusDays(100), ChronoUnit.DAYS);
+        assertEquals(first, model.aggregateBalance(jan, jan.plusDays(100), ChronoUnit.DAYS));
+        assertEquals(0.64f, first.get(jan));
+        assertEquals(-62.72f, first.get(jan.plusDays(100)));
+    }
+}
@@ -0,0 +1,51 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonteCarloProjectionTest {
+    IBudgetAccount a;
+    LocalDateTime jan;
+
+    @BeforeEach
+    void setUp() {
+        jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        a = new BudgetAccount("Brokerage", "Test Account", 0.07f);
+        a.enterValue(jan.minusDays(1), 10000f);
+        a.addTransaction(new Transaction("Deposit", "Monthly deposit", 500f, jan.plusDays(14), 1,
+                ChronoUnit.MONTHS, jan.plusYears(5)));
+    }
+
+    @Test
+    @DisplayName("Results are reproducible from a seed")
+    void reproducible() {
+        ProjectionBands x = new MonteCarloProjection(2000, 42, 0.15f, 0.1f)
+                .run(a, jan, jan.plusYears(5), ChronoUnit.MONTHS, 5, 50, 95);
+        ProjectionBands y = new MonteCarloProjection(2000, 42, 0.15f, 0.1f)
+                .run(a, jan, jan.plusYears(5), ChronoUnit.MONTHS, 5, 50, 95);
+        assertEquals(61, x.size());
+        assertEquals(x.band(50), y.band(50));
+        assertEquals(x.band(5), y.band(5));
+    }
+
+    @Test
+    @DisplayName("Percentile bands are ordered and collapse without volatility")
+    void bands() {
+        ProjectionBands x = new MonteCarloProjection(2000, 7, 0.15f, 0.1f)
+                .run(a, jan, jan.plusYears(5), ChronoUnit.YEARS, 5, 50, 95);
+        for (int i = 1; i < x.size(); i++) {
+            assertTrue(x.value(5, i) < x.value(50, i));
+            assertTrue(x.value(50, i) < x.value(95, i));
+        }
+        ProjectionBands flat = new MonteCarloProjection(10, 7, 0f, 0f)
+                .run(a, jan, jan.plusYears(5), ChronoUnit.YEARS, 5, 95);
+        float expected = a.extrapolateBalance(jan, jan.plusYears(5), ChronoUnit.YEARS).get(jan.plusYears(5));
+        assertEquals(flat.value(5, 5), flat.value(95, 5));
+        assertEquals(expected, flat.value(5, 5), 1f);
+        assertThrows(IllegalArgumentException.class, () -> x.value(10, 0));
+    }
+}
@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OccurrenceTableTest {
+
+    @Test
+    @DisplayName("Expenses over $500 in Q3, grouped by month")
+    void query() {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        BudgetModel model = new BudgetModel();
+        BudgetAccount checking = new BudgetAccount("Checking", "", 0f);
+        checking.addTransaction(new Transaction("Rent", "Apartment", -1200f, jan, 1, ChronoUnit.MONTHS,
+                jan.plusYears(1)));
+        checking.addTransaction(new Transaction("Coffee", "Cafe", -4.5f, jan, 1, ChronoUnit.DAYS, jan.plusYears(1)));
+        Transaction repair = new Transaction("Repair", "Car repair", -650f, LocalDateTime.of(2022, 8, 15, 9, 30));
+        checking.addTransaction(repair);
+        BudgetAccount savings = new BudgetAccount("Savings", "", 0f);
+        savings.addTransaction(new Transaction("Deposit", "Apartment fund", 800f, jan, 1, ChronoUnit.MONTHS,
+                jan.plusYears(1)));
+        model.addAccount(checking);
+        model.addAccount(savings);
+
+        OccurrenceTable table = OccurrenceTable.of(model);
+        assertEquals(13 + 366 + 1 + 13, table.size());
+        OccurrenceTable.Groups months = table.query()
+                .between(LocalDateTime.of(2022, 7, 1, 0, 0), LocalDateTime.of(2022, 9, 30, 0, 0))
+                .atMost(-50000)
+                .groupBy(ChronoUnit.MONTHS);
+        assertEquals(3, months.size());
+        assertEquals(LocalDate.of(2022, 8, 1).toEpochDay(), months.startDay(1));
+        assertEquals(1, months.count(0));
+        assertEquals(2, months.count(1));
+        assertEquals(-185000, months.sum(1));
+        assertEquals(-120000, months.min(1));
+        assertEquals(-65000, months.max(1));
+
+        OccurrenceTable.Query apartment = table.query().descriptions(d -> d.startsWith("Apartment"));
+        assertEquals(26, apartment.count());
+        assertEquals(13 * (80000 - 120000), apartment.sum());
+        assertEquals(13, table.query().account("Savings").count());
+        OccurrenceTable.Groups byName = table.query().atMost(-1).groupByTransaction();
+        assertEquals("Coffee", byName.key(1));
+        assertEquals(366, byName.count(1));
+        assertEquals(0, byName.count(3));
+        assertEquals(5, table.query().groupByQuarter().size());
+        int[] rows = table.query().names("Repair"::equals).rows();
+        assertEquals(1, rows.length);
+        assertEquals("Checking", table.account(rows[0]));
+        assertEquals(LocalDate.of(2022, 8, 15).toEpochDay(), table.day(rows[0]));
+        assertThrows(IllegalStateException.class, () -> byName.startDay(0));
+    }
+
+    @Test
+    @DisplayName("Large queries run in parallel chunks and match a row by row scan")
+    void scan() {
+        LocalDateTime start = LocalDateTime.of(1990, 1, 1, 0, 0);
+        BudgetAccount a = new BudgetAccount("Checking", "", 0f);
+        for (int k = 0; k < 12; k++) {
+            a.addTransaction(new Transaction("T" + k, k % 2 == 0 ? "even" : "odd", 37f * (k - 6), start.plusDays(k),
+                    1, ChronoUnit.DAYS, start.plusYears(70)));
+        }
+        OccurrenceTable table = OccurrenceTable.of(List.of(a));
+        assertTrue(table.size() > 300000);
+        SplittableRandom random = new SplittableRandom(5);
+        for (int q = 0; q < 20; q++) {
+            long first = start.toLocalDate().toEpochDay() + random.nextInt(20000);
+            long last = first + random.nextInt(10000);
+            long min = random.nextLong(-25000, 0);
+            long max = random.nextLong(0, 25000);
+            OccurrenceTable.Query query = table.query().days(first, last).atLeast(min).atMost(max);
+            if (q % 2 == 1) {
+                query.descriptions("odd"::equals);
+            }
+            long count = 0;
+            long sum = 0;
+            long[] yearSums = new long[80];
+            for (int i = 0; i < table.size(); i++) {
+                long c = table.cents(i);
+                if (table.day(i) >= first && table.day(i) <= last && c >= min && c <= max
+                        && (q % 2 == 0 || table.description(i).equals("odd"))) {
+                    count++;
+                    sum += c;
+                    yearSums[LocalDate.ofEpochDay(table.day(i)).getYear() - 1990] += c;
+                }
+            }
+            assertEquals(count, query.count());
+            assertEquals(sum, query.sum());
+            assertEquals(count, query.rows().length);
+            OccurrenceTable.Groups years = table.query().atLeast(min).atMost(max).days(first, last)
+                    .descriptions(d -> true).groupBy(ChronoUnit.YEARS);
+            OccurrenceTable.Groups all = table.query().groupBy(ChronoUnit.YEARS);
+            assertEquals(71, all.size());
+            if (q % 2 == 0) {
+                for (int g = 0; g < years.size(); g++) {
+                    assertEquals(yearSums[LocalDate.ofEpochDay(years.startDay(g)).getYear() - 1990], years.sum(g));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectionCacheTest {
+
+    @Test
+    @DisplayName("Patched projections match a fresh computation after every edit")
+    void edits() {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        LocalDateTime end = jan.plusYears(30);
+        BudgetAccount a = new BudgetAccount("Savings", "", 0.04f);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int k = 0; k < 4; k++) {
+            Transaction t = new Transaction("T" + k, "", 10f * (k - 2), jan.plusDays(k));
+            transactions.add(t);
+            a.addTransaction(t);
+        }
+        a.enterValue(jan.plusDays(20), 1000f);
+        a.enterValue(jan.plusYears(2), 1800f);
+
+        SplittableRandom random = new SplittableRandom(11);
+        LocalDateTime[] starts = {jan, jan.plusDays(40).plusHours(6), jan.plusYears(3)};
+        ChronoUnit[] units = {ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS};
+        for (int step = 0; step < 200; step++) {
+            LocalDateTime date = jan.plusDays(random.nextInt(365 * 30));
+            Transaction t = transactions.get(random.nextInt(transactions.size()));
+            switch (random.nextInt(5)) {
+                case 0:
+                    if (!t.hasInstance(date)) {
+                        t.addInstance(date);
+                    }
+                    break;
+                case 1:
+                    t.setAmount(random.nextInt(-500, 500));
+                    break;
+                case 2:
+                    a.enterValue(date, random.nextInt(0, 5000));
+                    break;
+                case 3:
+                    List<LocalDateTime> values = new ArrayList<>(a.getActualValues(jan, end).keySet());
+                    if (values.size() > 1) {
+                        a.removeValue(values.get(random.nextInt(values.size())));
+                    }
+                    break;
+                default:
+                    if (random.nextInt(10) == 0) {
+                        a.setInterestRate(random.nextInt(0, 8) / 100f);
+                    }
+            }
+            LocalDateTime start = starts[random.nextInt(starts.length)];
+            ChronoUnit unit = units[random.nextInt(units.length)];
+            BudgetAccount fresh = a.copy();
+            assertEquals(fresh.interpolate(start, end, unit), a.interpolate(start, end, unit), "step " + step);
+            assertEquals(fresh.extrapolateBalance(start, end, unit), a.extrapolateBalance(start, end, unit),
+                    "step " + step);
+            assertEquals(fresh.extrapolateNet(start, end, unit), a.extrapolateNet(start, end, unit), "step " + step);
+        }
+    }
+
+    @Test
+    @DisplayName("Results are reused until the account changes")
+    void reuse() {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        BudgetAccount a = new BudgetAccount("Savings", "", 0.04f);
+        a.enterValue(jan, 1000f);
+        Transaction t = new Transaction("Pay", "", 100f, jan.plusMonths(6));
+        a.addTransaction(t);
+        float before = a.extrapolateBalance(jan, jan.plusYears(1), ChronoUnit.MONTHS).get(jan.plusMonths(3));
+        assertEquals(a.extrapolateBalance(jan, jan.plusYears(1), ChronoUnit.MONTHS),
+                a.extrapolateBalance(jan, jan.plusYears(1), ChronoUnit.MONTHS));
+        t.addInstance(jan.plusMonths(2).plusDays(3));
+        assertEquals(before + 100f,
+                a.extrapolateBalance(jan, jan.plusYears(1), ChronoUnit.MONTHS).get(jan.plusMonths(3)), 1);
+        a.setInterestRate(0);
+        assertEquals(1200f, a.extrapolateBalance(jan, jan.plusYears(1), ChronoUnit.MONTHS).get(jan.plusYears(1)));
+    }
+}
@@ -0,0 +1,220 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryServiceTest {
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+    private static HttpResponse<String> get(QueryService service, String path) throws Exception {
+        return CLIENT.send(request(service, path), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest request(QueryService service, String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + service.port() + path)).build();
+    }
+
+    @Test
+    @DisplayName("Accounts, values and projections are served as JSON")
+    void queries() throws Exception {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        ConcurrentBudgetAccount checking = new ConcurrentBudgetAccount("Checking", "", 0f);
+        checking.enterValue(jan, 1000f);
+        checking.enterValue(jan.plusDays(10), 950.5f);
+        checking.addTransaction(new Transaction("Rent", "", -100f, jan.plusDays(14), 1, ChronoUnit.MONTHS,
+                jan.plusYears(1)));
+        BudgetModel model = new BudgetModel();
+        model.addAccount(checking);
+        model.addAccount(new ConcurrentBudgetAccount("My \"Savings\"", "", 0f));
+
+        try (QueryService service = QueryService.start(model, 0)) {
+            assertEquals("[\"Checking\",\"My \\\"Savings\\\"\"]", get(service, "/accounts").body());
+            assertEquals("[{\"date\":\"2022-01-01T00:00\",\"value\":1000.00},"
+                            + "{\"date\":\"2022-01-11T00:00\",\"value\":950.50}]",
+                    get(service, "/accounts/Checking/values?start=2022-01-01&end=2022-12-31").body());
+            assertEquals("[{\"date\":\"2022-02-01\",\"value\":850.50},{\"date\":\"2022-03-01\",\"value\":750.50}]",
+                    get(service, "/accounts/Checking/balance?start=2022-02-01&end=2022-03-01&unit=months").body());
+            List<Float> net = new ArrayList<>(checking.extrapolateNet(LocalDateTime.of(2022, 2, 1, 0, 0),
+                    LocalDateTime.of(2022, 3, 1, 0, 0), ChronoUnit.MONTHS).values());
+            assertEquals(List.of(0f, -100f), net);
+            assertEquals("[{\"date\":\"2022-02-01\",\"value\":0.00},{\"date\":\"2022-03-01\",\"value\":-100.00}]",
+                    get(service, "/accounts/Checking/net?start=2022-02-01T00:00&end=2022-03-01&unit=MONTHS").body());
+
+            assertEquals(404, get(service, "/accounts/Missing/values?start=2022-01-01&end=2022-12-31").statusCode());
+            assertEquals(404, get(service, "/accounts/Checking/unknown").statusCode());
+            assertEquals(404, get(service, "/other").statusCode());
+            HttpResponse<String> bad = get(service, "/accounts/Checking/balance?start=2022-01-01&end=2022-12-31");
+            assertEquals(400, bad.statusCode());
+            assertEquals("{\"error\":\"Missing parameter: unit\"}", bad.body());
+            assertEquals(400, get(service, "/accounts/Checking/net?start=2022-13-01&end=2023-01-01&unit=days")
+                    .statusCode());
+            assertEquals(400, get(service, "/accounts/Checking/values?start=2023-01-01&end=2022-01-01")
+                    .statusCode());
+            HttpRequest post = HttpRequest.newBuilder(URI.create("http://localhost:" + service.port() + "/accounts"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build();
+            assertEquals(405, CLIENT.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+    }
+
+    @Test
+    @DisplayName("Requests beyond a small pool of threads wait for one")
+    void smallPool() throws Exception {
+        BudgetModel model = new BudgetModel();
+        ConcurrentBudgetAccount checking = new ConcurrentBudgetAccount("Checking", "", 0.05f);
+        checking.enterValue(LocalDateTime.of(2022, 1, 1, 0, 0), 1000f);
+        model.addAccount(checking);
+        assertThrows(IllegalArgumentException.class, () -> QueryService.start(model, 0, 0));
+
+        try (QueryService service = QueryService.start(model, 0, 2)) {
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                String path = "/accounts/Checking/balance?start=2022-01-01&end=20" + (30 + i) + "-01-01&unit=days";
+                responses.add(CLIENT.sendAsync(request(service, path), HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> r : responses) {
+                assertEquals(200, r.get(10, TimeUnit.SECONDS).statusCode());
+            }
+            assertEquals(20, service.computed());
+        }
+    }
+
+    @Test
+    @DisplayName("Identical projection requests in progress share one computation")
+    void coalescing() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BudgetAccount slow = new BudgetAccount("Slow", "", 0.05f) {
+            @Override
+            public BalanceProjection projectBalance(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.projectBalance(start, end, unit);
+            }
+        };
+        slow.enterValue(LocalDateTime.of(2022, 1, 1, 0, 0), 1000f);
+        BudgetModel model = new BudgetModel();
+        model.addAccount(slow);
+
+        try (QueryService service = QueryService.start(model, 0)) {
+            String path = "/accounts/Slow/balance?start=2022-01-01&end=2052-01-01&unit=days";
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                responses.add(CLIENT.sendAsync(request(service, path), HttpResponse.BodyHandlers.ofString()));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (service.coalesced() < 19 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            String first = responses.get(0).get(10, TimeUnit.SECONDS).body();
+            for (CompletableFuture<HttpResponse<String>> r : responses) {
+                assertEquals(200, r.get(10, TimeUnit.SECONDS).statusCode());
+                assertEquals(first, r.get().body());
+            }
+            assertEquals(19, service.coalesced());
+            assertEquals(1, service.computed());
+            assertTrue(first.startsWith("[{\"date\":\"2022-01-01\",\"value\":1000.00}"));
+
+            // a finished projection is not shared, so a request after a change sees it
+            slow.enterValue(LocalDateTime.of(2022, 1, 1, 0, 0), 2000f);
+            assertTrue(get(service, path).body().startsWith("[{\"date\":\"2022-01-01\",\"value\":2000.00}"));
+            assertEquals(2, service.computed());
+        }
+    }
+
+    @Test
+    @DisplayName("An error computing a shared projection answers every request waiting for it with a 500")
+    void coalescedError() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean fail = new AtomicBoolean(true);
+        BudgetAccount broken = new BudgetAccount("Broken", "", 0.05f) {
+            @Override
+            public BalanceProjection projectBalance(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (fail.get()) {
+                    throw new AssertionError("Projection failed");
+                }
+                return super.projectBalance(start, end, unit);
+            }
+        };
+        broken.enterValue(LocalDateTime.of(2022, 1, 1, 0, 0), 1000f);
+        BudgetModel model = new BudgetModel();
+        model.addAccount(broken);
+
+        try (QueryService service = QueryService.start(model, 0)) {
+            String path = "/accounts/Broken/balance?start=2022-01-01&end=2022-02-01&unit=days";
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                responses.add(CLIENT.sendAsync(request(service, path), HttpResponse.BodyHandlers.ofString()));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (service.coalesced() < 4 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (CompletableFuture<HttpResponse<String>> r : responses) {
+                assertEquals(500, r.get(10, TimeUnit.SECONDS).statusCode());
+                assertEquals("{\"error\":\"Internal error\"}", r.get().body());
+            }
+            assertEquals(0, service.computed());
+            fail.set(false);
+            assertEquals(200, get(service, path).statusCode());
+            assertEquals(1, service.computed());
+        }
+    }
+
+    @Test
+    @DisplayName("A failure after the response has started aborts it rather than ending it early")
+    void abortedResponse() throws Exception {
+        BudgetAccount failing = new BudgetAccount("Failing", "", 0f) {
+            @Override
+            public BalanceProjection projectBalance(LocalDateTime start, LocalDateTime end, ChronoUnit unit) {
+                return new BalanceProjection(100000, start.toLocalDate().toEpochDay() - 1, 0f, new CashFlowIndex(),
+                        start, end, unit) {
+                    private int points;
+
+                    @Override
+                    public boolean next() {
+                        if (++this.points > 1000) {
+                            throw new ConcurrentModificationException("Cash flows were modified.");
+                        }
+                        return super.next();
+                    }
+                };
+            }
+        };
+        BudgetModel model = new BudgetModel();
+        model.addAccount(failing);
+
+        try (QueryService service = QueryService.start(model, 0)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> CLIENT.sendAsync(
+                    request(service, "/accounts/Failing/balance?start=2022-01-01&end=2052-01-01&unit=days"),
+                    HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e.getCause());
+            // the service still answers once a response was aborted
+            assertEquals(200, get(service, "/accounts").statusCode());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateOfReturnTest {
+
+    @Test
+    @DisplayName("Solve XIRR from near and far guesses")
+    void xirr() {
+        double[] years = {0, 1};
+        double[] amounts = {-1000, 1100};
+        assertEquals(0.1, RateOfReturn.xirr(years, amounts, 2, 0), 1e-12);
+        assertEquals(0.1, RateOfReturn.xirr(years, amounts, 2, 1e6), 1e-12);
+        assertEquals(0.1, RateOfReturn.xirr(years, amounts, 2, -0.999999), 1e-12);
+
+        double[] staged = {0, 0.25, 0.5, 1.5};
+        double[] flows = {-500, -200, 100, 700};
+        double r = RateOfReturn.xirr(staged, flows, 4, 0);
+        double npv = 0;
+        for (int k = 0; k < 4; k++) {
+            npv += flows[k] / Math.pow(1 + r, staged[k]);
+        }
+        assertEquals(0, npv, 1e-9);
+        assertTrue(Double.isNaN(RateOfReturn.xirr(years, new double[] {100, 100}, 2, 0)));
+    }
+
+    @Test
+    @DisplayName("Money and time-weighted returns of an account, cached and rolling")
+    void accountReturns() {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        BudgetAccount a = new BudgetAccount("Brokerage", "", 0.05f);
+        a.enterValue(jan, 1000f);
+        a.enterValue(jan.plusDays(365), 1050f);
+        assertEquals(0.05, a.rateOfReturn(jan, jan.plusDays(364), false), 1e-6);
+        assertEquals(0.05, a.returns().timeWeighted(jan, jan.plusDays(364)), 1e-6);
+
+        // a deposit raises the closing value without raising the time-weighted return
+        a.addTransaction(new Transaction("Deposit", "", 500f, jan.plusDays(182)));
+        a.enterValue(jan.plusDays(365), 1550f);
+        double twr = a.returns().timeWeighted(jan, jan.plusDays(364));
+        assertTrue(twr > 0 && twr < 0.05, "time-weighted return " + twr);
+        double mwr = a.returns().moneyWeighted(jan, jan.plusDays(364));
+        assertEquals(0, -1000 - 500 / Math.pow(1 + mwr, 183 / 365.0) + 1550 / (1 + mwr), 1e-6);
+        assertEquals(mwr, a.returns().moneyWeighted(jan, jan.plusDays(364)));
+        a.enterValue(jan.plusDays(365), 1600f);
+        assertTrue(a.returns().moneyWeighted(jan, jan.plusDays(364)) > mwr);
+
+        // valuations either side of the deposit that both grow at 5% give a time-weighted return of 5%
+        double halfway = 1000 * Math.pow(1.05, 183 / 365.0) + 500;
+        a.enterValue(jan.plusDays(183), (float) halfway);
+        a.enterValue(jan.plusDays(365), (float) (halfway * Math.pow(1.05, 182 / 365.0)));
+        assertEquals(0.05, a.returns().timeWeighted(jan, jan.plusDays(364)), 1e-4);
+        assertTrue(a.returns().moneyWeighted(jan, jan.plusDays(364)) < 0.05);
+
+        // rolling windows match the same ranges computed one at a time
+        for (int m = 1; m < 36; m++) {
+            a.enterValue(jan.plusMonths(m), 1000f + 40 * m + (m % 3) * 15);
+        }
+        a.addTransaction(new Transaction("Saving", "", 25f, jan.plusDays(3), 2, ChronoUnit.WEEKS, jan.plusYears(3)));
+        double[] money = a.returns().rollingMoneyWeighted(jan.plusDays(10), 180, 7, 100);
+        double[] time = a.returns().rollingTimeWeighted(jan.plusDays(10), 180, 7, 100);
+        for (int w = 0; w < 100; w += 9) {
+            LocalDateTime start = jan.plusDays(10 + 7L * w);
+            LocalDateTime end = start.plusDays(179);
+            assertEquals(a.returns().moneyWeighted(start, end), money[w], 1e-9);
+            assertEquals(a.returns().timeWeighted(start, end), time[w], 1e-9);
+        }
+        assertThrows(IllegalArgumentException.class, () -> a.returns().rollingTimeWeighted(jan, 0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> a.returns().moneyWeighted(jan, jan.minusDays(1)));
+    }
+}
@@ -0,0 +1,123 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementImporterTest {
+
+    @Test
+    @DisplayName("Import CSV rows grouped by account and payee")
+    void importCsv() throws IOException {
+        BudgetModel model = new BudgetModel();
+        StatementImporter importer = new StatementImporter(model);
+        String csv = "Posted Date,Account,Payee,Amount,Balance\n"
+                + "2022-01-03,Checking,Grocer,-45.10,954.90\n"
+                + "01/01/2022,Checking,Employer,\"1,000.00\",1000.00\n"
+                + "2022-01-02,Savings,\"The \"\"Bank\"\"\",(2.50),\n"
+                + "2022-01-10,Checking,Grocer,-30.00,924.90\n";
+        assertEquals(4, importer.importCsv(new StringReader(csv), "Checking"));
+
+        IBudgetAccount checking = model.getAccount("Checking");
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        assertEquals(1000f, checking.getValue(0));
+        assertEquals(954.9f, checking.getValue(jan.plusDays(2), false));
+        assertEquals(924.9f, checking.getValue(2));
+        ITransaction grocer = checking.getTransaction("Grocer");
+        assertEquals(-45.1f, grocer.getAmount());
+        assertEquals(1, grocer.numInstances());
+        assertEquals(jan.plusDays(2), grocer.startDate());
+        ITransaction grocer30 = checking.getTransaction("Grocer (-30.00)");
+        assertEquals(-30f, grocer30.getAmount());
+        assertEquals(1, grocer30.numInstances());
+        assertEquals(-2.5f, model.getAccount("Savings").getTransaction("The \"Bank\"").getAmount());
+
+        // importing an overlapping statement skips the rows already imported
+        assertEquals(1, importer.importCsv(
+                new StringReader("date,amount,name\n20220110,-30,Grocer\n20220117,-30,Grocer\n"), "Checking"));
+        assertEquals(1, grocer.numInstances());
+        assertEquals(2, grocer30.numInstances());
+        assertEquals(1000 - 45.1 - 30 - 30, checking.getNet(jan, jan.plusDays(20)), 0.001);
+        assertThrows(IllegalArgumentException.class,
+                () -> importer.importCsv(new StringReader("date,amount\n2022-13-01,5\n"), "Checking"));
+    }
+
+    @Test
+    @DisplayName("Rows of one payee with different amounts keep their own amounts")
+    void differingAmounts() throws IOException {
+        BudgetModel model = new BudgetModel();
+        StatementImporter importer = new StatementImporter(model);
+        importer.importCsv(new StringReader("date,amount,payee\n"
+                + "2022-01-01,-10.00,Cafe\n2022-01-02,-12.50,Cafe\n2022-01-03,-10.00,Cafe\n2022-01-04,-7.25,Cafe\n"),
+                "Checking");
+        IBudgetAccount checking = model.getAccount("Checking");
+        assertEquals(List.of("Cafe", "Cafe (-12.50)", "Cafe (-7.25)"), checking.getTransactions());
+        assertEquals(2, checking.getTransaction("Cafe").numInstances());
+        assertEquals(-12.5f, checking.getTransaction("Cafe (-12.50)").getAmount());
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        assertEquals(-39.75f, checking.getNet(jan, jan.plusDays(3)), 0.001);
+
+        // a later statement adds to the transaction with the matching amount
+        importer.importCsv(new StringReader("date,amount,payee\n2022-01-05,-12.50,Cafe\n2022-01-06,-10.00,Cafe\n"),
+                "Checking");
+        assertEquals(3, checking.getTransaction("Cafe").numInstances());
+        assertEquals(2, checking.getTransaction("Cafe (-12.50)").numInstances());
+        assertEquals(-62.25f, checking.getNet(jan, jan.plusDays(5)), 0.001);
+    }
+
+    @Test
+    @DisplayName("Identical rows on the same day are separate purchases, but not when imported again")
+    void identicalRows() throws IOException {
+        BudgetModel model = new BudgetModel();
+        StatementImporter importer = new StatementImporter(model);
+        String csv = "date,amount,payee\n2022-01-03,-3.50,Cafe\n2022-01-03,-3.50,Cafe\n";
+        assertEquals(2, importer.importCsv(new StringReader(csv), "Checking"));
+        IBudgetAccount checking = model.getAccount("Checking");
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        assertEquals(-7f, checking.getNet(jan, jan.plusDays(5)), 0.001);
+        assertEquals(List.of("Cafe", "Cafe #2"), checking.getTransactions());
+
+        // the same statement again adds nothing; a later one with a third purchase that day adds only that one
+        assertEquals(0, importer.importCsv(new StringReader(csv), "Checking"));
+        assertEquals(1, importer.importCsv(new StringReader(csv + "2022-01-03,-3.50,Cafe\n"), "Checking"));
+        assertEquals(-10.5f, checking.getNet(jan, jan.plusDays(5)), 0.001);
+        assertEquals(1, checking.getTransaction("Cafe #3").numInstances());
+    }
+
+    @Test
+    @DisplayName("Import OFX transactions and ledger balance")
+    void importOfx() throws IOException {
+        BudgetModel model = new BudgetModel();
+        String ofx = "OFXHEADER:100\nDATA:OFXSGML\n\n<OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS>"
+                + "<BANKACCTFROM><ACCTID>1234</BANKACCTFROM><BANKTRANLIST>"
+                + "<STMTTRN><TRNTYPE>DEBIT<DTPOSTED>20220105120000[-5:EST]<TRNAMT>-12.34<NAME>Cafe</STMTTRN>"
+                + "<STMTTRN><TRNTYPE>CREDIT<DTPOSTED>20220101<TRNAMT>500.00<MEMO>Payroll</STMTTRN>"
+                + "</BANKTRANLIST><LEDGERBAL><BALAMT>487.66<DTASOF>20220131</LEDGERBAL>"
+                + "</STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>";
+        assertEquals(2, new StatementImporter(model).importOfx(new StringReader(ofx)));
+        IBudgetAccount account = model.getAccount("1234");
+        assertEquals(487.66f, account.getValue(LocalDateTime.of(2022, 1, 31, 0, 0), false));
+        assertTrue(account.getTransaction("Cafe").hasInstance(LocalDateTime.of(2022, 1, 5, 0, 0)));
+        assertEquals(500f, account.getTransaction("Payroll").getAmount());
+    }
+
+    @Test
+    @DisplayName("OFX transactions are identified by their FITID")
+    void ofxFitId() throws IOException {
+        BudgetModel model = new BudgetModel();
+        StatementImporter importer = new StatementImporter(model);
+        String ofx = "<OFX><ACCTID>1234<BANKTRANLIST>"
+                + "<STMTTRN><DTPOSTED>20220105<TRNAMT>-4.00<FITID>A1<NAME>Cafe</STMTTRN>"
+                + "<STMTTRN><DTPOSTED>20220105<TRNAMT>-4.00<FITID>A2<NAME>Cafe</STMTTRN>"
+                + "</BANKTRANLIST></OFX>";
+        assertEquals(2, importer.importOfx(new StringReader(ofx)));
+        assertEquals(0, importer.importOfx(new StringReader(ofx)));
+        assertEquals(1, importer.importOfx(new StringReader(ofx.replace("A2", "A3"))));
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 1, 0, 0);
+        assertEquals(-12f, model.getAccount("1234").getNet(jan, jan.plusDays(10)), 0.001);
+    }
+}
@@ -0,0 +1,159 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionSearchTest {
+
+    private static List<String> names(List<TransactionSearch.Hit> hits) {
+        List<String> names = new ArrayList<>();
+        for (TransactionSearch.Hit h : hits) {
+            names.add(h.transaction().getName());
+        }
+        return names;
+    }
+
+    @Test
+    @DisplayName("Substring search ranks name matches above description matches")
+    void find() {
+        BudgetAccount checking = new BudgetAccount("Checking", "", 0f);
+        checking.addTransaction(new Transaction("Groceries", "Weekly shop at the market", -120f));
+        checking.addTransaction(new Transaction("Rent", "Apartment", -1200f));
+        BudgetAccount savings = new BudgetAccount("Savings", "", 0f);
+        savings.addTransaction(new Transaction("Market fund", "Index fund", 300f));
+        TransactionSearch search = new TransactionSearch();
+        search.attach(checking);
+        search.attach(savings);
+
+        assertEquals(3, search.size());
+        List<TransactionSearch.Hit> hits = search.find("MARKET");
+        assertEquals(List.of("Market fund", "Groceries"), names(hits));
+        assertEquals(1, hits.get(0).score());
+        assertEquals(0.5, hits.get(1).score());
+        assertSame(savings, hits.get(0).account());
+        assertEquals(List.of("Market fund"), names(search.find("market", 1)));
+        assertTrue(search.find("market", 0).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> search.find("market", -1));
+        assertEquals(List.of("Rent"), names(search.find("nt")));
+        assertTrue(search.find("xyz").isEmpty());
+        assertEquals(3, search.find("").size());
+        assertThrows(NullPointerException.class, () -> search.find(null));
+    }
+
+    @Test
+    @DisplayName("Edits to the accounts are reflected in the index")
+    void edits() {
+        BudgetAccount account = new BudgetAccount("Checking", "", 0f);
+        Transaction rent = new Transaction("Rent", "Apartment", -1200f);
+        account.addTransaction(rent);
+        TransactionSearch search = new TransactionSearch();
+        search.attach(account);
+
+        rent.setName("Mortgage");
+        assertTrue(search.find("rent").isEmpty());
+        assertEquals(List.of("Mortgage"), names(search.find("mort")));
+        rent.changeDescription("House");
+        assertTrue(search.find("apart").isEmpty());
+        assertEquals(1, search.find("hous").size());
+
+        Transaction salary = new Transaction("Salary", "Monthly pay", 3000f);
+        account.addTransaction(salary);
+        assertEquals(List.of("Salary"), names(search.find("pay")));
+        account.removeTransaction(rent);
+        assertTrue(search.find("mort").isEmpty());
+        rent.setName("Lease");
+        assertTrue(search.find("lease").isEmpty());
+        assertEquals(1, search.size());
+
+        search.detach(account);
+        assertEquals(0, search.size());
+        account.addTransaction(rent);
+        assertEquals(0, search.size());
+    }
+
+    @Test
+    @DisplayName("A rename rejected by any account leaves every index unchanged")
+    void rejectedRename() {
+        BudgetAccount checking = new BudgetAccount("Checking", "", 0f);
+        BudgetAccount savings = new BudgetAccount("Savings", "", 0f);
+        Transaction rent = new Transaction("Rent", "Apartment", -1200f);
+        checking.addTransaction(rent);
+        TransactionSearch search = new TransactionSearch();
+        search.attach(checking);
+        savings.addTransaction(new Transaction("Pay", "Salary", 3000f));
+        savings.addTransaction(rent);
+
+        assertThrows(IllegalArgumentException.class, () -> rent.setName("Pay"));
+        assertEquals("Rent", rent.getName());
+        assertSame(rent, checking.getTransaction("Rent"));
+        assertFalse(checking.hasTransaction("Pay"));
+        assertSame(rent, savings.getTransaction("Rent"));
+        assertEquals(List.of("Rent"), names(search.find("rent")));
+        assertTrue(search.find("pay").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Fuzzy search finds misspellings, best match first")
+    void findSimilar() {
+        BudgetAccount account = new BudgetAccount("Checking", "", 0f);
+        account.addTransaction(new Transaction("Electricity", "Power company", -80f));
+        account.addTransaction(new Transaction("Electric car", "Loan", -400f));
+        account.addTransaction(new Transaction("Water", "City utilities", -30f));
+        TransactionSearch search = new TransactionSearch();
+        search.attach(account);
+
+        List<TransactionSearch.Hit> hits = search.findSimilar("electrisity", 0.3, 10);
+        assertEquals(List.of("Electricity", "Electric car"), names(hits));
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+        assertEquals(List.of("Electricity"), names(search.findSimilar("electrisity", 0.3, 1)));
+        assertTrue(search.findSimilar("electrisity", 0.9, 10).isEmpty());
+        assertEquals(List.of("Water"), names(search.findSimilar("utilites", 0.5, 10)));
+        assertThrows(IllegalArgumentException.class, () -> search.findSimilar("water", 0.5, -1));
+    }
+
+    @Test
+    @DisplayName("Random edits agree with a linear scan")
+    void randomEdits() {
+        String[] words = {"rent", "coffee", "market", "salary", "bonus", "loan", "insurance", "fuel", "gym", "water"};
+        SplittableRandom random = new SplittableRandom(11);
+        BudgetAccount account = new BudgetAccount("Checking", "", 0f);
+        TransactionSearch search = new TransactionSearch();
+        search.attach(account);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int step = 0; step < 2000; step++) {
+            int action = random.nextInt(4);
+            String text = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+            if (action == 0 || transactions.isEmpty()) {
+                Transaction t = new Transaction(text + " " + step, text, -1f);
+                account.addTransaction(t);
+                transactions.add(t);
+            }
+            else {
+                Transaction t = transactions.get(random.nextInt(transactions.size()));
+                if (action == 1) {
+                    t.setName(text + " " + step);
+                }
+                else if (action == 2) {
+                    t.changeDescription(text);
+                }
+                else {
+                    account.removeTransaction(t);
+                    transactions.remove(t);
+                }
+            }
+            String query = words[random.nextInt(words.length)].substring(1);
+            int expected = 0;
+            for (Transaction t : transactions) {
+                String all = (t.getName() + "\n" + t.getDescription()).toLowerCase(Locale.ROOT);
+                expected += all.contains(query) ? 1 : 0;
+            }
+            assertEquals(expected, search.find(query).size());
+        }
+        assertEquals(transactions.size(), search.size());
+    }
+}
@@ -4,7 +4,9 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -137,5 +139,76 @@ class TransactionTest {
         assertEquals("Test", t.getDescription());
     }
 
+    @Test
+    @DisplayName("Recurring transactions generate their instances")
+    void recurringInstances() {
+        LocalDateTime start = LocalDateTime.of(2022, 1, 31, 0, 0);
+        ITransaction r = new Transaction("Rent", "Monthly rent", -1000f, start, 1, ChronoUnit.MONTHS,
+                LocalDateTime.of(2022, 12, 31, 0, 0));
+        assertEquals(12, r.numInstances());
+        assertTrue(r.hasInstance(LocalDateTime.of(2022, 2, 28, 0, 0)));
+        assertTrue(r.hasInstance(LocalDateTime.of(2022, 3, 31, 0, 0)));
+        assertFalse(r.hasInstance(LocalDateTime.of(2022, 3, 28, 0, 0)));
+        assertEquals(start, r.startDate());
+        assertEquals(LocalDateTime.of(2022, 12, 31, 0, 0), r.endDate());
+        ArrayList<LocalDateTime> q2 = new ArrayList<>();
+        q2.add(LocalDateTime.of(2022, 4, 30, 0, 0));
+        q2.add(LocalDateTime.of(2022, 5, 31, 0, 0));
+        q2.add(LocalDateTime.of(2022, 6, 30, 0, 0));
+        assertEquals(q2, r.getTransactions(LocalDateTime.of(2022, 4, 1, 0, 0), LocalDateTime.of(2022, 6, 30, 0, 0)));
+    }
+
+    @Test
+    @DisplayName("Recurring instances can be removed, restored and mixed with one-off instances")
+    void recurringEdits() {
+        ITransaction r = new Transaction("Pay", "Bi-weekly pay", 2000f, LocalDateTime.of(2022, 1, 7, 0, 0),
+                2, ChronoUnit.WEEKS, LocalDateTime.of(2022, 2, 28, 0, 0));
+        assertEquals(4, r.numInstances());
+        r.removeInstance(LocalDateTime.of(2022, 1, 21, 0, 0));
+        assertFalse(r.hasInstance(LocalDateTime.of(2022, 1, 21, 0, 0)));
+        assertEquals(3, r.numInstances());
+        assertFalse(r.hasInstance(LocalDateTime.of(2022, 1, 20, 0, 0), LocalDateTime.of(2022, 2, 3, 0, 0)));
+        r.addInstance(LocalDateTime.of(2022, 1, 22, 0, 0));
+        r.addInstance(LocalDateTime.of(2022, 1, 21, 0, 0));
+        assertEquals(5, r.numInstances());
+        assertEquals(LocalDateTime.of(2022, 1, 22, 0, 0), r.getTransactions().get(2));
+        r.removeInstance(0);
+        assertEquals(LocalDateTime.of(2022, 1, 21, 0, 0), r.startDate());
+        assertThrows(IllegalArgumentException.class, () -> r.removeInstance(LocalDateTime.of(2022, 1, 8, 0, 0)));
+    }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("A batch of instances with a bad date changes nothing")
+    void addInstancesAtomic() {
+        LocalDateTime jan = LocalDateTime.of(2022, 1, 7, 0, 0);
+        Transaction r = new Transaction("Pay", "Bi-weekly pay", 2000f, jan, 2, ChronoUnit.WEEKS, jan.plusWeeks(6));
+        r.removeInstance(jan.plusWeeks(2));
+        CashFlowIndex flows = new CashFlowIndex();
+        flows.addTransaction(r);
+        long total = flows.total(Long.MAX_VALUE);
+        List<LocalDateTime> unordered = List.of(jan.plusWeeks(2), jan.plusDays(1), jan.plusDays(30), jan);
+        assertThrows(IllegalArgumentException.class, () -> r.addInstances(unordered));
+        List<LocalDateTime> withNull = new ArrayList<>(List.of(jan.plusWeeks(2), jan.plusDays(30)));
+        withNull.add(null);
+        assertThrows(IllegalArgumentException.class, () -> r.addInstances(withNull));
+        assertFalse(r.hasInstance(jan.plusWeeks(2)));
+        assertFalse(r.hasInstance(jan.plusDays(30)));
+        assertEquals(3, r.numInstances());
+        assertEquals(total, flows.total(Long.MAX_VALUE));
+        assertEquals(2, r.addInstances(List.of(jan.plusWeeks(2), jan.plusDays(30))));
+        assertEquals(total + 400000, flows.total(Long.MAX_VALUE));
+    }
+
+    @Test
+    @DisplayName("Range queries return read-only views")
+    void rangeViews() {
+        t.addInstance(LocalDateTime.of(2022, 3, 1, 0, 0));
+        t.addInstance(LocalDateTime.of(2022, 1, 1, 0, 0));
+        t.addInstance(LocalDateTime.of(2022, 2, 1, 0, 0));
+        List<LocalDateTime> range = t.getTransactions(LocalDateTime.of(2022, 1, 15, 0, 0), LocalDateTime.of(2022, 3, 1, 0, 0));
+        assertEquals(List.of(LocalDateTime.of(2022, 2, 1, 0, 0), LocalDateTime.of(2022, 3, 1, 0, 0)), range);
+        assertThrows(UnsupportedOperationException.class, () -> range.add(LocalDateTime.MIN));
+        assertThrows(UnsupportedOperationException.class, () -> t.getTransactions().clear());
+        assertTrue(t.getTransactions(LocalDateTime.MAX, LocalDateTime.MIN).isEmpty());
+    }
+}